@@ -2,9 +2,16 @@ package client.network;
 
 import client.network.handler.ClientHandler;
 import client.network.handler.UdpClientHandler;
+import client.service.video.RemoteCursor;
+import client.service.video.RemoteFrameBuffer;
+import codec.DatagramHeader;
+import codec.FramePayloadDecoder;
 import codec.NettyKryoDecoder;
 import codec.NettyKryoEncoder;
+import codec.PriorityOutboundHandler;
 import codec.KryoSerializer; // Import Serializer
+import codec.ProtocolVersion;
+import codec.image.FrameCodecs;
 
 // Import các gói tin từ cấu trúc mới
 import protocol.auth.*;
@@ -14,9 +21,12 @@ import protocol.core.PacketType;
 import protocol.input.ClipboardPacket;
 import protocol.input.ControlPayload;
 import protocol.media.AudioPacket;
+import protocol.media.CursorPacket;
+import protocol.media.ReceiverReportPacket;
 import protocol.media.VideoPacket;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.*;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.DatagramPacket;
@@ -29,18 +39,22 @@ import protocol.p2p.P2PHelloPacket;
 import protocol.p2p.PeerRegisterPacket;
 
 import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
 
 public class NetworkClient {
 
     private String host;
     private int port;
     private Channel tcpChannel;
-    private Channel udpChannel;
+    private volatile Channel udpChannel;
     private String myId;
     private final PeerControlClient peerControlClient = new PeerControlClient();
 
     private InetSocketAddress peerAddress;
     private volatile boolean p2pEnabled = true;
+    private volatile int udpToken;
+    private InetSocketAddress serverUdpAddress;
+    private final UdpClientHandler udpHandler = new UdpClientHandler();
 
     public NetworkClient(String host, int port) {
         this.host = host;
@@ -50,6 +64,11 @@ public class NetworkClient {
             this.peerAddress = new InetSocketAddress(peerPacket.getHost(), peerPacket.getPort());
             System.out.println(">>> [SUCCESS] Đã nhận được địa chỉ P2P của đối tác: " + this.peerAddress);
         };
+
+        ClientHandler.onUdpTokenReceived = (token) -> this.udpToken = token;
+        udpHandler.setOnNack((nack) -> sendControlPlane(new NetworkPacket(PacketType.VIDEO_NACK, nack)));
+        udpHandler.setOnKeyframeRequest(
+                (request) -> sendControlPlane(new NetworkPacket(PacketType.KEYFRAME_REQUEST, request)));
     }
 
     public void connect(String userId, String password) {
@@ -65,7 +84,9 @@ public class NetworkClient {
                             @Override
                             public void initChannel(SocketChannel ch) {
                                 ch.pipeline().addLast(new NettyKryoDecoder());
+                                ch.pipeline().addLast(new FramePayloadDecoder());
                                 ch.pipeline().addLast(new NettyKryoEncoder());
+                                ch.pipeline().addLast(new PriorityOutboundHandler());
                                 ch.pipeline().addLast(new ClientHandler());
                             }
                         });
@@ -81,6 +102,10 @@ public class NetworkClient {
                 e.printStackTrace();
             } finally {
                 group.shutdownGracefully();
+                // mất phiên với server thì token UDP cũng hết hiệu lực: đóng luôn (dừng decoder video)
+                Channel udp = udpChannel;
+                if (udp != null)
+                    udp.close();
             }
         }).start();
 
@@ -96,16 +121,19 @@ public class NetworkClient {
                         .channel(NioDatagramChannel.class)
                         .option(ChannelOption.SO_RCVBUF, 1024 * 1024)
                         .option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(65535))
-                        .handler(new UdpClientHandler());
+                        .handler(udpHandler);
 
                 ChannelFuture f = b.bind(0).sync();
                 udpChannel = f.channel();
+                // báo cáo chất lượng nhận video cho bên chia sẻ màn hình (bộ điều chỉnh bitrate)
+                udpChannel.eventLoop().scheduleAtFixedRate(this::sendReceiverReport, 1, 1, TimeUnit.SECONDS);
 
                 int localPort = ((InetSocketAddress) udpChannel.localAddress()).getPort();
                 System.out.println("UDP Client bound to local port: " + localPort);
 
                 Thread.sleep(500);
-                sendVideoPacket(new VideoPacket(deviceId, null, new byte[0], 0, 0, 0, 0));
+                sendVideoPacket(new VideoPacket(deviceId, null, new byte[0], 0, 0, 0, 0, VideoPacket.FORMAT_JPEG, 0, 0,
+                        false, FrameCodecs.JPEG));
 
                 f.channel().closeFuture().sync();
             } catch (Exception e) {
@@ -116,14 +144,31 @@ public class NetworkClient {
         }).start();
     }
 
+    /** Đóng kết nối TCP và UDP. */
+    public void disconnect() {
+        Channel tcp = tcpChannel;
+        if (tcp != null)
+            tcp.close();
+        Channel udp = udpChannel;
+        if (udp != null)
+            udp.close();
+    }
+
     public boolean isConnected() {
         return tcpChannel != null && tcpChannel.isActive();
     }
 
-    public void sendTcpPacket(NetworkPacket packet) {
+    /** false khi buffer gửi TCP đã vượt high watermark (dùng để điều tốc gửi file). */
+    public boolean isTcpWritable() {
+        return tcpChannel != null && tcpChannel.isWritable();
+    }
+
+    /** @return future của lần ghi, null nếu chưa kết nối */
+    public ChannelFuture sendTcpPacket(NetworkPacket packet) {
         if (isConnected()) {
-            tcpChannel.writeAndFlush(packet);
+            return tcpChannel.writeAndFlush(packet);
         }
+        return null;
     }
 
     public void sendPeerRegister(int controlPort) {
@@ -161,7 +206,7 @@ public class NetworkClient {
     }
 
     private void sendLogin(String userId, String password) {
-        sendTcpPacket(new NetworkPacket(PacketType.LOGIN_REQUEST, new LoginRequest(userId, password)));
+        sendTcpPacket(new NetworkPacket(PacketType.LOGIN_REQUEST, new LoginRequest(userId, password, ProtocolVersion.LATEST)));
     }
 
     public void sendChat(String senderId, String targetId, String message) {
@@ -194,28 +239,98 @@ public class NetworkClient {
             sendTcpPacket(p);
     }
 
+    /** Khung hình của màn hình từ xa; FX thread gọi present() mỗi pulse. */
+    public RemoteFrameBuffer remoteFrames() {
+        return udpHandler.frames();
+    }
+
+    /** Phiên mới hoặc phiên vừa kết thúc: sender kế tiếp đánh frameId lại từ 0. */
+    public void resetVideoStream() {
+        udpHandler.resetStream();
+    }
+
+    /** Con trỏ của bên chia sẻ (kênh UDP riêng với video). */
+    public RemoteCursor remoteCursor() {
+        return udpHandler.cursor();
+    }
+
+    public String videoReceiveStats() {
+        return udpHandler.nackStats();
+    }
+
+    private void sendReceiverReport() {
+        ReceiverReportPacket report = udpHandler.drainReport();
+        if (report == null || !isConnected())
+            return;
+        sendControlPlane(new NetworkPacket(PacketType.RECEIVER_REPORT, report));
+    }
+
+    // phản hồi video cho bên chia sẻ: P2P nếu có, không thì qua relay
+    private void sendControlPlane(NetworkPacket p) {
+        if (isPeerControlActive())
+            peerControlClient.send(p);
+        else
+            sendTcpPacket(p);
+    }
+
     public void sendVideoPacket(VideoPacket packet) {
+        sendUdpObject(packet);
+    }
+
+    /** Vị trí con trỏ: datagram riêng, không đi qua pipeline video. */
+    public void sendCursor(CursorPacket packet) {
+        sendUdpObject(packet);
+    }
+
+    private void sendUdpObject(Object packet) {
+        if (udpChannel != null && udpChannel.isActive()) {
+            ByteBuf buf = udpChannel.alloc().directBuffer();
+            try {
+                DatagramHeader.write(buf, 0, udpToken);
+                int length = KryoSerializer.serialize(packet, buf);
+                sendDatagram(buf, length);
+            } catch (Exception e) {
+                buf.release();
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Gửi một chunk video mà data là đoạn [offset, offset + length) của buffer nén,
+     * ghi thẳng vào datagram thay vì copy ra mảng riêng.
+     */
+    public void sendVideoChunk(VideoPacket header, byte[] data, int offset, int length) {
         if (udpChannel != null && udpChannel.isActive()) {
+            ByteBuf buf = udpChannel.alloc().directBuffer(DatagramHeader.LENGTH + length + 64);
             try {
-                byte[] bytes = KryoSerializer.serialize(packet);
-                if (bytes.length > 60000)
-                    return;
-
-                InetSocketAddress target;
-
-                if (p2pEnabled && peerAddress != null) {
-                    target = peerAddress;
-                } else {
-                    target = new InetSocketAddress(host, port + 1);
-                }
-
-                DatagramPacket datagram = new DatagramPacket(
-                        io.netty.buffer.Unpooled.wrappedBuffer(bytes),
-                        target);
-                udpChannel.writeAndFlush(datagram);
+                DatagramHeader.write(buf, 0, udpToken);
+                int written = KryoSerializer.serializeVideoChunk(header, data, offset, length, buf);
+                sendDatagram(buf, written);
             } catch (Exception e) {
+                buf.release();
                 e.printStackTrace();
             }
         }
     }
+
+    private void sendDatagram(ByteBuf buf, int length) {
+        if (length > 60000) {
+            buf.release();
+            return;
+        }
+
+        InetSocketAddress target;
+
+        if (p2pEnabled && peerAddress != null) {
+            target = peerAddress;
+        } else {
+            // resolve một lần thay vì mỗi datagram
+            if (serverUdpAddress == null)
+                serverUdpAddress = new InetSocketAddress(host, port + 1);
+            target = serverUdpAddress;
+        }
+
+        udpChannel.writeAndFlush(new DatagramPacket(buf, target));
+    }
 }
\ No newline at end of file
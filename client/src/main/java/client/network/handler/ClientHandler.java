@@ -2,20 +2,26 @@ package client.network.handler;
 
 import client.service.audio.AudioPlayer;
 import client.service.input.ControlExecutor;
+import codec.ProtocolVersion;
 import protocol.core.NetworkPacket;
 import protocol.core.PacketType;
 
 // Import đầy đủ các gói tin
 import protocol.auth.ConnectResponsePacket;
 import protocol.auth.DisconnectPacket;
+import protocol.auth.LoginResponsePacket;
 import protocol.chat.ChatMessage;
 import protocol.file.FileAcceptPacket;
 import protocol.file.FileChunkPacket;
 import protocol.file.FileOfferPacket;
 import protocol.file.FileReqPacket;
+import protocol.file.FlowControlPacket;
 import protocol.input.ClipboardPacket;
 import protocol.input.ControlPayload;
 import protocol.media.AudioPacket;
+import protocol.media.KeyframeRequestPacket;
+import protocol.media.NackPacket;
+import protocol.media.ReceiverReportPacket;
 import protocol.media.StartStreamPacket;
 import protocol.p2p.PeerInfoPacket;
 import java.util.function.Consumer;
@@ -36,14 +42,21 @@ public class ClientHandler extends SimpleChannelInboundHandler<NetworkPacket> {
     public static Consumer<StartStreamPacket> onStartStreaming;
     public static Consumer<PeerInfoPacket> onPeerInfoReceived;
     public static Consumer<String> onPartnerDisconnect;
+    public static Consumer<Integer> onUdpTokenReceived;
 
     public static Runnable onLoginSuccess;
+    /** Mất kết nối TCP tới server. */
+    public static Runnable onConnectionLost;
 
     public static Consumer<FileOfferPacket> onFileOffer;
     public static Consumer<String> onFileAccepted;
     public static Consumer<String> onFileTransferSuccess;
     public static Consumer<FileReqPacket> onFileReq;
     public static Consumer<FileChunkPacket> onFileChunk;
+    public static Consumer<Boolean> onFlowControl;
+    public static Consumer<ReceiverReportPacket> onReceiverReport;
+    public static Consumer<NackPacket> onVideoNack;
+    public static Consumer<KeyframeRequestPacket> onKeyframeRequest;
 
     private static final AudioPlayer audioPlayer = new AudioPlayer();
 
@@ -53,7 +66,16 @@ public class ClientHandler extends SimpleChannelInboundHandler<NetworkPacket> {
 
         switch (type) {
             case LOGIN_RESPONSE:
-                String res = (String) packet.getPayload();
+                String res;
+                if (packet.getPayload() instanceof LoginResponsePacket) {
+                    LoginResponsePacket login = (LoginResponsePacket) packet.getPayload();
+                    res = login.getStatus();
+                    ProtocolVersion.set(ctx.channel(), ProtocolVersion.negotiate(login.getProtocolVersion()));
+                    if (onUdpTokenReceived != null)
+                        onUdpTokenReceived.accept(login.getUdpToken());
+                } else {
+                    res = (String) packet.getPayload();
+                }
                 if ("OK".equals(res)) {
                     if (onLoginSuccess != null)
                         onLoginSuccess.run();
@@ -115,6 +137,27 @@ public class ClientHandler extends SimpleChannelInboundHandler<NetworkPacket> {
                     onFileChunk.accept(chunk);
                 break;
 
+            case FLOW_CONTROL:
+                FlowControlPacket flow = (FlowControlPacket) packet.getPayload();
+                if (onFlowControl != null)
+                    onFlowControl.accept(flow.isPaused());
+                break;
+
+            case RECEIVER_REPORT:
+                if (onReceiverReport != null)
+                    onReceiverReport.accept((ReceiverReportPacket) packet.getPayload());
+                break;
+
+            case VIDEO_NACK:
+                if (onVideoNack != null)
+                    onVideoNack.accept((NackPacket) packet.getPayload());
+                break;
+
+            case KEYFRAME_REQUEST:
+                if (onKeyframeRequest != null)
+                    onKeyframeRequest.accept((KeyframeRequestPacket) packet.getPayload());
+                break;
+
             case CONTROL_SIGNAL:
                 ControlPayload control = (ControlPayload) packet.getPayload();
                 ControlExecutor.execute(control);
@@ -145,6 +188,13 @@ public class ClientHandler extends SimpleChannelInboundHandler<NetworkPacket> {
         }
     }
 
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (onConnectionLost != null)
+            onConnectionLost.run();
+        super.channelInactive(ctx);
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         cause.printStackTrace();
@@ -0,0 +1,395 @@
+package client.network.handler;
+
+import client.service.video.XorFec;
+import io.netty.buffer.ByteBuf;
+import protocol.media.NackPacket;
+import protocol.media.VideoPacket;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.Consumer;
+
+/**
+ * Ghép chunk video thành frame trên một vòng slot cấp phát sẵn (slot = frameId % số slot).
+ * Mỗi slot có một buffer liền mạch dùng lại giữa các frame: chunk i được copy thẳng từ datagram
+ * vào offset i * chunkSize nên không cần bước nối mảng; bitmap đánh dấu chunk đã có.
+ * Parity FEC nằm trong buffer riêng của slot. Slot quá hạn được dọn bởi {@link #sweep(long)}.
+ *
+ * Frame được giao theo đúng thứ tự frameId (delta nối tiếp nhau): frame đã đủ chunk mà frame trước nó còn
+ * thiếu thì được giữ lại, chờ chunk gửi lại tới hạn {@link NackTracker#DEADLINE_MS}; quá hạn mới bỏ frame
+ * thiếu và giao tiếp.
+ *
+ * Chỉ dùng trên event loop UDP.
+ */
+final class FrameReassembler {
+
+    static final long TIMEOUT_MS = 2000;
+
+    /** Frame đã đủ chunk; data[0, length) chỉ hợp lệ trong lúc gọi listener. */
+    static final class Frame {
+        long frameId;
+        int format;
+        int codec;
+        boolean keyframe;
+        byte[] data;
+        int length;
+    }
+
+    private static final class Slot {
+        boolean active;
+        boolean ready; // đủ chunk, chờ tới lượt giao
+        long frameId;
+        int totalChunks;
+        int fecGroup;
+        int parityChunks;
+        int format;
+        int codec;
+        boolean keyframe;
+        int frameLength; // 0 = sender cũ không gửi
+        int chunkSize; // 0 = chưa biết (chưa nhận chunk nào không phải chunk cuối)
+        long firstReceivedMs;
+
+        final BitSet received = new BitSet();
+        int dataCount;
+        int lastChunkLength = -1;
+        byte[] data = new byte[64 * 1024];
+
+        // chunk cuối tới trước khi biết chunkSize (sender cũ không có frameLength)
+        byte[] pendingLast = new byte[0];
+        int pendingLastLength = -1;
+
+        final BitSet parityReceived = new BitSet();
+        byte[][] parity = new byte[0][];
+        int[] parityLength = new int[0];
+    }
+
+    private final Slot[] slots;
+    private final Frame frame = new Frame();
+    private final ReceiverStats stats;
+    private final NackTracker nacks;
+    private final Consumer<NackPacket> onNack;
+    private final Consumer<Frame> onFrame;
+    private long lastCompletedId = -1;
+
+    FrameReassembler(int slotCount, ReceiverStats stats, NackTracker nacks, Consumer<NackPacket> onNack,
+            Consumer<Frame> onFrame) {
+        this.slots = new Slot[slotCount];
+        for (int i = 0; i < slotCount; i++)
+            slots[i] = new Slot();
+        this.stats = stats;
+        this.nacks = nacks;
+        this.onNack = onNack;
+        this.onFrame = onFrame;
+    }
+
+    /**
+     * Nhận một chunk: header là các field của VideoPacket, data nằm ở
+     * content[readerIndex, readerIndex + length). Các frame tới lượt được giao cho listener ngay trong lời gọi.
+     */
+    void accept(VideoPacket header, ByteBuf content, int length, long nowMs) {
+        long frameId = header.getFrameId();
+        int total = header.getTotalChunks();
+        // header đến từ mạng: kích thước slot và parity được cấp theo các field này
+        if (!isValid(header, length))
+            return;
+        // <= : parity (và chunk thừa) của frame đã giao/bỏ tới sau không được tạo lại frame đó
+        if (frameId <= lastCompletedId) {
+            nacks.onStaleChunk(frameId);
+            return;
+        }
+
+        Slot s = slots[(int) (frameId % slots.length)];
+        if (!s.active || s.frameId != frameId) {
+            if (s.active) {
+                if (s.frameId > frameId)
+                    return; // slot đã dùng cho frame mới hơn
+                // vòng slot đã quay hết: giao hoặc bỏ mọi frame tới frame đang giữ slot
+                playout(nowMs, s.frameId);
+            }
+            start(s, header, nowMs);
+            // frame mới bắt đầu -> các frame trước còn thiếu chunk chắc chắn đã mất gói
+            for (Slot older : slots)
+                if (older.active && older.frameId < frameId)
+                    nackIfIncomplete(older, nowMs);
+        }
+
+        stats.onChunk(nowMs - header.getTimestamp());
+        if (s.ready)
+            return; // chunk thừa của frame đã đủ, đang chờ frame trước
+        // cùng frameId nhưng khác bố cục: không ghép lẫn
+        if (header.getTotalChunks() != s.totalChunks || header.getFecGroup() != s.fecGroup
+                || header.getFrameLength() != s.frameLength)
+            return;
+
+        int index = header.getChunkIndex();
+        if (index < total)
+            storeData(s, index, content, length);
+        else if (index < total + s.parityChunks)
+            storeParity(s, index - total, content, length);
+
+        if (s.dataCount < total && s.fecGroup > 0)
+            recover(s);
+
+        // gói cuối của frame (kể cả parity) đã tới mà vẫn thiếu -> FEC không cứu được, xin gửi lại
+        if (s.dataCount < total && index == total + s.parityChunks - 1)
+            nackIfIncomplete(s, nowMs);
+
+        if (s.dataCount == total && s.pendingLastLength < 0) {
+            s.ready = true;
+            stats.onFrameCompleted();
+            nacks.onFrameCompleted(s.frameId);
+        }
+        playout(nowMs, -1);
+    }
+
+    /** Header nằm trong giới hạn của VideoPacket và chunk nằm trong frame mà header mô tả. */
+    static boolean isValid(VideoPacket header, int length) {
+        int total = header.getTotalChunks();
+        int fecGroup = header.getFecGroup();
+        int frameLength = header.getFrameLength();
+        if (total <= 0 || total > VideoPacket.MAX_CHUNKS || length <= 0 || length > VideoPacket.MAX_CHUNK_SIZE)
+            return false;
+        if (fecGroup < 0 || fecGroup > total || frameLength < 0 || frameLength > total * VideoPacket.MAX_CHUNK_SIZE)
+            return false;
+        // frameLength 0 = sender cũ không gửi
+        if (frameLength > 0 && length > frameLength)
+            return false;
+        int index = header.getChunkIndex();
+        return index >= 0 && index < total + XorFec.parityCount(total, fecGroup);
+    }
+
+    /**
+     * Phiên stream mới: sender mới đếm frameId lại từ 0, nên bỏ mọi slot dở dang và mốc frame đã hiển thị
+     * của phiên cũ (không thì mọi chunk mới đều bị coi là cũ).
+     */
+    void reset() {
+        for (Slot s : slots)
+            s.active = false;
+        lastCompletedId = -1;
+    }
+
+    /**
+     * Bỏ các frame chờ quá {@link #TIMEOUT_MS} và giao các frame đã đủ mà frame thiếu phía trước đã quá hạn;
+     * gọi định kỳ.
+     */
+    void sweep(long nowMs) {
+        long timedOut = -1;
+        for (Slot s : slots)
+            if (s.active && !s.ready && nowMs - s.firstReceivedMs > TIMEOUT_MS)
+                timedOut = Math.max(timedOut, s.frameId);
+        playout(nowMs, timedOut);
+    }
+
+    private void start(Slot s, VideoPacket header, long nowMs) {
+        s.active = true;
+        s.ready = false;
+        s.frameId = header.getFrameId();
+        s.totalChunks = header.getTotalChunks();
+        s.fecGroup = header.getFecGroup();
+        s.parityChunks = XorFec.parityCount(s.totalChunks, s.fecGroup);
+        s.format = header.getFormat();
+        s.codec = header.getCodec();
+        // JPEG nguyên khung luôn tự đủ, kể cả từ sender cũ không gửi cờ keyframe
+        s.keyframe = header.isKeyframe() || header.getFormat() == VideoPacket.FORMAT_JPEG;
+        s.frameLength = header.getFrameLength();
+        s.chunkSize = 0;
+        s.firstReceivedMs = nowMs;
+        s.received.clear();
+        s.dataCount = 0;
+        s.lastChunkLength = -1;
+        s.pendingLastLength = -1;
+        s.parityReceived.clear();
+        if (s.frameLength > 0)
+            ensureData(s, s.frameLength);
+        if (s.parity.length < s.parityChunks) {
+            s.parity = Arrays.copyOf(s.parity, s.parityChunks);
+            s.parityLength = Arrays.copyOf(s.parityLength, s.parityChunks);
+        }
+        stats.onFrameSeen(s.totalChunks + s.parityChunks);
+    }
+
+    private void storeData(Slot s, int index, ByteBuf content, int length) {
+        if (s.received.get(index) || s.chunkSize > 0 && length > s.chunkSize)
+            return;
+        int last = s.totalChunks - 1;
+        int offset;
+        if (index < last) {
+            learnChunkSize(s, length);
+            if (length != s.chunkSize)
+                return; // mọi chunk trừ chunk cuối dài bằng nhau
+            offset = index * s.chunkSize;
+        } else {
+            offset = lastChunkOffset(s, length);
+            if (offset < 0) {
+                // chưa biết chunkSize: giữ tạm, đặt vào chỗ khi nhận được chunk khác
+                if (s.pendingLast.length < length)
+                    s.pendingLast = new byte[length];
+                content.getBytes(content.readerIndex(), s.pendingLast, 0, length);
+                s.pendingLastLength = length;
+                s.lastChunkLength = length;
+                s.received.set(index);
+                s.dataCount++;
+                return;
+            }
+            s.lastChunkLength = length;
+        }
+        if (s.frameLength > 0 && offset + length > s.frameLength)
+            return;
+        ensureData(s, offset + length);
+        content.getBytes(content.readerIndex(), s.data, offset, length);
+        s.received.set(index);
+        s.dataCount++;
+    }
+
+    // -1 nếu chưa tính được
+    private static int lastChunkOffset(Slot s, int length) {
+        if (s.totalChunks == 1)
+            return 0;
+        if (s.frameLength > 0)
+            return s.frameLength - length;
+        if (s.chunkSize > 0)
+            return (s.totalChunks - 1) * s.chunkSize;
+        return -1;
+    }
+
+    private void learnChunkSize(Slot s, int chunkSize) {
+        if (s.chunkSize > 0)
+            return;
+        s.chunkSize = chunkSize;
+        if (s.pendingLastLength >= 0) {
+            int offset = (s.totalChunks - 1) * chunkSize;
+            ensureData(s, offset + s.pendingLastLength);
+            System.arraycopy(s.pendingLast, 0, s.data, offset, s.pendingLastLength);
+            s.pendingLastLength = -1;
+        }
+    }
+
+    private void storeParity(Slot s, int group, ByteBuf content, int length) {
+        if (s.parityReceived.get(group))
+            return;
+        if (s.parity[group] == null || s.parity[group].length < length)
+            s.parity[group] = new byte[length];
+        content.getBytes(content.readerIndex(), s.parity[group], 0, length);
+        s.parityLength[group] = length;
+        s.parityReceived.set(group);
+        // nhóm có chunk không phải chunk cuối -> parity dài đúng bằng chunkSize
+        if (group * s.fecGroup < s.totalChunks - 1)
+            learnChunkSize(s, length);
+    }
+
+    /** Dựng lại chunk thiếu ở những nhóm thiếu đúng một chunk và đã có parity. */
+    private void recover(Slot s) {
+        int last = s.totalChunks - 1;
+        for (int g = s.parityReceived.nextSetBit(0); g >= 0; g = s.parityReceived.nextSetBit(g + 1)) {
+            int first = g * s.fecGroup;
+            int end = Math.min(first + s.fecGroup, s.totalChunks);
+            int missing = -1;
+            int missingCount = 0;
+            for (int i = first; i < end; i++) {
+                if (!s.received.get(i)) {
+                    missing = i;
+                    missingCount++;
+                }
+            }
+            if (missingCount != 1 || s.pendingLastLength >= 0)
+                continue;
+
+            int parityLength = s.parityLength[g];
+            int length;
+            if (missing < last)
+                length = s.chunkSize;
+            else if (end - first == 1)
+                length = parityLength;
+            else if (s.frameLength > 0 && s.chunkSize > 0)
+                length = s.frameLength - last * s.chunkSize;
+            else
+                continue;
+            int offset = missing < last ? missing * s.chunkSize : lastChunkOffset(s, length);
+            if (length <= 0 || length > parityLength || offset < 0)
+                continue;
+
+            ensureData(s, offset + length);
+            System.arraycopy(s.parity[g], 0, s.data, offset, length);
+            for (int i = first; i < end; i++) {
+                if (i == missing)
+                    continue;
+                int from = i * s.chunkSize;
+                int n = Math.min(length, i == last ? s.lastChunkLength : s.chunkSize);
+                for (int k = 0; k < n; k++)
+                    s.data[offset + k] ^= s.data[from + k];
+            }
+            if (missing == last)
+                s.lastChunkLength = length;
+            s.received.set(missing);
+            s.dataCount++;
+        }
+    }
+
+    /**
+     * Giao các frame theo thứ tự frameId. Frame cũ nhất còn thiếu chặn các frame sau nó tới khi quá
+     * {@link NackTracker#DEADLINE_MS} (chỉ khi đã có frame sau đủ chunk, không thì chờ tới {@link #TIMEOUT_MS}),
+     * trừ khi frameId <= forceThrough.
+     */
+    private void playout(long nowMs, long forceThrough) {
+        while (true) {
+            Slot oldest = null;
+            boolean anyReady = false;
+            for (Slot s : slots) {
+                if (!s.active)
+                    continue;
+                anyReady |= s.ready;
+                if (oldest == null || s.frameId < oldest.frameId)
+                    oldest = s;
+            }
+            if (oldest == null)
+                return;
+            if (oldest.ready) {
+                deliver(oldest);
+                continue;
+            }
+            boolean expired = nowMs - oldest.firstReceivedMs > NackTracker.DEADLINE_MS;
+            if (oldest.frameId > forceThrough && !(anyReady && expired))
+                return;
+            drop(oldest, nowMs);
+        }
+    }
+
+    private void deliver(Slot s) {
+        s.active = false;
+        lastCompletedId = s.frameId;
+        frame.frameId = s.frameId;
+        frame.format = s.format;
+        frame.codec = s.codec;
+        frame.keyframe = s.keyframe;
+        frame.data = s.data;
+        frame.length = s.frameLength > 0 ? s.frameLength
+                : (s.totalChunks - 1) * s.chunkSize + s.lastChunkLength;
+        onFrame.accept(frame);
+    }
+
+    private void drop(Slot s, long nowMs) {
+        s.active = false;
+        // chunk tới muộn không được mở lại slot: frame đó sẽ lại chặn các frame sau
+        lastCompletedId = s.frameId;
+        stats.onFrameDropped();
+        nacks.onFrameDropped(s.frameId, nowMs);
+    }
+
+    private void nackIfIncomplete(Slot s, long nowMs) {
+        int missingCount = s.totalChunks - s.dataCount;
+        if (missingCount <= 0 || !nacks.shouldNack(s.frameId, s.firstReceivedMs, nowMs))
+            return;
+
+        int[] missing = new int[missingCount];
+        int n = 0;
+        for (int i = s.received.nextClearBit(0); i < s.totalChunks && n < missingCount; i = s.received
+                .nextClearBit(i + 1))
+            missing[n++] = i;
+        onNack.accept(new NackPacket(s.frameId, missing));
+    }
+
+    private static void ensureData(Slot s, int capacity) {
+        if (s.data.length < capacity)
+            s.data = Arrays.copyOf(s.data, Math.max(capacity, s.data.length * 2));
+    }
+}
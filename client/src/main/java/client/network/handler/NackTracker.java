@@ -0,0 +1,65 @@
+package client.network.handler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Theo dõi các frame đã gửi NACK: mỗi frame NACK tối đa một lần, và chỉ khi còn trong hạn hiển thị.
+ * Chỉ được gọi trên event loop UDP.
+ */
+class NackTracker {
+
+    // quá hạn này thì chunk gửi lại cũng không kịp hiển thị
+    static final long DEADLINE_MS = Long.getLong("ultraview.video.nackDeadlineMs", 150);
+    // nhớ frame đã NACK mà bị bỏ trong khoảng này để đếm chunk gửi lại tới muộn
+    private static final long EXPIRED_KEEP_MS = 1000;
+
+    private final Map<Long, Long> nacked = new HashMap<>();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder repaired = new LongAdder();
+    private final LongAdder late = new LongAdder();
+    private final Map<Long, Long> expired = new HashMap<>();
+    private final LongAdder lateChunks = new LongAdder();
+
+    /** @return true nếu nên gửi NACK cho frame này ngay bây giờ */
+    boolean shouldNack(long frameId, long firstReceivedMs, long nowMs) {
+        if (nowMs - firstReceivedMs > DEADLINE_MS || nacked.containsKey(frameId))
+            return false;
+        nacked.put(frameId, nowMs);
+        sent.increment();
+        return true;
+    }
+
+    /** Phiên stream mới: frameId bắt đầu lại, các NACK cũ không còn ý nghĩa. */
+    void reset() {
+        nacked.clear();
+        expired.clear();
+    }
+
+    void onFrameCompleted(long frameId) {
+        if (nacked.remove(frameId) != null)
+            repaired.increment();
+    }
+
+    /** Frame đã NACK bị bỏ: chunk gửi lại không tới kịp hạn hiển thị. */
+    void onFrameDropped(long frameId, long nowMs) {
+        expired.values().removeIf(droppedMs -> nowMs - droppedMs > EXPIRED_KEEP_MS);
+        if (nacked.remove(frameId) != null) {
+            late.increment();
+            expired.put(frameId, nowMs);
+        }
+    }
+
+    /** Chunk của frame đã giao/bỏ; tính là gửi lại vô ích nếu frame đó đã NACK rồi bị bỏ. */
+    void onStaleChunk(long frameId) {
+        if (expired.containsKey(frameId))
+            lateChunks.increment();
+    }
+
+    @Override
+    public String toString() {
+        return "nack sent=" + sent.sum() + " repaired=" + repaired.sum() + " late=" + late.sum()
+                + " lateChunks=" + lateChunks.sum();
+    }
+}
@@ -0,0 +1,56 @@
+package client.network.handler;
+
+import protocol.media.ReceiverReportPacket;
+
+/**
+ * Thống kê luồng video nhận được giữa hai lần gửi ReceiverReport.
+ * Chỉ được gọi trên event loop của channel UDP nên không cần đồng bộ.
+ */
+class ReceiverStats {
+
+    private long intervalStartMs = System.currentTimeMillis();
+    private int framesCompleted;
+    private int framesDropped;
+    private int chunksExpected;
+    private int chunksReceived;
+    private long delaySumMs;
+    private int minDelayMs = Integer.MAX_VALUE;
+
+    void onFrameSeen(int totalChunks) {
+        chunksExpected += totalChunks;
+    }
+
+    void onChunk(long delayMs) {
+        chunksReceived++;
+        delaySumMs += delayMs;
+        if (delayMs < minDelayMs)
+            minDelayMs = (int) delayMs;
+    }
+
+    void onFrameCompleted() {
+        framesCompleted++;
+    }
+
+    void onFrameDropped() {
+        framesDropped++;
+    }
+
+    /** Lấy báo cáo của khoảng vừa qua và bắt đầu khoảng mới; null nếu không nhận được gì. */
+    ReceiverReportPacket drain() {
+        long now = System.currentTimeMillis();
+        ReceiverReportPacket report = null;
+        if (chunksExpected > 0) {
+            int avgDelay = chunksReceived == 0 ? 0 : (int) (delaySumMs / chunksReceived);
+            report = new ReceiverReportPacket((int) (now - intervalStartMs), framesCompleted, framesDropped,
+                    chunksExpected, chunksReceived, avgDelay, chunksReceived == 0 ? 0 : minDelayMs);
+        }
+        intervalStartMs = now;
+        framesCompleted = 0;
+        framesDropped = 0;
+        chunksExpected = 0;
+        chunksReceived = 0;
+        delaySumMs = 0;
+        minDelayMs = Integer.MAX_VALUE;
+        return report;
+    }
+}
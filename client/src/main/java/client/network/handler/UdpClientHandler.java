@@ -1,113 +1,185 @@
 package client.network.handler;
 
+import client.service.video.FrameDecodeWorker;
+import client.service.video.RemoteCursor;
+import client.service.video.RemoteFrameBuffer;
+import codec.DatagramHeader;
 import codec.KryoSerializer;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.socket.DatagramPacket;
-import javafx.application.Platform;
-import javafx.scene.image.Image;
+import io.netty.util.concurrent.EventExecutor;
+import protocol.media.CursorPacket;
+import protocol.media.KeyframeRequestPacket;
+import protocol.media.NackPacket;
+import protocol.media.ReceiverReportPacket;
 import protocol.media.VideoPacket;
 
-import java.io.ByteArrayInputStream;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
+/**
+ * Nhận chunk video qua UDP, ghép frame bằng {@link FrameReassembler} rồi giao cho {@link FrameDecodeWorker}.
+ * Mỗi NetworkClient có một instance riêng; mọi trạng thái chỉ được chạm trên event loop UDP.
+ */
 public class UdpClientHandler extends SimpleChannelInboundHandler<DatagramPacket> {
 
-    public static Consumer<Image> onImageReceived;
+    private static final int REASSEMBLY_SLOTS = 16;
+    private static final long SWEEP_INTERVAL_MS = 100;
+    // chờ keyframe quá lâu (request hoặc keyframe bị mất) thì xin lại
+    private static final long KEYFRAME_RETRY_MS = 500;
+
+    /** Gửi NACK các chunk thiếu cho bên chia sẻ màn hình. */
+    private volatile Consumer<NackPacket> onNack;
+    private volatile Consumer<KeyframeRequestPacket> onKeyframeRequest;
+
+    // event loop UDP, có sau channelActive; resetStream() chuyển việc sang đây
+    private volatile EventExecutor executor;
+
+    private final FrameDecodeWorker decoder = new FrameDecodeWorker();
+    private final RemoteCursor cursor = new RemoteCursor();
+    private final ReceiverStats stats = new ReceiverStats();
+    private final NackTracker nacks = new NackTracker();
+    private final FrameReassembler reassembler = new FrameReassembler(REASSEMBLY_SLOTS, stats, nacks,
+            this::sendNack, this::deliver);
+    // dùng lại cho mọi datagram: chỉ giữ header, data được copy thẳng vào slot
+    private final VideoPacket header = new VideoPacket();
+
+    // chuỗi delta: frame cuối đã giao cho decoder, và có đang chờ keyframe để vá chỗ hổng không
+    private long lastDeliveredFrameId = -1;
+    private boolean awaitingKeyframe;
+    private long lastKeyframeRequestMs;
+    private long keyframeRequests;
+
+    /** Khung hình đã giải mã; FX thread gọi present() mỗi pulse. */
+    public RemoteFrameBuffer frames() {
+        return decoder.frames();
+    }
+
+    public void setOnNack(Consumer<NackPacket> onNack) {
+        this.onNack = onNack;
+    }
+
+    public void setOnKeyframeRequest(Consumer<KeyframeRequestPacket> onKeyframeRequest) {
+        this.onKeyframeRequest = onKeyframeRequest;
+    }
 
-    public static void setOnImageReceived(Consumer<Image> listener) {
-        onImageReceived = listener;
+    public RemoteCursor cursor() {
+        return cursor;
     }
 
-    private static final Map<Long, Map<Integer, byte[]>> frameBuffer = new ConcurrentHashMap<>();
-    private static final Map<Long, Long> frameTimestamps = new ConcurrentHashMap<>();
-    private static long lastProcessedFrameId = -1;
+    public String nackStats() {
+        return nacks + " keyframeRequests=" + keyframeRequests + " " + decoder;
+    }
+
+    /** Báo cáo nhận video từ lần gọi trước (null nếu không nhận gì); gọi trên event loop UDP. */
+    public ReceiverReportPacket drainReport() {
+        return stats.drain();
+    }
+
+    /**
+     * Bắt đầu/kết thúc phiên: quên trạng thái ghép frame và chuỗi delta của sender cũ.
+     * Gọi từ thread nào cũng được.
+     */
+    public void resetStream() {
+        EventExecutor loop = executor;
+        if (loop != null)
+            loop.execute(this::doResetStream);
+    }
+
+    private void doResetStream() {
+        reassembler.reset();
+        nacks.reset();
+        lastDeliveredFrameId = -1;
+        awaitingKeyframe = false;
+        lastKeyframeRequestMs = 0;
+    }
 
     @Override
-    protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket datagram) throws Exception {
-        byte[] data = new byte[datagram.content().readableBytes()];
-        datagram.content().readBytes(data);
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        executor = ctx.executor();
+        decoder.start();
+        // dọn frame quá hạn theo lịch cố định thay vì chờ chunk kế tiếp tới
+        ctx.executor().scheduleAtFixedRate(this::sweep, SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+        super.channelActive(ctx);
+    }
 
-        VideoPacket packet;
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket datagram) throws Exception {
+        ByteBuf content = datagram.content();
+        int length;
         try {
-            Object obj = KryoSerializer.deserialize(data);
-
-            if (obj instanceof VideoPacket) {
-                packet = (VideoPacket) obj;
-            } else {
+            DatagramHeader.skip(content);
+            length = KryoSerializer.readVideoChunk(content, header);
+            if (length < 0) {
+                // không phải chunk video: kênh con trỏ dùng chung socket UDP
+                Object obj = KryoSerializer.deserialize(content);
+                if (obj instanceof CursorPacket)
+                    cursor.update((CursorPacket) obj);
                 return;
             }
         } catch (Exception e) {
             System.err.println("Lỗi giải mã UDP: " + e.getMessage());
             return;
         }
-
-        if (packet.getData() == null || packet.getData().length == 0 || packet.getTotalChunks() == 0) {
-            return;
-        }
-
-        long frameId = packet.getFrameId();
-        int chunkIndex = packet.getChunkIndex();
-        int totalChunks = packet.getTotalChunks();
-
-        if (frameId < lastProcessedFrameId)
+        if (length <= 0 || header.getTotalChunks() == 0)
             return;
 
-        frameBuffer.putIfAbsent(frameId, new ConcurrentHashMap<>());
-        frameBuffer.get(frameId).put(chunkIndex, packet.getData());
-        frameTimestamps.putIfAbsent(frameId, System.currentTimeMillis());
-
-        if (frameBuffer.get(frameId).size() == totalChunks) {
-            assembleAndDisplay(frameId, totalChunks);
-        } else {
-            long firstReceived = frameTimestamps.get(frameId);
-            if (System.currentTimeMillis() - firstReceived > 2000) {
-                frameBuffer.remove(frameId);
-                frameTimestamps.remove(frameId);
-            }
-        }
+        reassembler.accept(header, content, length, System.currentTimeMillis());
     }
 
-    private void assembleAndDisplay(long frameId, int totalChunks) {
-        try {
-            Map<Integer, byte[]> chunks = frameBuffer.get(frameId);
-            int totalSize = 0;
-            for (int i = 0; i < totalChunks; i++) {
-                if (!chunks.containsKey(i))
-                    return;
-                totalSize += chunks.get(i).length;
-            }
-
-            byte[] fullImage = new byte[totalSize];
-            int currentPos = 0;
-            for (int i = 0; i < totalChunks; i++) {
-                byte[] chunk = chunks.get(i);
-                System.arraycopy(chunk, 0, fullImage, currentPos, chunk.length);
-                currentPos += chunk.length;
-            }
-
-            ByteArrayInputStream bis = new ByteArrayInputStream(fullImage);
-            Image image = new Image(bis);
+    // frame đủ chunk, đúng thứ tự frameId; gọi từ accept() hoặc sweep()
+    private void deliver(FrameReassembler.Frame frame) {
+        long now = System.currentTimeMillis();
+        // frameId của sender liên tiếp: nhảy cóc nghĩa là có frame mất hẳn hoặc bị bỏ khi chưa đủ chunk
+        boolean gap = lastDeliveredFrameId >= 0 && frame.frameId != lastDeliveredFrameId + 1;
+        long previous = lastDeliveredFrameId;
+        lastDeliveredFrameId = frame.frameId;
+        if (frame.keyframe)
+            awaitingKeyframe = false;
+
+        // buffer của slot sẽ được dùng lại: worker copy ra rồi giải mã ngoài event loop
+        boolean chained = decoder.submit(frame.format, frame.codec, frame.keyframe, frame.data,
+                frame.length);
+        if (!frame.keyframe && (gap || !chained || awaitingKeyframe))
+            requestKeyframe(gap ? previous : frame.frameId, now);
+    }
 
-            if (onImageReceived != null) {
-                Platform.runLater(() -> onImageReceived.accept(image));
-            }
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        decoder.close();
+        super.channelInactive(ctx);
+    }
 
-            lastProcessedFrameId = frameId;
-            frameBuffer.remove(frameId);
-            frameTimestamps.remove(frameId);
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        reassembler.sweep(now);
+        if (awaitingKeyframe)
+            requestKeyframe(lastDeliveredFrameId, now);
+    }
 
-            frameBuffer.keySet().removeIf(id -> id < lastProcessedFrameId);
+    // delta vẫn được áp (hình cập nhật một phần còn hơn đứng hình) nhưng màn hình sai tới khi có keyframe
+    private void requestKeyframe(long lastGoodFrameId, long now) {
+        awaitingKeyframe = true;
+        if (now - lastKeyframeRequestMs < KEYFRAME_RETRY_MS)
+            return;
+        lastKeyframeRequestMs = now;
+        keyframeRequests++;
+        Consumer<KeyframeRequestPacket> listener = onKeyframeRequest;
+        if (listener != null)
+            listener.accept(new KeyframeRequestPacket(lastGoodFrameId));
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    private void sendNack(NackPacket nack) {
+        Consumer<NackPacket> listener = onNack;
+        if (listener != null)
+            listener.accept(nack);
     }
 
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         cause.printStackTrace();
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package client.network.p2p;
 
+import client.network.handler.ClientHandler;
 import client.service.audio.AudioPlayer;
 import client.service.input.ControlExecutor;
 import io.netty.channel.ChannelHandlerContext;
@@ -10,6 +11,9 @@ import protocol.core.PacketType;
 import protocol.input.ClipboardPacket;
 import protocol.input.ControlPayload;
 import protocol.media.AudioPacket;
+import protocol.media.KeyframeRequestPacket;
+import protocol.media.NackPacket;
+import protocol.media.ReceiverReportPacket;
 import protocol.p2p.P2PHelloPacket;
 
 import java.awt.*;
@@ -61,6 +65,21 @@ public class PeerControlHandler extends SimpleChannelInboundHandler<NetworkPacke
                 audioPlayer.play(audio.getData());
                 break;
 
+            case RECEIVER_REPORT:
+                if (ClientHandler.onReceiverReport != null)
+                    ClientHandler.onReceiverReport.accept((ReceiverReportPacket) packet.getPayload());
+                break;
+
+            case VIDEO_NACK:
+                if (ClientHandler.onVideoNack != null)
+                    ClientHandler.onVideoNack.accept((NackPacket) packet.getPayload());
+                break;
+
+            case KEYFRAME_REQUEST:
+                if (ClientHandler.onKeyframeRequest != null)
+                    ClientHandler.onKeyframeRequest.accept((KeyframeRequestPacket) packet.getPayload());
+                break;
+
             default:
                 // ignore
                 break;
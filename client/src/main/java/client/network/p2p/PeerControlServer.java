@@ -1,7 +1,9 @@
 package client.network.p2p;
 
+import codec.FramePayloadDecoder;
 import codec.NettyKryoDecoder;
 import codec.NettyKryoEncoder;
+import codec.PriorityOutboundHandler;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
 import io.netty.channel.nio.NioEventLoopGroup;
@@ -34,7 +36,9 @@ public class PeerControlServer {
                     protected void initChannel(SocketChannel ch) {
                         ChannelPipeline p = ch.pipeline();
                         p.addLast(new NettyKryoDecoder());
+                        p.addLast(new FramePayloadDecoder());
                         p.addLast(new NettyKryoEncoder());
+                        p.addLast(new PriorityOutboundHandler());
                         p.addLast(new PeerControlHandler(sessionState));
                     }
                 })
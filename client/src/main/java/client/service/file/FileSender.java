@@ -1,6 +1,7 @@
 package client.service.file;
 
 import client.network.NetworkClient;
+import io.netty.channel.ChannelFuture;
 import protocol.core.NetworkPacket;
 import protocol.core.PacketType;
 import protocol.file.*;
@@ -9,11 +10,23 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 
 public class FileSender {
 
+    /**
+     * Số chunk tối đa đã giao cho Netty mà chưa ghi xong xuống socket. isTcpWritable() không thấy các lần ghi
+     * còn nằm trong task queue của event loop hay trong làn BULK của PriorityOutboundHandler, nên chỉ nó
+     * thì thread này đẩy được hàng nghìn chunk vào hàng đợi trước khi channel kịp báo không writable.
+     */
+    private static final int MAX_IN_FLIGHT_CHUNKS = 16;
+
     private final NetworkClient networkClient;
     private final Map<String, File> pendingFiles = new ConcurrentHashMap<>();
+    // server báo partner đọc không kịp (FLOW_CONTROL) -> tạm ngừng gửi chunk
+    private volatile boolean paused;
+    // tăng mỗi khi phiên kết thúc: lượt gửi của phiên cũ tự dừng thay vì đổ chunk vào phiên khác
+    private volatile int sessionGeneration;
 
     public FileSender(NetworkClient networkClient) {
         this.networkClient = networkClient;
@@ -34,6 +47,7 @@ public class FileSender {
         if (file == null || !file.exists())
             return;
 
+        int generation = sessionGeneration;
         new Thread(() -> {
             try {
                 System.out.println("Starting file transfer: " + file.getName());
@@ -45,16 +59,28 @@ public class FileSender {
                     byte[] buffer = new byte[8192];
                     int bytesRead;
 
+                    Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT_CHUNKS);
                     while ((bytesRead = fis.read(buffer)) != -1) {
+                        // chờ server (FLOW_CONTROL), chính channel TCP và số chunk chưa ghi xong thay vì sleep cố định
+                        while ((paused || !networkClient.isTcpWritable() || !inFlight.tryAcquire())
+                                && networkClient.isConnected())
+                            Thread.sleep(5);
+                        if (!networkClient.isConnected() || generation != sessionGeneration) {
+                            System.out.println("File transfer aborted (session ended): " + fileName);
+                            return;
+                        }
+
                         byte[] chunkData = new byte[bytesRead];
                         System.arraycopy(buffer, 0, chunkData, 0, bytesRead);
 
                         boolean isLast = (fis.available() == 0);
 
                         FileChunkPacket chunk = new FileChunkPacket(chunkData, bytesRead, isLast);
-                        networkClient.sendTcpPacket(new NetworkPacket(PacketType.FILE_CHUNK, chunk));
-
-                        Thread.sleep(1);
+                        ChannelFuture written = networkClient.sendTcpPacket(new NetworkPacket(PacketType.FILE_CHUNK, chunk));
+                        if (written == null)
+                            inFlight.release();
+                        else
+                            written.addListener(f -> inFlight.release());
                     }
                 }
                 System.out.println("File sent successfully: " + fileName);
@@ -67,6 +93,19 @@ public class FileSender {
         }).start();
     }
 
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    /**
+     * Phiên kết thúc hoặc mất kết nối: FLOW_CONTROL(false) sẽ không bao giờ tới nữa,
+     * nên bỏ trạng thái tạm dừng để lần gửi sau không chờ mãi.
+     */
+    public void onSessionEnded() {
+        sessionGeneration++;
+        paused = false;
+    }
+
     public void sendFileAccept(String fileName) {
         if (networkClient.isConnected()) {
             networkClient.sendTcpPacket(new NetworkPacket(PacketType.FILE_ACCEPT, new FileAcceptPacket(fileName)));
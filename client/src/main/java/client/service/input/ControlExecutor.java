@@ -8,6 +8,9 @@ public class ControlExecutor {
     private static Robot robot;
     private static Dimension screenSize;
 
+    /** Gọi sau mỗi input đã thực thi: màn hình sắp đổi, ScreenSender về nhịp chụp đầy đủ. */
+    public static Runnable onInputExecuted;
+
     static {
         try {
             robot = new Robot();
@@ -48,6 +51,10 @@ public class ControlExecutor {
                     robot.keyRelease(payload.getKeyCode());
                 break;
         }
+
+        Runnable listener = onInputExecuted;
+        if (listener != null)
+            listener.run();
     }
 
     private static int getMask(int btn) {
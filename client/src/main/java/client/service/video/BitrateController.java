@@ -0,0 +1,110 @@
+package client.service.video;
+
+import protocol.media.ReceiverReportPacket;
+
+import java.util.ArrayDeque;
+
+/**
+ * Điều chỉnh chất lượng JPEG, tỉ lệ thu nhỏ và fps theo báo cáo của người xem
+ * (mất chunk và xu hướng độ trễ một chiều), kiểu AIMD: nghẽn thì giảm theo tỉ lệ, ổn thì tăng từ từ.
+ *
+ * Trạng thái gói trong một mức level 0..1, giảm lần lượt theo thứ tự:
+ * chất lượng JPEG (2/3..1) -> fps (1/3..2/3) -> độ phân giải (0..1/3).
+ * Giới hạn đọc từ system property ultraview.abr.*.
+ */
+public class BitrateController {
+
+    private static final double DECREASE_FACTOR = 0.85;
+    private static final double INCREASE_STEP = 0.05;
+    private static final float HIGH_LOSS = 0.10f;
+    private static final float LOW_LOSS = 0.02f;
+    // độ trễ tăng so với mức nền: hàng đợi trên đường truyền đang dồn
+    private static final int DELAY_OVERUSE_MS = 80;
+    private static final int DELAY_NORMAL_MS = 30;
+    // số báo cáo (~giây) để tìm mức độ trễ nền
+    private static final int BASELINE_WINDOW = 30;
+
+    private final float minQuality = floatProperty("ultraview.abr.minQuality", 0.2f);
+    private final float maxQuality = floatProperty("ultraview.abr.maxQuality", 0.5f);
+    private final float minScale = floatProperty("ultraview.abr.minScale", 0.5f);
+    private final int minIntervalMs = Integer.getInteger("ultraview.abr.minIntervalMs", 30);
+    private final int maxIntervalMs = Integer.getInteger("ultraview.abr.maxIntervalMs", 100);
+    private final int fixedFecGroup = Integer.getInteger("ultraview.fec.group", -1);
+
+    private final ArrayDeque<Integer> recentMinDelays = new ArrayDeque<>();
+    private volatile double level = 1.0;
+    private volatile float lastLoss;
+    private volatile int lastDelayTrendMs;
+
+    public synchronized void onReport(ReceiverReportPacket report) {
+        if (report.getChunksExpected() <= 0)
+            return;
+
+        float loss = Math.max(0f, 1f - report.getChunksReceived() / (float) report.getChunksExpected());
+
+        recentMinDelays.addLast(report.getMinDelayMs());
+        if (recentMinDelays.size() > BASELINE_WINDOW)
+            recentMinDelays.removeFirst();
+        int baseline = Integer.MAX_VALUE;
+        for (int d : recentMinDelays)
+            baseline = Math.min(baseline, d);
+        int trend = report.getAvgDelayMs() - baseline;
+
+        if (loss > HIGH_LOSS || trend > DELAY_OVERUSE_MS)
+            level *= DECREASE_FACTOR;
+        else if (loss < LOW_LOSS && trend < DELAY_NORMAL_MS)
+            level = Math.min(1.0, level + INCREASE_STEP);
+
+        lastLoss = loss;
+        lastDelayTrendMs = trend;
+    }
+
+    /**
+     * Số chunk dữ liệu mỗi nhóm FEC theo tỉ lệ mất gói gần nhất (0 = tắt FEC).
+     * -Dultraview.fec.group=N cố định giá trị.
+     */
+    public int fecGroupSize() {
+        if (fixedFecGroup >= 0)
+            return fixedFecGroup;
+        float loss = lastLoss;
+        if (loss < 0.01f)
+            return 0;
+        if (loss < 0.05f)
+            return 8;
+        if (loss < 0.10f)
+            return 4;
+        return 2;
+    }
+
+    public float quality() {
+        return (float) lerp(minQuality, maxQuality, segment(level, 2.0 / 3));
+    }
+
+    public float scale() {
+        return (float) lerp(minScale, 1.0, segment(level, 0));
+    }
+
+    public int frameIntervalMs() {
+        return (int) Math.round(lerp(maxIntervalMs, minIntervalMs, segment(level, 1.0 / 3)));
+    }
+
+    // vị trí 0..1 của level trong đoạn [from, from + 1/3]
+    private static double segment(double level, double from) {
+        return Math.max(0, Math.min(1, (level - from) * 3));
+    }
+
+    private static double lerp(double a, double b, double t) {
+        return a + (b - a) * t;
+    }
+
+    private static float floatProperty(String key, float def) {
+        String v = System.getProperty(key);
+        return v == null ? def : Float.parseFloat(v);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("abr[q=%.2f scale=%.2f interval=%dms fec=%d loss=%.1f%% delayTrend=%dms]",
+                quality(), scale(), frameIntervalMs(), fecGroupSize(), lastLoss * 100, lastDelayTrendMs);
+    }
+}
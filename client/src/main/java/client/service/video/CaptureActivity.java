@@ -0,0 +1,72 @@
+package client.service.video;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nhịp chụp theo hoạt động: màn hình đứng yên quá {@link #QUIET_MS} thì chụp thưa
+ * ({@link #IDLE_INTERVAL_MS}), có pixel đổi hoặc input từ người xem thì về nhịp đầy đủ ngay.
+ * Đồng thời đếm thời gian idle/active và lượng dữ liệu tiết kiệm được nhờ bỏ khung không đổi.
+ */
+final class CaptureActivity {
+
+    static final long QUIET_MS = Long.getLong("ultraview.capture.quietMs", 2000);
+    static final long IDLE_INTERVAL_MS = Long.getLong("ultraview.capture.idleIntervalMs", 500);
+    // khung không đổi: chỉ gửi datagram rỗng định kỳ để người xem/NAT biết luồng còn sống
+    static final long HEARTBEAT_MS = 1000;
+
+    private volatile long lastActivityMs = System.currentTimeMillis();
+    private long lastAccountNanos = System.nanoTime();
+    private long idleNanos;
+    private long activeNanos;
+
+    private long skippedFrames;
+    private long heartbeats;
+    private long sentFrames;
+    private long sentBytes;
+
+    /** Pixel đổi hoặc có input: về nhịp đầy đủ. */
+    void onActivity() {
+        lastActivityMs = System.currentTimeMillis();
+    }
+
+    boolean isIdle() {
+        return System.currentTimeMillis() - lastActivityMs > QUIET_MS;
+    }
+
+    /** Khoảng chờ tới lần chụp sau. */
+    long intervalMs(long activeIntervalMs) {
+        return isIdle() ? Math.max(activeIntervalMs, IDLE_INTERVAL_MS) : activeIntervalMs;
+    }
+
+    /** Gọi mỗi lần chụp: cộng thời gian từ lần trước vào idle hoặc active. */
+    synchronized void account() {
+        long now = System.nanoTime();
+        if (isIdle())
+            idleNanos += now - lastAccountNanos;
+        else
+            activeNanos += now - lastAccountNanos;
+        lastAccountNanos = now;
+    }
+
+    synchronized void onSkipped() {
+        skippedFrames++;
+    }
+
+    synchronized void onHeartbeat() {
+        heartbeats++;
+    }
+
+    synchronized void onSent(int bytes) {
+        sentFrames++;
+        sentBytes += bytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        // ước lượng: mỗi khung bỏ qua lẽ ra tốn trung bình bằng một khung đã gửi
+        long savedBytes = sentFrames == 0 ? 0 : skippedFrames * (sentBytes / sentFrames);
+        return String.format("active=%ds idle=%ds unchanged=%d heartbeats=%d saved~%dKB",
+                TimeUnit.NANOSECONDS.toSeconds(activeNanos), TimeUnit.NANOSECONDS.toSeconds(idleNanos),
+                skippedFrames, heartbeats, savedBytes / 1024);
+    }
+}
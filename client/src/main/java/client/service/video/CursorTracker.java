@@ -0,0 +1,95 @@
+package client.service.video;
+
+import client.network.NetworkClient;
+import protocol.media.CursorPacket;
+
+import javax.imageio.ImageIO;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.MouseInfo;
+import java.awt.Point;
+import java.awt.PointerInfo;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Đọc vị trí chuột của bên chia sẻ và gửi {@link CursorPacket} qua UDP khi nó đổi.
+ * Hình con trỏ chỉ gửi kèm lần đầu và định kỳ (phòng gói mất); các gói khác chỉ mang hash.
+ *
+ * AWT không đọc được hình con trỏ hệ thống nên dùng một mũi tên vẽ sẵn.
+ */
+final class CursorTracker {
+
+    static final long INTERVAL_MS = 15;
+    // gửi lại vị trí dù không đổi: người xem mới vào hoặc vừa mất gói vẫn thấy con trỏ
+    private static final long KEEPALIVE_MS = 1000;
+    private static final long SHAPE_RESEND_MS = 2000;
+
+    private final NetworkClient networkClient;
+    private final Rectangle screenRect;
+    private final byte[] shape;
+    private final int shapeHash;
+
+    private long seq;
+    private float lastX = -1;
+    private float lastY = -1;
+    private long lastSentMs;
+    private long lastShapeSentMs;
+
+    CursorTracker(NetworkClient networkClient, Rectangle screenRect) {
+        this.networkClient = networkClient;
+        this.screenRect = screenRect;
+        this.shape = arrowPng();
+        this.shapeHash = Arrays.hashCode(shape);
+    }
+
+    /** Gọi định kỳ mỗi {@link #INTERVAL_MS}. */
+    void poll() {
+        PointerInfo info = MouseInfo.getPointerInfo();
+        if (info == null || screenRect == null || screenRect.isEmpty())
+            return;
+        Point p = info.getLocation();
+        float x = (p.x - screenRect.x) / (float) screenRect.width;
+        float y = (p.y - screenRect.y) / (float) screenRect.height;
+
+        long now = System.currentTimeMillis();
+        if (x == lastX && y == lastY && now - lastSentMs < KEEPALIVE_MS)
+            return;
+
+        boolean withShape = now - lastShapeSentMs >= SHAPE_RESEND_MS;
+        networkClient.sendCursor(new CursorPacket(seq++, x, y, shapeHash, 0, 0, withShape ? shape : null));
+        lastX = x;
+        lastY = y;
+        lastSentMs = now;
+        if (withShape)
+            lastShapeSentMs = now;
+    }
+
+    // mũi tên trắng viền đen, đầu nhọn ở (0, 0) = hotspot
+    private static byte[] arrowPng() {
+        BufferedImage img = new BufferedImage(14, 21, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        Polygon arrow = new Polygon(new int[] { 1, 1, 5, 8, 10, 7, 12 }, new int[] { 1, 17, 13, 19, 18, 12, 12 }, 7);
+        g.setColor(Color.WHITE);
+        g.fillPolygon(arrow);
+        g.setColor(Color.BLACK);
+        g.setStroke(new BasicStroke(1.2f));
+        g.drawPolygon(arrow);
+        g.dispose();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(img, "png", out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+}
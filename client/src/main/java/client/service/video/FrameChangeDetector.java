@@ -0,0 +1,48 @@
+package client.service.video;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Phát hiện màn hình không đổi bằng checksum từng hàng pixel, so với lần gọi trước.
+ * Một lượt đọc mảng pixel, không cấp phát: rẻ hơn nhiều so với mask + nén + gửi một khung giống hệt.
+ */
+final class FrameChangeDetector {
+
+    private int[] rowHashes = new int[0];
+    private int width;
+    private volatile boolean invalid = true;
+
+    /** Lần kiểm tra sau luôn báo đổi (vd. khung trước đó bị bỏ giữa pipeline, cần keyframe). */
+    void invalidate() {
+        invalid = true;
+    }
+
+    /** @return true nếu khung khác khung trước (hoặc không đọc thẳng được mảng pixel) */
+    boolean changed(BufferedImage frame) {
+        int w = frame.getWidth();
+        int h = frame.getHeight();
+        // Robot trả về TYPE_INT_RGB; kiểu khác thì coi như luôn đổi
+        if (frame.getType() != BufferedImage.TYPE_INT_RGB || !(frame.getRaster().getDataBuffer() instanceof DataBufferInt)
+                || frame.getRaster().getParent() != null)
+            return true;
+        int[] pixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+
+        boolean changed = invalid || w != width || h != rowHashes.length;
+        invalid = false;
+        if (rowHashes.length != h)
+            rowHashes = new int[h];
+        width = w;
+
+        for (int y = 0; y < h; y++) {
+            int hash = 1;
+            for (int i = y * w, end = i + w; i < end; i++)
+                hash = 31 * hash + pixels[i];
+            if (hash != rowHashes[y]) {
+                rowHashes[y] = hash;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,166 @@
+package client.service.video;
+
+import codec.KryoSerializer;
+import codec.image.FrameCodecs;
+import codec.image.FrameDecoder;
+import io.netty.buffer.Unpooled;
+import protocol.media.TileFrame;
+import protocol.media.VideoPacket;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Giải mã frame video trên thread riêng, tách khỏi event loop UDP và FX thread.
+ * Keyframe mới bỏ mọi frame đang chờ giải mã (chúng đã bị phủ hết); delta frame phải được áp đủ
+ * nên xếp hàng, tối đa {@link #MAX_PENDING_DELTAS}. Pixel giải mã xong được ghi vào
+ * {@link RemoteFrameBuffer}, nơi FX thread lấy phần thay đổi mỗi pulse.
+ * Thread giải mã chạy từ {@link #start()} tới {@link #close()} (theo vòng đời channel UDP).
+ */
+public final class FrameDecodeWorker implements Runnable {
+
+    static final int MAX_PENDING_DELTAS = 16;
+
+    private static final class Encoded {
+        byte[] data = new byte[256 * 1024];
+        int length;
+        int format;
+        int codec;
+    }
+
+    private final ArrayDeque<Encoded> pending = new ArrayDeque<>();
+    private long skipped;
+    private final ConcurrentLinkedQueue<Encoded> free = new ConcurrentLinkedQueue<>();
+    private final RemoteFrameBuffer frames = new RemoteFrameBuffer();
+    private final TileCompositor compositor = new TileCompositor();
+    private final StageTimer decodeTimer = new StageTimer("decode");
+    // tạo khi gặp codec lần đầu; chỉ thread giải mã dùng
+    private final Map<Integer, FrameDecoder> decoders = new HashMap<>();
+    private Thread thread;
+
+    /** Chạy thread giải mã; gọi lại khi đang chạy thì không làm gì. */
+    public synchronized void start() {
+        if (thread != null)
+            return;
+        thread = new Thread(this, "video-decode");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Dừng thread giải mã và bỏ các frame đang chờ; chờ frame đang giải mã xong để lần {@link #start()}
+     * sau không chạy hai thread trên cùng compositor.
+     */
+    public synchronized void close() {
+        Thread t = thread;
+        if (t == null)
+            return;
+        thread = null;
+        t.interrupt();
+        synchronized (pending) {
+            for (Encoded old; (old = pending.poll()) != null;)
+                free.offer(old);
+        }
+        if (t == Thread.currentThread())
+            return;
+        try {
+            t.join(1_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Giao frame đã ghép đủ chunk; copy data nên caller được dùng lại buffer ngay. Không bao giờ chặn.
+     *
+     * @return false nếu hàng delta đầy và đã bị bỏ: cần keyframe để màn hình đúng lại
+     */
+    public boolean submit(int format, int codec, boolean keyframe, byte[] data, int length) {
+        Encoded e = free.poll();
+        if (e == null)
+            e = new Encoded();
+        if (e.data.length < length)
+            e.data = new byte[Math.max(length, e.data.length * 2)];
+        System.arraycopy(data, 0, e.data, 0, length);
+        e.length = length;
+        e.format = format;
+        e.codec = codec;
+
+        boolean chained = true;
+        synchronized (pending) {
+            if (keyframe || pending.size() >= MAX_PENDING_DELTAS) {
+                chained = keyframe;
+                skipped += pending.size();
+                for (Encoded old; (old = pending.poll()) != null;)
+                    free.offer(old);
+            }
+            pending.add(e);
+            pending.notifyAll();
+        }
+        return chained;
+    }
+
+    private Encoded take() throws InterruptedException {
+        synchronized (pending) {
+            while (pending.isEmpty())
+                pending.wait();
+            return pending.poll();
+        }
+    }
+
+    public RemoteFrameBuffer frames() {
+        return frames;
+    }
+
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Encoded e;
+            try {
+                e = take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            long start = System.nanoTime();
+            try {
+                if (e.format == VideoPacket.FORMAT_TILES) {
+                    Object tiles = KryoSerializer.deserialize(Unpooled.wrappedBuffer(e.data, 0, e.length));
+                    Rectangle dirty = compositor.apply((TileFrame) tiles, decoder(e.codec));
+                    if (!dirty.isEmpty())
+                        frames.publish(compositor.canvas(((TileFrame) tiles).getWidth(),
+                                ((TileFrame) tiles).getHeight()), dirty.x, dirty.y, dirty.width, dirty.height);
+                } else {
+                    // giải mã thẳng vào canvas của compositor: không tạo ảnh mới mỗi frame
+                    BufferedImage canvas = decoder(e.codec).decode(e.data, 0, e.length, compositor.canvas());
+                    compositor.replace(canvas);
+                    frames.publish(canvas, 0, 0, canvas.getWidth(), canvas.getHeight());
+                }
+                decodeTimer.record(start);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            } finally {
+                free.offer(e);
+            }
+        }
+    }
+
+    // id lạ (sender mới hơn): FrameCodecs ném IllegalArgumentException, frame bị bỏ
+    private FrameDecoder decoder(int codec) {
+        return decoders.computeIfAbsent(codec, FrameCodecs::newDecoder);
+    }
+
+    @Override
+    public String toString() {
+        long skippedFrames;
+        synchronized (pending) {
+            skippedFrames = skipped;
+        }
+        return decodeTimer + " skippedBeforeDecode=" + skippedFrames + " " + frames;
+    }
+}
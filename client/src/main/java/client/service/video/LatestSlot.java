@@ -0,0 +1,39 @@
+package client.service.video;
+
+/**
+ * Hàng đợi một phần tử kiểu "mới nhất thắng" giữa hai stage của pipeline video:
+ * put() không bao giờ chặn, phần tử cũ chưa được lấy bị thay thế (và trả lại để tái sử dụng).
+ */
+final class LatestSlot<T> {
+
+    private T item;
+    private long dropped;
+
+    /** @return phần tử cũ bị thay thế, hoặc null */
+    synchronized T put(T value) {
+        T old = item;
+        item = value;
+        if (old != null)
+            dropped++;
+        notifyAll();
+        return old;
+    }
+
+    synchronized T take() throws InterruptedException {
+        while (item == null)
+            wait();
+        T value = item;
+        item = null;
+        return value;
+    }
+
+    synchronized T poll() {
+        T value = item;
+        item = null;
+        return value;
+    }
+
+    synchronized long dropped() {
+        return dropped;
+    }
+}
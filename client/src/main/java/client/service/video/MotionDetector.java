@@ -0,0 +1,154 @@
+package client.service.video;
+
+import protocol.media.CopyRect;
+
+import java.util.Arrays;
+
+/**
+ * Tìm vùng lớn bị dịch dọc (cuộn) hoặc ngang giữa khung trước và khung hiện tại bằng so khớp hash
+ * từng dòng (hàng hoặc cột) trong một vùng. Vùng khớp được gửi thành {@link CopyRect} thay vì nén lại.
+ */
+final class MotionDetector {
+
+    // vùng dịch ngắn hơn thì không đáng một lệnh chép
+    static final int MIN_RUN = 48;
+    // chấm điểm độ dịch trên mỗi SAMPLE dòng cho rẻ, vùng thắng mới kiểm tra đủ
+    private static final int SAMPLE = 4;
+    private static final int MIN_SCORE = 6;
+
+    private int[] currentHashes = new int[0];
+    private int[] previousHashes = new int[0];
+
+    /**
+     * Tìm một vùng dịch trong hộp (bx, by, bw, bh) của khung w cột.
+     *
+     * @return lệnh chép (tọa độ nguồn trên previous), hoặc null
+     */
+    CopyRect detect(int[] current, int[] previous, int w, int bx, int by, int bw, int bh) {
+        // hộp theo ô 64px thường rộng hơn vùng đổi thật; phần không đổi ở mép làm hash dòng theo chiều
+        // kia không khớp, nên thu hộp về đúng vùng đổi trước
+        while (bh > 0 && lineEquals(current, previous, w, bx, by, bw, 1, true, 0, 0)) {
+            by++;
+            bh--;
+        }
+        while (bh > 0 && lineEquals(current, previous, w, bx, by, bw, 1, true, bh - 1, bh - 1))
+            bh--;
+        while (bw > 0 && lineEquals(current, previous, w, bx, by, 1, bh, false, 0, 0)) {
+            bx++;
+            bw--;
+        }
+        while (bw > 0 && lineEquals(current, previous, w, bx, by, 1, bh, false, bw - 1, bw - 1))
+            bw--;
+
+        CopyRect move = detect(current, previous, w, bx, by, bw, bh, true);
+        return move != null ? move : detect(current, previous, w, bx, by, bw, bh, false);
+    }
+
+    private CopyRect detect(int[] current, int[] previous, int w, int bx, int by, int bw, int bh,
+            boolean vertical) {
+        int lines = vertical ? bh : bw;
+        if (lines < MIN_RUN * 2)
+            return null;
+        if (currentHashes.length < lines) {
+            currentHashes = new int[lines];
+            previousHashes = new int[lines];
+        }
+        for (int i = 0; i < lines; i++) {
+            currentHashes[i] = lineHash(current, w, bx, by, bw, bh, vertical, i);
+            previousHashes[i] = lineHash(previous, w, bx, by, bw, bh, vertical, i);
+        }
+
+        // d > 0: dòng i hiện tại = dòng i + d của khung trước (nội dung dịch lên/sang trái)
+        int bestShift = 0;
+        int bestScore = score(lines, 0);
+        int maxShift = lines - MIN_RUN;
+        for (int d = 1; d <= maxShift; d++) {
+            int s = score(lines, d);
+            if (s > bestScore) {
+                bestScore = s;
+                bestShift = d;
+            }
+            s = score(lines, -d);
+            if (s > bestScore) {
+                bestScore = s;
+                bestShift = -d;
+            }
+        }
+        if (bestShift == 0 || bestScore < MIN_SCORE)
+            return null;
+
+        // đoạn dòng liên tiếp dài nhất khớp với độ dịch, kiểm tra pixel thật (tránh trùng hash)
+        int runStart = -1;
+        int runLength = 0;
+        int start = -1;
+        for (int i = 0; i <= lines; i++) {
+            int j = i + bestShift;
+            boolean match = i < lines && j >= 0 && j < lines && currentHashes[i] == previousHashes[j]
+                    && lineEquals(current, previous, w, bx, by, bw, bh, vertical, i, j);
+            if (match && start < 0)
+                start = i;
+            if (!match && start >= 0) {
+                if (i - start > runLength) {
+                    runStart = start;
+                    runLength = i - start;
+                }
+                start = -1;
+            }
+        }
+        if (runLength < MIN_RUN)
+            return null;
+
+        if (vertical)
+            return new CopyRect(bx, by + runStart + bestShift, bw, runLength, 0, -bestShift);
+        return new CopyRect(bx + runStart + bestShift, by, runLength, bh, -bestShift, 0);
+    }
+
+    // số dòng mẫu khớp với độ dịch d; bỏ dòng trùng dòng kế bên (nền trơn khớp với mọi độ dịch)
+    private int score(int lines, int d) {
+        int s = 0;
+        for (int i = Math.max(0, -d); i < lines - 1 && i + d < lines; i += SAMPLE) {
+            int h = currentHashes[i];
+            if (h != currentHashes[i + 1] && h == previousHashes[i + d])
+                s++;
+        }
+        return s;
+    }
+
+    private static int lineHash(int[] pixels, int w, int bx, int by, int bw, int bh, boolean vertical, int i) {
+        int hash = 1;
+        if (vertical) {
+            for (int p = (by + i) * w + bx, end = p + bw; p < end; p++)
+                hash = 31 * hash + pixels[p];
+        } else {
+            for (int p = by * w + bx + i, end = p + bh * w; p < end; p += w)
+                hash = 31 * hash + pixels[p];
+        }
+        return hash;
+    }
+
+    private static boolean lineEquals(int[] current, int[] previous, int w, int bx, int by, int bw, int bh,
+            boolean vertical, int i, int j) {
+        if (vertical) {
+            int a = (by + i) * w + bx;
+            int b = (by + j) * w + bx;
+            return Arrays.equals(current, a, a + bw, previous, b, b + bw);
+        }
+        for (int y = by; y < by + bh; y++)
+            if (current[y * w + bx + i] != previous[y * w + bx + j])
+                return false;
+        return true;
+    }
+
+    /** Áp lệnh chép lên mảng pixel (w cột), đúng cả khi nguồn và đích chồng nhau. */
+    static void apply(int[] pixels, int w, CopyRect r) {
+        int x = r.getX();
+        int rw = r.getWidth();
+        if (r.getDy() > 0) {
+            for (int y = r.getY() + r.getHeight() - 1; y >= r.getY(); y--)
+                System.arraycopy(pixels, y * w + x, pixels, (y + r.getDy()) * w + x + r.getDx(), rw);
+        } else {
+            for (int y = r.getY(); y < r.getY() + r.getHeight(); y++)
+                System.arraycopy(pixels, y * w + x, pixels, (y + r.getDy()) * w + x + r.getDx(), rw);
+        }
+    }
+}
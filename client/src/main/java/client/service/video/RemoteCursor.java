@@ -0,0 +1,49 @@
+package client.service.video;
+
+import javafx.scene.image.Image;
+import protocol.media.CursorPacket;
+
+import java.io.ByteArrayInputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Con trỏ của bên chia sẻ phía người xem: vị trí mới nhất và cache hình theo hash.
+ * Ghi từ event loop UDP, đọc từ FX thread.
+ */
+public final class RemoteCursor {
+
+    private static final int MAX_SHAPES = 32;
+    // seq lùi quá xa = bên chia sẻ bắt đầu phiên mới, không phải gói tới trễ
+    private static final long RESTART_GAP = 1000;
+
+    private final Map<Integer, Image> shapes = new ConcurrentHashMap<>();
+    private volatile CursorPacket latest;
+
+    public void update(CursorPacket packet) {
+        CursorPacket current = latest;
+        if (current != null && packet.getSeq() <= current.getSeq()
+                && current.getSeq() - packet.getSeq() < RESTART_GAP)
+            return;
+
+        byte[] shape = packet.getShape();
+        if (shape != null && !shapes.containsKey(packet.getShapeHash())) {
+            if (shapes.size() >= MAX_SHAPES)
+                shapes.clear();
+            Image image = new Image(new ByteArrayInputStream(shape));
+            if (!image.isError())
+                shapes.put(packet.getShapeHash(), image);
+        }
+        latest = packet;
+    }
+
+    /** Vị trí mới nhất (null nếu chưa nhận gì). */
+    public CursorPacket latest() {
+        return latest;
+    }
+
+    /** Hình đã cache cho hash, hoặc null nếu chưa nhận được. */
+    public Image shape(int shapeHash) {
+        return shapes.get(shapeHash);
+    }
+}
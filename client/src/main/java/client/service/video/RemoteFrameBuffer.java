@@ -0,0 +1,124 @@
+package client.service.video;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Khung hình từ xa dùng chung giữa thread giải mã và FX thread.
+ * Thread giải mã copy vùng thay đổi vào {@code front} và cộng dồn dirty rect; mỗi pulse FX copy
+ * phần dirty sang một {@link PixelBuffer} trên direct buffer rồi gọi updateBuffer chỉ với vùng đó.
+ * {@link WritableImage} sống suốt phiên (chỉ tạo lại khi đổi độ phân giải), nên không có ảnh
+ * full-screen mới mỗi frame và texture chỉ được upload phần thay đổi.
+ */
+public final class RemoteFrameBuffer {
+
+    private final Object lock = new Object();
+
+    // phía thread giải mã (giữ lock)
+    private int[] front = new int[0];
+    private int width;
+    private int height;
+    private int dirtyMinX = Integer.MAX_VALUE;
+    private int dirtyMinY = Integer.MAX_VALUE;
+    private int dirtyMaxX;
+    private int dirtyMaxY;
+    private long published;
+    private long coalesced;
+
+    // chỉ FX thread
+    private PixelBuffer<IntBuffer> pixelBuffer;
+    private WritableImage image;
+
+    /** Chuyển vùng [x, y, w, h) của canvas (TYPE_3BYTE_BGR) sang front ARGB; gọi từ thread giải mã. */
+    void publish(BufferedImage canvas, int x, int y, int w, int h) {
+        int cw = canvas.getWidth();
+        int ch = canvas.getHeight();
+        byte[] src = ((DataBufferByte) canvas.getRaster().getDataBuffer()).getData();
+        synchronized (lock) {
+            if (cw != width || ch != height) {
+                front = new int[cw * ch];
+                width = cw;
+                height = ch;
+                x = 0;
+                y = 0;
+                w = cw;
+                h = ch;
+            }
+            for (int row = y; row < y + h; row++) {
+                int offset = row * cw + x;
+                for (int i = offset, s = offset * 3; i < offset + w; i++, s += 3)
+                    front[i] = 0xFF000000 | (src[s + 2] & 0xFF) << 16 | (src[s + 1] & 0xFF) << 8 | (src[s] & 0xFF);
+            }
+
+            if (dirtyMaxX > 0)
+                coalesced++;
+            dirtyMinX = Math.min(dirtyMinX, x);
+            dirtyMinY = Math.min(dirtyMinY, y);
+            dirtyMaxX = Math.max(dirtyMaxX, x + w);
+            dirtyMaxY = Math.max(dirtyMaxY, y + h);
+            published++;
+        }
+    }
+
+    /**
+     * Đưa phần thay đổi từ lần trước vào ảnh hiển thị; gọi từ FX thread.
+     *
+     * @return false nếu không có gì mới
+     */
+    public boolean present() {
+        synchronized (lock) {
+            if (dirtyMaxX == 0)
+                return false;
+
+            if (pixelBuffer == null || pixelBuffer.getWidth() != width || pixelBuffer.getHeight() != height) {
+                IntBuffer buffer = ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.nativeOrder())
+                        .asIntBuffer();
+                pixelBuffer = new PixelBuffer<>(width, height, buffer, PixelFormat.getIntArgbPreInstance());
+                image = new WritableImage(pixelBuffer);
+                dirtyMinX = 0;
+                dirtyMinY = 0;
+                dirtyMaxX = width;
+                dirtyMaxY = height;
+            }
+
+            int x = dirtyMinX;
+            int y = dirtyMinY;
+            int w = dirtyMaxX - dirtyMinX;
+            int h = dirtyMaxY - dirtyMinY;
+            pixelBuffer.updateBuffer(pb -> {
+                IntBuffer dst = pb.getBuffer();
+                for (int row = y; row < y + h; row++) {
+                    int offset = row * width + x;
+                    dst.put(offset, front, offset, w);
+                }
+                return new Rectangle2D(x, y, w, h);
+            });
+
+            dirtyMinX = Integer.MAX_VALUE;
+            dirtyMinY = Integer.MAX_VALUE;
+            dirtyMaxX = 0;
+            dirtyMaxY = 0;
+            return true;
+        }
+    }
+
+    /** Ảnh hiển thị hiện tại (null trước frame đầu tiên); chỉ dùng trên FX thread. */
+    public WritableImage image() {
+        return image;
+    }
+
+    @Override
+    public String toString() {
+        synchronized (lock) {
+            return "published=" + published + " coalescedBeforeDisplay=" + coalesced;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package client.service.video;
+
+import client.network.NetworkClient;
+import protocol.media.VideoPacket;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Giữ bản sao vài frame đã gửi gần nhất (vòng tròn theo frameId) để gửi lại đúng các chunk
+ * người xem báo thiếu qua NACK. Mảng của mỗi ô được dùng lại, chỉ nới rộng khi frame lớn hơn.
+ */
+class RetransmitBuffer {
+
+    private static final class Slot {
+        long frameId = -1;
+        VideoPacket header;
+        byte[] data = new byte[0];
+        int length;
+    }
+
+    private final Slot[] slots;
+    private final int chunkSize;
+    private final LongAdder retransmitted = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    RetransmitBuffer(int frames, int chunkSize) {
+        this.chunkSize = chunkSize;
+        slots = new Slot[frames];
+        for (int i = 0; i < frames; i++)
+            slots[i] = new Slot();
+    }
+
+    synchronized void store(VideoPacket header, byte[] data, int length) {
+        Slot slot = slots[(int) (header.getFrameId() % slots.length)];
+        if (slot.data.length < length)
+            slot.data = new byte[Math.max(length, slot.data.length * 2)];
+        System.arraycopy(data, 0, slot.data, 0, length);
+        slot.length = length;
+        slot.frameId = header.getFrameId();
+        slot.header = new VideoPacket(header.getSenderId(), header.getTargetId(), null, header.getTimestamp(),
+                header.getFrameId(), 0, header.getTotalChunks(), header.getFormat(), header.getFecGroup(),
+                header.getFrameLength(), header.isKeyframe(), header.getCodec());
+    }
+
+    synchronized void retransmit(long frameId, int[] missingChunks, NetworkClient client) {
+        Slot slot = slots[(int) (frameId % slots.length)];
+        if (slot.frameId != frameId) {
+            expired.increment();
+            return;
+        }
+        for (int index : missingChunks) {
+            int start = index * chunkSize;
+            if (index < 0 || index >= slot.header.getTotalChunks() || start >= slot.length)
+                continue;
+            slot.header.setChunkIndex(index);
+            client.sendVideoChunk(slot.header, slot.data, start, Math.min(chunkSize, slot.length - start));
+            retransmitted.increment();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "retransmitted=" + retransmitted.sum() + " nackExpired=" + expired.sum();
+    }
+}
@@ -1,22 +1,27 @@
 package client.service.video;
 
-import javax.imageio.IIOImage;
-import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.ImageOutputStream;
-
 import client.network.NetworkClient;
 import client.service.ai.WindowSensor;
+import codec.KryoSerializer;
+import codec.image.FrameCodecs;
+import codec.image.FrameEncoder;
+import com.esotericsoftware.kryo.io.Output;
+import protocol.media.KeyframeRequestPacket;
+import protocol.media.NackPacket;
+import protocol.media.ReceiverReportPacket;
+import protocol.media.TileFrame;
 import protocol.media.VideoPacket;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 public class ScreenSender {
@@ -25,17 +30,56 @@ public class ScreenSender {
     private String myId;
     private String targetId;
     private ScheduledExecutorService executor;
-    private boolean isStreaming = false;
+    // con trỏ chạy riêng: không phải chờ capture/encode
+    private ScheduledExecutorService cursorExecutor;
+    private CursorTracker cursorTracker;
+    private ExecutorService stages;
+    // đọc từ event loop (NACK, keyframe request), ControlExecutor và thread capture
+    private volatile boolean isStreaming = false;
     private Robot robot;
     private Rectangle screenRect;
 
-    private static final int MAX_CHUNK_SIZE = 45000;
+    private static final int MAX_CHUNK_SIZE = VideoPacket.MAX_CHUNK_SIZE;
     private long frameIdCounter = 0;
 
     public enum ProtectionLevel {
         NORMAL, STRICT
     }
 
+    // chỉ gửi các ô 64x64 thay đổi thay vì cả màn hình mỗi khung
+    private volatile boolean tileMode = true;
+    /** Codec ảnh mặc định của phiên: -Dultraview.video.codec=jpeg|png|rle|lz4. */
+    public static final int DEFAULT_CODEC = parseCodec(System.getProperty("ultraview.video.codec", "jpeg"));
+    // đổi bằng setCodec; thread encode thay encoder ở khung kế tiếp
+    private volatile int codec = DEFAULT_CODEC;
+    // encoder, buffer nén và buffer serialize dùng lại suốt phiên stream; chỉ thread encode đụng tới
+    private FrameEncoder frameEncoder = FrameCodecs.newEncoder(codec);
+    private final TileEncoder tileEncoder = new TileEncoder(frameEncoder);
+    private final BitrateController bitrate = new BitrateController();
+    private BufferedImage scaled;
+    private final byte[] parity = new byte[MAX_CHUNK_SIZE];
+    // ~8 frame gần nhất để gửi lại chunk theo NACK
+    private final RetransmitBuffer retransmitBuffer = new RetransmitBuffer(8, MAX_CHUNK_SIZE);
+
+    // pipeline: capture -> mask -> encode -> send, mỗi stage một thread,
+    // nối bằng slot một phần tử "mới nhất thắng" nên stage chậm làm rớt khung cũ thay vì dồn hàng
+    private final LatestSlot<BufferedImage> maskSlot = new LatestSlot<>();
+    private final LatestSlot<BufferedImage> encodeSlot = new LatestSlot<>();
+    private final LatestSlot<EncodedFrame> sendSlot = new LatestSlot<>();
+    // 1 đang gửi + 1 chờ trong sendSlot + 1 đang được encode
+    private final ArrayBlockingQueue<EncodedFrame> freeFrames = new ArrayBlockingQueue<>(3);
+
+    // màn hình đứng yên: không mask/nén/gửi, chỉ heartbeat, và chụp thưa dần
+    private final FrameChangeDetector changeDetector = new FrameChangeDetector();
+    private final CaptureActivity activity = new CaptureActivity();
+    private volatile ScheduledFuture<?> nextCapture;
+    private volatile long lastSentMs;
+
+    private final StageTimer captureTimer = new StageTimer("capture");
+    private final StageTimer maskTimer = new StageTimer("mask");
+    private final StageTimer encodeTimer = new StageTimer("encode");
+    private final StageTimer sendTimer = new StageTimer("send");
+
     private volatile boolean protectionEnabled = true;
     private volatile ProtectionLevel protectionLevel = ProtectionLevel.NORMAL;
 
@@ -117,63 +161,306 @@ public class ScreenSender {
         } catch (AWTException e) {
             e.printStackTrace();
         }
+        cursorTracker = new CursorTracker(networkClient, screenRect);
+        for (int i = 0; i < 3; i++)
+            freeFrames.add(new EncodedFrame());
+    }
+
+    /** Khung đã nén, buffer dùng lại giữa encode và send. */
+    private static final class EncodedFrame {
+        final Output output = new Output(64 * 1024, -1);
+        int length;
+        int format;
+        int codec;
+        boolean keyframe;
+        long timestamp;
     }
 
     public void startStreaming() {
         if (isStreaming)
             return;
         isStreaming = true;
+        tileEncoder.requestFullFrame();
+        changeDetector.invalidate();
+        activity.onActivity();
+        stages = Executors.newFixedThreadPool(3);
+        stages.execute(() -> runStage(this::maskStage));
+        stages.execute(() -> runStage(this::encodeStage));
+        stages.execute(() -> runStage(this::sendStage));
         executor = Executors.newSingleThreadScheduledExecutor();
-        executor.scheduleAtFixedRate(this::captureAndSend, 0, 30, TimeUnit.MILLISECONDS);
+        executor.execute(this::captureLoop);
+        cursorExecutor = Executors.newSingleThreadScheduledExecutor();
+        cursorExecutor.scheduleAtFixedRate(this::pollCursor, 0, CursorTracker.INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /** Báo cáo từ người xem, dùng để chỉnh chất lượng / độ phân giải / fps. */
+    public void onReceiverReport(ReceiverReportPacket report) {
+        bitrate.onReport(report);
+    }
+
+    /** Người xem báo thiếu chunk: gửi lại nếu frame còn trong bộ đệm. */
+    public void onNack(NackPacket nack) {
+        if (isStreaming)
+            retransmitBuffer.retransmit(nack.getFrameId(), nack.getMissingChunks(), networkClient);
+    }
+
+    /** Người xem mất delta frame không dựng lại được: frame tile kế tiếp sẽ là keyframe. */
+    public void onKeyframeRequest(KeyframeRequestPacket request) {
+        if (isStreaming) {
+            tileEncoder.requestFullFrame();
+            // màn hình có thể đang đứng yên: phải chụp và gửi lại dù không đổi
+            changeDetector.invalidate();
+        }
+    }
+
+    /** Người xem vừa điều khiển (ControlExecutor): màn hình sắp đổi, về nhịp chụp đầy đủ ngay. */
+    public void onInputActivity() {
+        if (!isStreaming)
+            return;
+        activity.onActivity();
+        ScheduledFuture<?> next = nextCapture;
+        // đang chờ theo nhịp idle -> chụp luôn thay vì đợi hết khoảng
+        if (next != null && next.getDelay(TimeUnit.MILLISECONDS) > bitrate.frameIntervalMs() && next.cancel(false)) {
+            try {
+                executor.execute(this::captureLoop);
+            } catch (RejectedExecutionException ignored) {
+                // đã stopStreaming
+            }
+        }
+    }
+
+    private void pollCursor() {
+        try {
+            cursorTracker.poll();
+        } catch (Exception e) {
+            // lỗi một lần đọc chuột không được làm scheduleAtFixedRate dừng hẳn
+            e.printStackTrace();
+        }
+    }
+
+    // tự lên lịch lại để khoảng cách giữa hai lần chụp theo fps hiện tại của bộ điều chỉnh bitrate
+    private void captureLoop() {
+        long start = System.nanoTime();
+        captureStage();
+        if (!isStreaming)
+            return;
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        try {
+            long intervalMs = activity.intervalMs(bitrate.frameIntervalMs());
+            nextCapture = executor.schedule(this::captureLoop, Math.max(0, intervalMs - elapsedMs),
+                    TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+            // đã stopStreaming
+        }
     }
 
     public void stopStreaming() {
         isStreaming = false;
         if (executor != null)
             executor.shutdownNow();
+        if (cursorExecutor != null)
+            cursorExecutor.shutdownNow();
+        if (stages != null) {
+            stages.shutdownNow();
+            try {
+                // thread stage cũ phải dừng hẳn trước khi startStreaming lần sau dùng lại encoder/buffer
+                stages.awaitTermination(500, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        maskSlot.poll();
+        encodeSlot.poll();
+        EncodedFrame pending = sendSlot.poll();
+        if (pending != null)
+            freeFrames.offer(pending);
+        System.out.println("Video pipeline: " + getPipelineStats());
+    }
+
+    /** Thời gian từng stage và số khung bị rớt giữa các stage. */
+    public String getPipelineStats() {
+        return captureTimer + ", " + maskTimer + ", " + encodeTimer + ", " + sendTimer
+                + " | dropped mask=" + maskSlot.dropped() + " encode=" + encodeSlot.dropped()
+                + " send=" + sendSlot.dropped() + " | " + activity + " | " + bitrate + " | " + retransmitBuffer;
+    }
+
+    private interface Stage {
+        void runOnce() throws Exception;
+    }
+
+    private void runStage(Stage stage) {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                stage.runOnce();
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
     }
 
-    private void captureAndSend() {
+    private void captureStage() {
         try {
+            long start = System.nanoTime();
             BufferedImage capture = robot.createScreenCapture(screenRect);
+            captureTimer.record(start);
+            activity.account();
 
-            probeActiveWindowIfNeeded();
-            applyProtectionMasks(capture);
+            if (!changeDetector.changed(capture)) {
+                activity.onSkipped();
+                sendHeartbeatIfDue();
+                return;
+            }
+            activity.onActivity();
+            // khung đổi bị bỏ giữa pipeline thì lần chụp sau phải đi tiếp dù trông "không đổi"
+            if (maskSlot.put(capture) != null)
+                changeDetector.invalidate();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void maskStage() throws InterruptedException {
+        BufferedImage capture = maskSlot.take();
+        long start = System.nanoTime();
+        probeActiveWindowIfNeeded();
+        applyProtectionMasks(capture);
+        maskTimer.record(start);
+        if (encodeSlot.put(capture) != null)
+            changeDetector.invalidate();
+    }
 
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
-            ImageWriter writer = writers.next();
-            ImageOutputStream ios = ImageIO.createImageOutputStream(baos);
-            writer.setOutput(ios);
+    private void encodeStage() throws Exception {
+        BufferedImage capture = encodeSlot.take();
+        long start = System.nanoTime();
+
+        EncodedFrame frame = freeFrames.take();
+        boolean encoded = false;
+        try {
+            encoded = encodeInto(capture, frame);
+        } finally {
+            if (!encoded)
+                freeFrames.offer(frame);
+        }
+        if (!encoded)
+            return; // màn hình không đổi
+        encodeTimer.record(start);
+
+        EncodedFrame stale = sendSlot.put(frame);
+        if (stale != null) {
+            // khung tile bị bỏ thì các ô đổi của nó không tới người xem -> lần sau gửi cả khung
+            if (stale.format == VideoPacket.FORMAT_TILES)
+                tileEncoder.requestFullFrame();
+            changeDetector.invalidate();
+            freeFrames.offer(stale);
+        }
+    }
 
-            ImageWriteParam param = writer.getDefaultWriteParam();
-            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-            param.setCompressionQuality(0.5f);
+    /** @return false nếu ở chế độ tile và màn hình không đổi gì */
+    private boolean encodeInto(BufferedImage capture, EncodedFrame frame) throws IOException {
+        frame.timestamp = System.currentTimeMillis();
+        float quality = bitrate.quality();
+        capture = scale(capture, bitrate.scale());
+        int wanted = codec;
+        if (frameEncoder.id() != wanted) {
+            frameEncoder = FrameCodecs.newEncoder(wanted);
+            tileEncoder.setEncoder(frameEncoder);
+        }
+        frame.codec = wanted;
+        if (tileMode) {
+            TileFrame tiles = tileEncoder.encode(capture, quality);
+            if (tiles == null)
+                return false;
+            frame.length = KryoSerializer.serialize(tiles, frame.output);
+            frame.format = VideoPacket.FORMAT_TILES;
+            frame.keyframe = tiles.isKeyframe();
+        } else {
+            int length = frameEncoder.encode(capture, quality);
+            frame.output.reset();
+            frame.output.writeBytes(frameEncoder.buffer(), 0, length);
+            frame.length = length;
+            frame.format = VideoPacket.FORMAT_JPEG;
+            frame.keyframe = true;
+        }
+        return true;
+    }
 
-            writer.write(null, new IIOImage(capture, null, null), param);
-            ios.close();
-            writer.dispose();
+    // thu nhỏ vào ảnh dùng lại; tọa độ chuột gửi dạng tỉ lệ nên không bị ảnh hưởng
+    private BufferedImage scale(BufferedImage capture, float factor) {
+        if (factor >= 0.99f)
+            return capture;
+        int w = Math.max(1, Math.round(capture.getWidth() * factor));
+        int h = Math.max(1, Math.round(capture.getHeight() * factor));
+        if (scaled == null || scaled.getWidth() != w || scaled.getHeight() != h)
+            scaled = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(capture, 0, 0, w, h, null);
+        g.dispose();
+        return scaled;
+    }
 
-            byte[] fullImageData = baos.toByteArray();
-            int totalLength = fullImageData.length;
+    private void sendStage() throws InterruptedException {
+        EncodedFrame frame = sendSlot.take();
+        long startNanos = System.nanoTime();
+        try {
+            byte[] fullImageData = frame.output.getBuffer();
+            int totalLength = frame.length;
             int totalChunks = (int) Math.ceil((double) totalLength / MAX_CHUNK_SIZE);
+            if (totalChunks > VideoPacket.MAX_CHUNKS) {
+                // người xem bỏ frame vượt giới hạn, gửi cũng vô ích
+                System.out.println("Frame too large to send: " + totalLength + " bytes");
+                return;
+            }
             long currentFrameId = frameIdCounter++;
 
+            int fecGroup = bitrate.fecGroupSize();
+
+            // một header dùng cho mọi chunk; data đi thẳng từ buffer nén (slice, không copy)
+            VideoPacket header = new VideoPacket(myId, targetId, null, frame.timestamp,
+                    currentFrameId, 0, totalChunks, frame.format, fecGroup, totalLength, frame.keyframe,
+                    frame.codec);
             for (int i = 0; i < totalChunks; i++) {
                 int start = i * MAX_CHUNK_SIZE;
                 int end = Math.min(totalLength, start + MAX_CHUNK_SIZE);
-                byte[] chunkData = Arrays.copyOfRange(fullImageData, start, end);
-                VideoPacket packet = new VideoPacket(
-                        myId, targetId, chunkData, System.currentTimeMillis(),
-                        currentFrameId, i, totalChunks);
-                networkClient.sendVideoPacket(packet);
+                header.setChunkIndex(i);
+                networkClient.sendVideoChunk(header, fullImageData, start, end - start);
             }
-
-        } catch (Exception e) {
-            e.printStackTrace();
+            retransmitBuffer.store(header, fullImageData, totalLength);
+
+            // parity XOR mỗi nhóm fecGroup chunk, gửi sau dữ liệu với chunkIndex = totalChunks + nhóm
+            for (int g = 0; g < XorFec.parityCount(totalChunks, fecGroup); g++) {
+                int first = g * fecGroup;
+                int end = Math.min(first + fecGroup, totalChunks);
+                int parityLength = Math.min(MAX_CHUNK_SIZE, totalLength - first * MAX_CHUNK_SIZE);
+                Arrays.fill(parity, 0, parityLength, (byte) 0);
+                for (int i = first; i < end; i++) {
+                    int start = i * MAX_CHUNK_SIZE;
+                    XorFec.accumulate(parity, fullImageData, start, Math.min(MAX_CHUNK_SIZE, totalLength - start));
+                }
+                header.setChunkIndex(totalChunks + g);
+                networkClient.sendVideoChunk(header, parity, 0, parityLength);
+            }
+            activity.onSent(totalLength);
+            lastSentMs = System.currentTimeMillis();
+        } finally {
+            freeFrames.offer(frame);
+            sendTimer.record(startNanos);
         }
     }
 
+    // datagram rỗng (totalChunks = 0): người xem bỏ qua, chỉ giữ luồng UDP/NAT sống khi màn hình đứng yên
+    private void sendHeartbeatIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - lastSentMs < CaptureActivity.HEARTBEAT_MS)
+            return;
+        networkClient.sendVideoPacket(new VideoPacket(myId, targetId, new byte[0], now, 0, 0, 0,
+                VideoPacket.FORMAT_JPEG, 0, 0, false, codec));
+        lastSentMs = now;
+        activity.onHeartbeat();
+    }
+
     private void applyProtectionMasks(BufferedImage image) {
         if (!protectionEnabled)
             return;
@@ -376,12 +663,39 @@ public class ScreenSender {
         g.dispose();
     }
 
+    public void setTileMode(boolean enabled) {
+        if (enabled && !tileMode)
+            tileEncoder.requestFullFrame();
+        this.tileMode = enabled;
+        changeDetector.invalidate();
+    }
+
+    /** Đổi codec ảnh (FrameCodecs.*) giữa phiên; người xem chọn decoder theo VideoPacket.codec. */
+    public void setCodec(int codecId) {
+        if (!FrameCodecs.isKnown(codecId))
+            throw new IllegalArgumentException("Unknown frame codec id " + codecId);
+        this.codec = codecId;
+        // màn hình đứng yên vẫn phải gửi lại một khung bằng codec mới
+        changeDetector.invalidate();
+    }
+
+    private static int parseCodec(String name) {
+        try {
+            return FrameCodecs.idOf(name);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Codec video không hợp lệ: " + name + ", dùng JPEG");
+            return FrameCodecs.JPEG;
+        }
+    }
+
     public void setProtectionEnabled(boolean enabled) {
         this.protectionEnabled = enabled;
+        changeDetector.invalidate();
     }
 
     public void setProtectionLevel(ProtectionLevel level) {
         if (level != null)
             this.protectionLevel = level;
+        changeDetector.invalidate();
     }
 }
\ No newline at end of file
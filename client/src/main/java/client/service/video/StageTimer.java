@@ -0,0 +1,41 @@
+package client.service.video;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Thời gian xử lý của một stage trong pipeline video (số lần, trung bình, lớn nhất). */
+final class StageTimer {
+
+    private final String name;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    StageTimer(String name) {
+        this.name = name;
+    }
+
+    void record(long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    /** Thời gian trung bình (ms). */
+    double averageMillis() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / (double) n / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s n=%d avg=%.1fms max=%.1fms", name, count(), averageMillis(),
+                maxNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,70 @@
+package client.service.video;
+
+import codec.image.FrameDecoder;
+import protocol.media.CopyRect;
+import protocol.media.TileFrame;
+import protocol.media.VideoTile;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Giữ khung hình đầy đủ phía người xem và dán các vùng của {@link TileFrame} lên đó.
+ * Canvas là TYPE_3BYTE_BGR (kiểu mọi {@link FrameDecoder} trả về), dùng chung với đường giải mã
+ * ảnh nguyên khung.
+ */
+public class TileCompositor {
+
+    private BufferedImage canvas;
+    // ảnh giải mã tile gần nhất, dùng lại khi tile sau cùng kích thước (phần lớn là 64x64)
+    private BufferedImage tileScratch;
+
+    /** Canvas đúng kích thước (tạo mới, nền đen, nếu đổi độ phân giải). */
+    public BufferedImage canvas(int width, int height) {
+        if (canvas == null || canvas.getWidth() != width || canvas.getHeight() != height)
+            canvas = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        return canvas;
+    }
+
+    /** Canvas hiện tại, null trước frame đầu tiên. */
+    public BufferedImage canvas() {
+        return canvas;
+    }
+
+    /** Nhận ảnh do decoder giải mã cả khung làm canvas (chính canvas cũ nếu decoder ghi đè được). */
+    public void replace(BufferedImage image) {
+        canvas = image;
+    }
+
+    /**
+     * @param decoder decoder của codec ghi trong VideoPacket.codec
+     * @return vùng canvas đã thay đổi (rỗng nếu frame không có tile)
+     */
+    public Rectangle apply(TileFrame frame, FrameDecoder decoder) throws IOException {
+        BufferedImage target = canvas(frame.getWidth(), frame.getHeight());
+        Rectangle dirty = new Rectangle(0, 0, -1, -1); // rỗng: add() đầu tiên lấy đúng bounds của tile
+        Graphics2D g = target.createGraphics();
+        try {
+            // chép vùng (cuộn) trước, tile lấp phần mới lộ ra sau
+            if (frame.getCopies() != null) {
+                for (CopyRect copy : frame.getCopies()) {
+                    g.copyArea(copy.getX(), copy.getY(), copy.getWidth(), copy.getHeight(), copy.getDx(), copy.getDy());
+                    dirty.add(new Rectangle(copy.getX() + copy.getDx(), copy.getY() + copy.getDy(), copy.getWidth(),
+                            copy.getHeight()));
+                }
+            }
+            for (VideoTile tile : frame.getTiles()) {
+                byte[] data = tile.getData();
+                BufferedImage img = decoder.decode(data, 0, data.length, tileScratch);
+                tileScratch = img;
+                g.drawImage(img, tile.getX(), tile.getY(), null);
+                dirty.add(new Rectangle(tile.getX(), tile.getY(), img.getWidth(), img.getHeight()));
+            }
+        } finally {
+            g.dispose();
+        }
+        return dirty.intersection(new Rectangle(0, 0, target.getWidth(), target.getHeight()));
+    }
+}
@@ -0,0 +1,165 @@
+package client.service.video;
+
+import codec.image.FrameEncoder;
+import protocol.media.CopyRect;
+import protocol.media.TileFrame;
+import protocol.media.VideoTile;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * So khung hình mới với khung trước theo ô TILE x TILE và chỉ nén các ô thay đổi.
+ * Các ô thay đổi liền nhau trên cùng một hàng được gộp thành một vùng để bớt header ảnh.
+ * Mỗi vùng nén bằng codec của phiên ({@link FrameEncoder}).
+ */
+class TileEncoder {
+
+    static final int TILE = 64;
+    // keyframe định kỳ chỉ là lưới an toàn: mất delta thì người xem chủ động xin keyframe (KEYFRAME_REQUEST)
+    private static final int REFRESH_EVERY = Integer.getInteger("ultraview.video.keyframeInterval", 300);
+    // nhiều ô đổi quá thì nén một ảnh lớn rẻ hơn nhiều ảnh nhỏ
+    private static final double FULL_FRAME_RATIO = 0.5;
+
+    // đủ nhiều ô đổi mới thử tìm vùng cuộn
+    private static final int MOTION_MIN_TILES = 6;
+
+    private FrameEncoder encoder;
+    private final MotionDetector motion = new MotionDetector();
+    private int[] previous;
+    private boolean[] dirty = new boolean[0];
+    private int width;
+    private int height;
+    private int framesSinceFull;
+    private int dirtyMinX;
+    private int dirtyMinY;
+    private int dirtyMaxX;
+    private int dirtyMaxY;
+    private volatile boolean fullFrameRequested = true;
+
+    TileEncoder(FrameEncoder encoder) {
+        this.encoder = encoder;
+    }
+
+    /** Đổi codec: khung kế tiếp là keyframe nén toàn bộ bằng codec mới. Gọi trên thread encode. */
+    void setEncoder(FrameEncoder encoder) {
+        this.encoder = encoder;
+        fullFrameRequested = true;
+    }
+
+    void requestFullFrame() {
+        fullFrameRequested = true;
+    }
+
+    /** @return các vùng thay đổi, hoặc null nếu khung không đổi gì */
+    TileFrame encode(BufferedImage frame, float quality) throws IOException {
+        int w = frame.getWidth();
+        int h = frame.getHeight();
+        int[] current = pixelsOf(frame);
+
+        boolean full = fullFrameRequested || previous == null || w != width || h != height
+                || ++framesSinceFull >= REFRESH_EVERY;
+
+        int cols = (w + TILE - 1) / TILE;
+        int rows = (h + TILE - 1) / TILE;
+        if (dirty.length != cols * rows)
+            dirty = new boolean[cols * rows];
+        List<CopyRect> copies = new ArrayList<>();
+        if (!full) {
+            int dirtyCount = markDirty(current, cols, rows, w, h);
+            if (dirtyCount == 0)
+                return null;
+            if (dirtyCount >= MOTION_MIN_TILES) {
+                // cuộn: chép phần nội dung đã có sang chỗ mới (cả phía người xem lẫn previous),
+                // sau đó chỉ dải mới lộ ra còn khác
+                CopyRect move = motion.detect(current, previous, w, dirtyMinX, dirtyMinY, dirtyMaxX - dirtyMinX,
+                        dirtyMaxY - dirtyMinY);
+                if (move != null) {
+                    MotionDetector.apply(previous, w, move);
+                    copies.add(move);
+                    dirtyCount = markDirty(current, cols, rows, w, h);
+                }
+            }
+            full = dirtyCount > cols * rows * FULL_FRAME_RATIO;
+        }
+
+        List<VideoTile> tiles = new ArrayList<>();
+        if (full) {
+            fullFrameRequested = false;
+            framesSinceFull = 0;
+            width = w;
+            height = h;
+            if (previous == null || previous.length != current.length)
+                previous = new int[current.length];
+            System.arraycopy(current, 0, previous, 0, current.length);
+            tiles.add(new VideoTile(0, 0, w, h, encoder.encodeToArray(frame, quality)));
+            return new TileFrame(w, h, tiles, true, new ArrayList<>());
+        }
+
+        for (int ty = 0; ty < rows; ty++) {
+            int y = ty * TILE;
+            int th = Math.min(TILE, h - y);
+            int tx = 0;
+            while (tx < cols) {
+                if (!dirty[ty * cols + tx]) {
+                    tx++;
+                    continue;
+                }
+                int start = tx;
+                while (tx < cols && dirty[ty * cols + tx])
+                    tx++;
+                int x = start * TILE;
+                int rw = Math.min(tx * TILE, w) - x;
+
+                tiles.add(new VideoTile(x, y, rw, th, encoder.encodeToArray(frame.getSubimage(x, y, rw, th), quality)));
+                for (int row = y; row < y + th; row++)
+                    System.arraycopy(current, row * w + x, previous, row * w + x, rw);
+            }
+        }
+        return new TileFrame(w, h, tiles, false, copies);
+    }
+
+    // đánh dấu ô khác previous, tính hộp bao các ô đó (pixel)
+    private int markDirty(int[] current, int cols, int rows, int w, int h) {
+        Arrays.fill(dirty, false);
+        int dirtyCount = 0;
+        dirtyMinX = w;
+        dirtyMinY = h;
+        dirtyMaxX = 0;
+        dirtyMaxY = 0;
+        for (int ty = 0; ty < rows; ty++)
+            for (int tx = 0; tx < cols; tx++)
+                if (tileChanged(current, tx * TILE, ty * TILE, w, h)) {
+                    dirty[ty * cols + tx] = true;
+                    dirtyCount++;
+                    dirtyMinX = Math.min(dirtyMinX, tx * TILE);
+                    dirtyMinY = Math.min(dirtyMinY, ty * TILE);
+                    dirtyMaxX = Math.max(dirtyMaxX, Math.min(w, (tx + 1) * TILE));
+                    dirtyMaxY = Math.max(dirtyMaxY, Math.min(h, (ty + 1) * TILE));
+                }
+        return dirtyCount;
+    }
+
+    private boolean tileChanged(int[] current, int x, int y, int w, int h) {
+        int tw = Math.min(TILE, w - x);
+        int yEnd = Math.min(y + TILE, h);
+        for (int row = y; row < yEnd; row++) {
+            int from = row * w + x;
+            if (!Arrays.equals(current, from, from + tw, previous, from, from + tw))
+                return true;
+        }
+        return false;
+    }
+
+    private static int[] pixelsOf(BufferedImage frame) {
+        // Robot trả về TYPE_INT_RGB: đọc thẳng mảng pixel, không copy
+        if (frame.getType() == BufferedImage.TYPE_INT_RGB && frame.getRaster().getDataBuffer() instanceof DataBufferInt
+                && frame.getRaster().getParent() == null)
+            return ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+        return frame.getRGB(0, 0, frame.getWidth(), frame.getHeight(), null, 0, frame.getWidth());
+    }
+}
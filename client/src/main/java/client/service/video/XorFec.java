@@ -0,0 +1,22 @@
+package client.service.video;
+
+/**
+ * FEC XOR cho các chunk của một frame video: mỗi nhóm {@code group} chunk dữ liệu có một chunk parity
+ * (XOR của cả nhóm, dài bằng chunk dài nhất). Mất tối đa một chunk mỗi nhóm vẫn dựng lại được
+ * mà không cần gửi lại (phía nhận dựng lại trong FrameReassembler).
+ */
+public final class XorFec {
+
+    private XorFec() {
+    }
+
+    public static int parityCount(int totalChunks, int group) {
+        return group <= 0 ? 0 : (totalChunks + group - 1) / group;
+    }
+
+    /** XOR đoạn src[offset, offset + length) vào parity[0, length). */
+    public static void accumulate(byte[] parity, byte[] src, int offset, int length) {
+        for (int i = 0; i < length; i++)
+            parity[i] ^= src[offset + i];
+    }
+}
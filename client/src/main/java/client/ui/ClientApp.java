@@ -2,25 +2,32 @@ package client.ui;
 
 import client.network.NetworkClient;
 import client.network.handler.ClientHandler;
-import client.network.handler.UdpClientHandler;
 import client.service.audio.AudioRecorder;
 import client.service.file.FileReceiver;
 import client.service.file.FileSender;
 import client.service.input.ClipboardWorker;
+import client.service.input.ControlExecutor;
 import client.service.input.KeyMapper;
+import client.service.video.RemoteCursor;
+import client.service.video.RemoteFrameBuffer;
 import client.service.video.ScreenSender;
 import client.ui.controller.ChatController;
 import client.ui.controller.DashboardController;
 import client.ui.controller.ChatController.ChatMessageModel;
+import codec.image.FrameCodecs;
 import protocol.input.ControlPayload;
 import client.network.p2p.PeerControlServer;
 import client.network.p2p.SessionState;
+import protocol.media.CursorPacket;
 import protocol.media.StartStreamPacket;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
+import javafx.geometry.Point2D;
 import javafx.geometry.Pos;
+import javafx.scene.Cursor;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
@@ -57,7 +64,15 @@ public class ClientApp extends Application {
     private final String myPass = generateRandomPass();
 
     private Stage remoteStage;
+    private AnimationTimer remoteFrameTimer;
     private ImageView remoteView;
+    // con trỏ bên chia sẻ vẽ đè lên ảnh (không nằm trong video)
+    private ImageView cursorView;
+    // vị trí chuột cục bộ gần nhất trên ảnh (tỉ lệ) -> dự đoán vị trí con trỏ từ xa trước khi server báo về
+    private static final long CURSOR_PREDICT_MS = 250;
+    private float localCursorX;
+    private float localCursorY;
+    private long localCursorMs;
 
     // ===== Zoom/Fit state =====
     private ScrollPane remoteScroll;
@@ -77,6 +92,7 @@ public class ClientApp extends Application {
     private Region spacer;
     private CheckBox cbProtect;
     private ChoiceBox<String> cbLevel;
+    private ChoiceBox<String> cbCodec;
 
     @Override
     public void start(Stage stage) throws InterruptedException {
@@ -192,7 +208,17 @@ public class ClientApp extends Application {
                 currentSender.setProtectionLevel(ScreenSender.ProtectionLevel.NORMAL);
         });
 
-        footer.getChildren().addAll(btnMic, cbProtect, cbLevel, spacer, lblStatus);
+        // codec ảnh khi mình là máy bị điều khiển: JPEG nhẹ mạng, PNG/RLE/LZ4 nét từng pixel
+        cbCodec = new ChoiceBox<>();
+        cbCodec.getItems().addAll("JPEG", "PNG", "RLE", "LZ4");
+        cbCodec.setValue(FrameCodecs.nameOf(ScreenSender.DEFAULT_CODEC).toUpperCase());
+
+        cbCodec.getSelectionModel().selectedItemProperty().addListener((obs, oldV, newV) -> {
+            if (currentSender != null && newV != null)
+                currentSender.setCodec(FrameCodecs.idOf(newV));
+        });
+
+        footer.getChildren().addAll(btnMic, cbProtect, cbLevel, cbCodec, spacer, lblStatus);
 
         mainLayout.setBottom(footer);
 
@@ -203,6 +229,7 @@ public class ClientApp extends Application {
         primaryStage.show();
 
         primaryStage.setOnCloseRequest(e -> {
+            networkClient.disconnect();
             Platform.exit();
             System.exit(0);
         });
@@ -261,6 +288,9 @@ public class ClientApp extends Application {
         };
 
         ClientHandler.onConnectResult = (res) -> {
+            // reset trên event loop UDP ngay, trước khi frame đầu của sender mới tới
+            if (res.isSuccess())
+                networkClient.resetVideoStream();
             Platform.runLater(() -> {
                 dashboardController.setConnectingState(false);
 
@@ -285,6 +315,7 @@ public class ClientApp extends Application {
 
             // target biết session để validate hello
             sessionState.set(sid, controllerId);
+            networkClient.resetVideoStream();
 
             Platform.runLater(() -> {
                 dashboardController.setTargetId(controllerId);
@@ -299,6 +330,7 @@ public class ClientApp extends Application {
                     currentSender.setProtectionLevel("Strict".equals(cbLevel.getValue())
                             ? ScreenSender.ProtectionLevel.STRICT
                             : ScreenSender.ProtectionLevel.NORMAL);
+                    currentSender.setCodec(FrameCodecs.idOf(cbCodec.getValue()));
 
                     currentSender.startStreaming();
 
@@ -311,6 +343,8 @@ public class ClientApp extends Application {
         ClientHandler.onPartnerDisconnect = (disconnectedId) -> {
             String currentPartner = dashboardController.getTargetId();
             if (!currentPartner.isEmpty() && currentPartner.equals(disconnectedId)) {
+                networkClient.resetVideoStream();
+                fileSender.onSessionEnded();
                 Platform.runLater(() -> {
                     closeRemoteWindow();
                     if (currentSender != null) {
@@ -379,6 +413,33 @@ public class ClientApp extends Application {
             });
         };
 
+        ClientHandler.onFlowControl = (paused) -> fileSender.setPaused(paused);
+        ClientHandler.onConnectionLost = () -> fileSender.onSessionEnded();
+
+        ClientHandler.onReceiverReport = (report) -> {
+            ScreenSender sender = currentSender;
+            if (sender != null)
+                sender.onReceiverReport(report);
+        };
+
+        ClientHandler.onVideoNack = (nack) -> {
+            ScreenSender sender = currentSender;
+            if (sender != null)
+                sender.onNack(nack);
+        };
+
+        ControlExecutor.onInputExecuted = () -> {
+            ScreenSender sender = currentSender;
+            if (sender != null)
+                sender.onInputActivity();
+        };
+
+        ClientHandler.onKeyframeRequest = (request) -> {
+            ScreenSender sender = currentSender;
+            if (sender != null)
+                sender.onKeyframeRequest(request);
+        };
+
         ClientHandler.onFileChunk = (chunk) -> {
             if (fileReceiver != null)
                 fileReceiver.receiveChunk(chunk);
@@ -388,7 +449,17 @@ public class ClientApp extends Application {
             chatController.addMessage(new ChatMessageModel(msg, false, true));
         };
 
-        UdpClientHandler.setOnImageReceived(image -> Platform.runLater(() -> showRemoteWindow(image)));
+        // mỗi pulse FX chỉ đẩy phần thay đổi mới nhất vào ảnh, không xếp hàng runnable theo từng frame
+        remoteFrameTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                RemoteFrameBuffer frames = networkClient.remoteFrames();
+                if (frames.present())
+                    showRemoteWindow(frames.image());
+                updateCursorOverlay();
+            }
+        };
+        remoteFrameTimer.start();
 
     }
 
@@ -423,10 +494,15 @@ public class ClientApp extends Application {
             remoteView = new ImageView();
             remoteView.setPreserveRatio(true);
             remoteView.setSmooth(true);
-            remoteView.setCache(true);
+            // ảnh đổi liên tục: cache node chỉ thêm một lần render lại mỗi frame
+            remoteView.setCache(false);
 
             // 2) Container để canh giữa
-            remoteContainer = new StackPane(remoteView);
+            cursorView = new ImageView();
+            cursorView.setManaged(false);
+            cursorView.setMouseTransparent(true);
+
+            remoteContainer = new StackPane(remoteView, cursorView);
             remoteContainer.setStyle("-fx-background-color: black;");
             remoteContainer.setAlignment(Pos.CENTER);
             remoteContainer.setMinSize(0, 0);
@@ -671,6 +747,7 @@ public class ClientApp extends Application {
         if (remoteStage != null) {
             remoteStage.close();
             remoteStage = null;
+            System.out.println("Video receive: " + networkClient.videoReceiveStats());
         }
     }
 
@@ -741,9 +818,37 @@ public class ClientApp extends Application {
         if (ny > 1)
             ny = 1;
 
+        localCursorX = nx;
+        localCursorY = ny;
+        localCursorMs = System.currentTimeMillis();
         networkClient.sendControl(new ControlPayload(action, nx, ny, btn, 0));
     }
 
+    private void updateCursorOverlay() {
+        if (remoteStage == null || cursorView == null || remoteView.getImage() == null)
+            return;
+        RemoteCursor cursor = networkClient.remoteCursor();
+        CursorPacket remote = cursor.latest();
+        Image shape = remote == null ? null : cursor.shape(remote.getShapeHash());
+        if (shape == null) {
+            cursorView.setVisible(false);
+            remoteView.setCursor(Cursor.DEFAULT);
+            return;
+        }
+
+        // đang điều khiển: vẽ ngay ở vị trí chuột cục bộ; rảnh tay thì theo vị trí bên chia sẻ báo
+        boolean predicted = System.currentTimeMillis() - localCursorMs < CURSOR_PREDICT_MS;
+        float nx = predicted ? localCursorX : remote.getX();
+        float ny = predicted ? localCursorY : remote.getY();
+
+        Image image = remoteView.getImage();
+        Point2D p = remoteView.localToParent(nx * image.getWidth(), ny * image.getHeight());
+        cursorView.setImage(shape);
+        cursorView.relocate(p.getX() - remote.getHotspotX(), p.getY() - remote.getHotspotY());
+        cursorView.setVisible(true);
+        remoteView.setCursor(Cursor.NONE);
+    }
+
     private void sendKey(int action, KeyCode key) {
         int code = KeyMapper.toAwtKeyCode(key);
         if (code != -1)
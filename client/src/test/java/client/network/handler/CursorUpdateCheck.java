@@ -0,0 +1,90 @@
+package client.network.handler;
+
+import client.service.video.RemoteCursor;
+import codec.DatagramHeader;
+import codec.KryoSerializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.DatagramPacket;
+import protocol.media.CursorPacket;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+
+/**
+ * Kiểm tra kênh con trỏ phía người xem: datagram {@link CursorPacket} qua {@link UdpClientHandler}
+ * (chung socket với video) tới {@link RemoteCursor}:
+ * <ul>
+ * <li>vị trí mới nhất được giữ, gói seq cũ hoặc trùng bị bỏ;</li>
+ * <li>seq lùi rất xa (bên chia sẻ bắt đầu phiên mới) được nhận;</li>
+ * <li>hình PNG được cache theo hash, gói chỉ mang hash giữ nguyên hình; hình hỏng không được cache nhưng
+ * vị trí vẫn cập nhật.</li>
+ * </ul>
+ */
+public class CursorUpdateCheck {
+
+    private static final InetSocketAddress ADDRESS = new InetSocketAddress("127.0.0.1", 9);
+
+    public static void main(String[] args) throws Exception {
+        // Image của JavaFX khởi tạo pipeline đồ họa: dùng pipeline phần mềm, không cần OpenGL khi chạy headless
+        System.setProperty("prism.order", "sw");
+        UdpClientHandler handler = new UdpClientHandler();
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+        RemoteCursor cursor = handler.cursor();
+        byte[] arrow = png();
+        try {
+            if (cursor.latest() != null)
+                throw new IllegalStateException("cursor position before any packet");
+
+            send(channel, new CursorPacket(10, 0.25f, 0.5f, 111, 0, 0, arrow));
+            expect(cursor, 10, 0.25f, "first packet");
+            if (cursor.shape(111) == null)
+                throw new IllegalStateException("cursor shape was not cached by hash");
+
+            send(channel, new CursorPacket(12, 0.3f, 0.5f, 111, 0, 0, null));
+            send(channel, new CursorPacket(11, 0.9f, 0.9f, 111, 0, 0, null));
+            send(channel, new CursorPacket(12, 0.8f, 0.8f, 111, 0, 0, null));
+            expect(cursor, 12, 0.3f, "late and duplicate packets");
+            if (cursor.shape(111) == null)
+                throw new IllegalStateException("hash-only packet lost the cached shape");
+
+            send(channel, new CursorPacket(5_000, 0.4f, 0.4f, 111, 0, 0, null));
+            send(channel, new CursorPacket(0, 0.6f, 0.6f, 111, 0, 0, null));
+            expect(cursor, 0, 0.6f, "sharer restarted its sequence");
+
+            send(channel, new CursorPacket(1, 0.7f, 0.7f, 222, 0, 0, new byte[] { 1, 2, 3 }));
+            expect(cursor, 1, 0.7f, "packet with a corrupt shape");
+            if (cursor.shape(222) != null)
+                throw new IllegalStateException("corrupt cursor shape was cached");
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+        System.out.println("Cursor updates OK: latest " + cursor.latest().getSeq() + " at " + cursor.latest().getX()
+                + "," + cursor.latest().getY());
+    }
+
+    private static void expect(RemoteCursor cursor, long seq, float x, String step) {
+        CursorPacket latest = cursor.latest();
+        if (latest == null || latest.getSeq() != seq || latest.getX() != x)
+            throw new IllegalStateException(step + ": cursor at " + latest + ", expected seq " + seq + " x " + x);
+    }
+
+    // như NetworkClient.sendCursor: prefix datagram rồi object Kryo
+    private static void send(EmbeddedChannel channel, CursorPacket packet) {
+        ByteBuf buf = Unpooled.buffer();
+        DatagramHeader.write(buf, 0, 1);
+        KryoSerializer.serialize(packet, buf);
+        channel.writeInbound(new DatagramPacket(buf, ADDRESS, ADDRESS));
+    }
+
+    private static byte[] png() throws Exception {
+        BufferedImage image = new BufferedImage(12, 20, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(1, 1, 0xffffffff);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,121 @@
+package client.network.handler;
+
+import client.service.video.XorFec;
+import io.netty.buffer.Unpooled;
+import protocol.media.VideoPacket;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Mô phỏng mất gói ngẫu nhiên trên luồng chunk video (dữ liệu + parity {@link XorFec} như ScreenSender) qua
+ * {@link FrameReassembler}, không có NACK: in tỉ lệ frame ghép được theo từng fecGroup và tỉ lệ mất gói.
+ * Thất bại nếu frame giao ra sai dữ liệu, nếu FEC không hơn lúc tắt FEC, hoặc nếu tỉ lệ ghép được thấp hơn
+ * lý thuyết (mỗi nhóm mất tối đa một gói thì dựng lại được) quá {@link #TOLERANCE}.
+ * Số frame mỗi cấu hình chỉnh bằng -Dbench.frames.
+ */
+public class FecLossCheck {
+
+    // cùng các mức của BitrateController.fecGroupSize()
+    private static final int[] FEC_GROUPS = { 0, 8, 4, 2 };
+    private static final double[] LOSS_RATES = { 0.01, 0.05, 0.10 };
+    private static final int FRAMES = Integer.getInteger("bench.frames", 2_000);
+    private static final int CHUNK = 1000;
+    private static final int CHUNKS = 12;
+    private static final int FRAME_LENGTH = CHUNK * CHUNKS - 321;
+    private static final long FRAME_INTERVAL_MS = 33;
+    private static final double TOLERANCE = 0.03;
+
+    public static void main(String[] args) {
+        for (double loss : LOSS_RATES) {
+            StringBuilder line = new StringBuilder(String.format("FEC loss %4.1f%%:", loss * 100));
+            double withoutFec = 0;
+            for (int group : FEC_GROUPS) {
+                double rate = run(group, loss);
+                double expected = expectedRate(group, loss);
+                line.append(String.format(" group %d %.1f%% (expected %.1f%%)", group, rate * 100, expected * 100));
+                if (rate < expected - TOLERANCE)
+                    throw new IllegalStateException(String.format(
+                            "fecGroup %d at %.0f%% loss completed %.1f%% of frames, expected about %.1f%%", group,
+                            loss * 100, rate * 100, expected * 100));
+                if (group == 0)
+                    withoutFec = rate;
+                else if (rate <= withoutFec)
+                    throw new IllegalStateException(String.format(
+                            "fecGroup %d at %.0f%% loss did not beat no FEC: %.1f%% vs %.1f%%", group, loss * 100,
+                            rate * 100, withoutFec * 100));
+            }
+            System.out.println(line);
+        }
+    }
+
+    /** @return tỉ lệ frame được giao */
+    private static double run(int group, double loss) {
+        Random random = new Random(7 + group * 31L + (long) (loss * 1000));
+        byte[][] frames = new byte[FRAMES][];
+        int[] delivered = new int[1];
+        FrameReassembler reassembler = new FrameReassembler(16, new ReceiverStats(), new NackTracker(), nack -> {
+        }, frame -> {
+            byte[] expected = frames[(int) frame.frameId];
+            if (!Arrays.equals(frame.data, 0, frame.length, expected, 0, expected.length))
+                throw new IllegalStateException("frame " + frame.frameId + " rebuilt with wrong data (group "
+                        + group + ")");
+            delivered[0]++;
+        });
+
+        byte[] parity = new byte[CHUNK];
+        long now = 0;
+        for (int f = 0; f < FRAMES; f++) {
+            byte[] data = frames[f] = new byte[FRAME_LENGTH];
+            random.nextBytes(data);
+            VideoPacket header = new VideoPacket();
+            header.setFrameId(f);
+            header.setTotalChunks(CHUNKS);
+            header.setFecGroup(group);
+            header.setFrameLength(FRAME_LENGTH);
+            header.setFormat(VideoPacket.FORMAT_TILES);
+            header.setTimestamp(now);
+
+            for (int i = 0; i < CHUNKS; i++) {
+                int start = i * CHUNK;
+                send(reassembler, header, i, data, start, Math.min(CHUNK, FRAME_LENGTH - start), loss, random, now);
+            }
+            // giống ScreenSender.sendStage
+            for (int g = 0; g < XorFec.parityCount(CHUNKS, group); g++) {
+                int first = g * group;
+                int end = Math.min(first + group, CHUNKS);
+                int parityLength = Math.min(CHUNK, FRAME_LENGTH - first * CHUNK);
+                Arrays.fill(parity, 0, parityLength, (byte) 0);
+                for (int i = first; i < end; i++) {
+                    int start = i * CHUNK;
+                    XorFec.accumulate(parity, data, start, Math.min(CHUNK, FRAME_LENGTH - start));
+                }
+                send(reassembler, header, CHUNKS + g, parity, 0, parityLength, loss, random, now);
+            }
+            now += FRAME_INTERVAL_MS;
+            reassembler.sweep(now);
+        }
+        reassembler.sweep(now + FrameReassembler.TIMEOUT_MS + 1);
+        return (double) delivered[0] / FRAMES;
+    }
+
+    private static void send(FrameReassembler reassembler, VideoPacket header, int index, byte[] src, int offset,
+            int length, double loss, Random random, long now) {
+        if (random.nextDouble() < loss)
+            return;
+        header.setChunkIndex(index);
+        reassembler.accept(header, Unpooled.wrappedBuffer(src, offset, length), length, now);
+    }
+
+    // frame ghép được khi mọi nhóm (dữ liệu + parity) mất tối đa một gói; không FEC thì không được mất gói nào
+    private static double expectedRate(int group, double loss) {
+        if (group == 0)
+            return Math.pow(1 - loss, CHUNKS);
+        double rate = 1;
+        for (int first = 0; first < CHUNKS; first += group) {
+            int packets = Math.min(group, CHUNKS - first) + 1;
+            rate *= Math.pow(1 - loss, packets) + packets * loss * Math.pow(1 - loss, packets - 1);
+        }
+        return rate;
+    }
+}
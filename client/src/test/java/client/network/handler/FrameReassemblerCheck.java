@@ -0,0 +1,134 @@
+package client.network.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import protocol.media.NackPacket;
+import protocol.media.VideoPacket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Kiểm tra thứ tự giao frame của {@link FrameReassembler} khi có chunk gửi lại (NACK):
+ * <ul>
+ * <li>frame sau đã đủ chunk không được giao trước frame còn thiếu; chunk gửi lại tới trong hạn
+ * {@link NackTracker#DEADLINE_MS} thì cả hai được giao đúng thứ tự và đúng dữ liệu;</li>
+ * <li>quá hạn thì sweep bỏ frame thiếu, giao frame sau; chunk gửi lại tới sau đó được đếm là trễ;</li>
+ * <li>header vượt giới hạn (số chunk, độ dài frame, fecGroup, chunkIndex, độ dài chunk) bị bỏ qua.</li>
+ * </ul>
+ */
+public class FrameReassemblerCheck {
+
+    private static final int CHUNK = 100;
+    private static final int CHUNKS = 3;
+
+    private static final List<Long> delivered = new ArrayList<>();
+    private static final List<NackPacket> nacksSent = new ArrayList<>();
+
+    public static void main(String[] args) {
+        NackTracker nacks = new NackTracker();
+        FrameReassembler reassembler = new FrameReassembler(16, new ReceiverStats(), nacks, nacksSent::add,
+                frame -> {
+                    byte[] expected = frameData(frame.frameId);
+                    if (frame.length != expected.length
+                            || !Arrays.equals(frame.data, 0, frame.length, expected, 0, expected.length))
+                        throw new IllegalStateException("frame " + frame.frameId + " delivered with wrong data");
+                    delivered.add(frame.frameId);
+                });
+
+        long t = 1_000;
+        sendFrame(reassembler, 0, t);
+        expectDelivered("complete frame", 0L);
+
+        // frame 1 mất chunk 1, frame 2 đủ: frame 2 phải chờ
+        sendChunk(reassembler, 1, 0, t + 33);
+        sendChunk(reassembler, 1, 2, t + 33);
+        sendFrame(reassembler, 2, t + 66);
+        expectDelivered("newer frame held behind a gap", 0L);
+        if (nacksSent.size() != 1 || nacksSent.get(0).getFrameId() != 1)
+            throw new IllegalStateException("expected one NACK for frame 1, got " + nacksSent);
+
+        // chunk gửi lại tới trong hạn -> giao 1 rồi 2
+        sendChunk(reassembler, 1, 1, t + 100);
+        expectDelivered("repair within deadline", 0L, 1L, 2L);
+
+        // frame 3 mất chunk 1, frame 4 đủ; không có chunk gửi lại trước hạn
+        long t3 = t + 133;
+        sendChunk(reassembler, 3, 0, t3);
+        sendChunk(reassembler, 3, 2, t3);
+        sendFrame(reassembler, 4, t3 + 33);
+        reassembler.sweep(t3 + NackTracker.DEADLINE_MS / 2);
+        expectDelivered("sweep before deadline", 0L, 1L, 2L);
+        reassembler.sweep(t3 + NackTracker.DEADLINE_MS + 1);
+        expectDelivered("sweep after deadline", 0L, 1L, 2L, 4L);
+        sendChunk(reassembler, 3, 1, t3 + NackTracker.DEADLINE_MS + 20);
+        expectDelivered("repair after the frame was dropped", 0L, 1L, 2L, 4L);
+
+        // header hỏng: không được mở slot hay cấp buffer theo các field này
+        long t5 = t3 + 500;
+        VideoPacket bad = header(5, 0, t5);
+        bad.setTotalChunks(VideoPacket.MAX_CHUNKS + 1);
+        expectRejected(bad, CHUNK);
+        bad = header(5, 0, t5);
+        bad.setFrameLength(CHUNKS * VideoPacket.MAX_CHUNK_SIZE + 1);
+        expectRejected(bad, CHUNK);
+        bad = header(5, 0, t5);
+        bad.setFecGroup(CHUNKS + 1);
+        expectRejected(bad, CHUNK);
+        bad = header(5, CHUNKS, t5); // không có fecGroup -> không có chunk parity
+        expectRejected(bad, CHUNK);
+        expectRejected(header(5, 0, t5), VideoPacket.MAX_CHUNK_SIZE + 1);
+        expectRejected(header(5, 0, t5), frameData(5).length + 1);
+        sendFrame(reassembler, 5, t5);
+        expectDelivered("valid frame after malformed headers", 0L, 1L, 2L, 4L, 5L);
+
+        String stats = nacks.toString();
+        if (!stats.contains("repaired=1 late=1 lateChunks=1"))
+            throw new IllegalStateException("unexpected NACK counters: " + stats);
+        System.out.println("Frame reassembly order OK: delivered " + delivered + ", " + stats);
+    }
+
+    private static void expectDelivered(String step, Long... ids) {
+        if (!delivered.equals(Arrays.asList(ids)))
+            throw new IllegalStateException(step + ": delivered " + delivered + ", expected " + Arrays.asList(ids));
+    }
+
+    private static void expectRejected(VideoPacket header, int length) {
+        if (FrameReassembler.isValid(header, length))
+            throw new IllegalStateException("malformed header accepted: " + header + ", length " + length);
+    }
+
+    private static void sendFrame(FrameReassembler reassembler, long frameId, long nowMs) {
+        for (int i = 0; i < CHUNKS; i++)
+            sendChunk(reassembler, frameId, i, nowMs);
+    }
+
+    private static void sendChunk(FrameReassembler reassembler, long frameId, int index, long nowMs) {
+        byte[] data = frameData(frameId);
+        VideoPacket header = header(frameId, index, nowMs);
+        int offset = index * CHUNK;
+        int length = Math.min(CHUNK, data.length - offset);
+        ByteBuf content = Unpooled.wrappedBuffer(data, offset, length);
+        reassembler.accept(header, content, length, nowMs);
+    }
+
+    private static VideoPacket header(long frameId, int index, long nowMs) {
+        VideoPacket header = new VideoPacket();
+        header.setFrameId(frameId);
+        header.setChunkIndex(index);
+        header.setTotalChunks(CHUNKS);
+        header.setFrameLength(frameData(frameId).length);
+        header.setFormat(VideoPacket.FORMAT_TILES);
+        header.setTimestamp(nowMs);
+        return header;
+    }
+
+    // chunk cuối ngắn hơn để kiểm tra cả độ dài frame
+    private static byte[] frameData(long frameId) {
+        byte[] data = new byte[CHUNK * CHUNKS - 37];
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte) (frameId * 31 + i);
+        return data;
+    }
+}
@@ -0,0 +1,125 @@
+package client.network.handler;
+
+import codec.DatagramHeader;
+import codec.KryoSerializer;
+import codec.image.FrameCodecs;
+import codec.image.FrameEncoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.DatagramPacket;
+import protocol.media.TileFrame;
+import protocol.media.VideoPacket;
+import protocol.media.VideoTile;
+
+import java.awt.image.BufferedImage;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Kiểm tra chuỗi keyframe/delta phía người xem qua {@link UdpClientHandler} (EmbeddedChannel, datagram thật):
+ * <ul>
+ * <li>keyframe rồi delta liên tiếp: không xin keyframe;</li>
+ * <li>mất hẳn một frame: xin keyframe với frame tốt cuối cùng, các delta sau đó không xin thêm trong
+ * 500 ms; keyframe tới thì hết chờ;</li>
+ * <li>frame thiếu chunk quá hạn NACK bị bỏ: xin keyframe với frame trước nó;</li>
+ * <li>resetStream: phiên mới đếm frameId lại từ 0 mà không bị coi là frame cũ hay hổng.</li>
+ * </ul>
+ */
+public class VideoSequenceCheck {
+
+    private static final InetSocketAddress ADDRESS = new InetSocketAddress("127.0.0.1", 9);
+    private static final int SIZE = 64;
+
+    private static final List<Long> requests = new ArrayList<>();
+    private static final List<Long> nacks = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        UdpClientHandler handler = new UdpClientHandler();
+        handler.setOnKeyframeRequest(request -> requests.add(request.getLastFrameId()));
+        handler.setOnNack(nack -> nacks.add(nack.getFrameId()));
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+        try {
+            send(channel, 0, true);
+            send(channel, 1, false);
+            send(channel, 2, false);
+            expectRequests("in-order keyframe and deltas");
+
+            // frame 3 mất hẳn
+            send(channel, 4, false);
+            expectRequests("frame 3 lost", 2L);
+            send(channel, 5, false);
+            expectRequests("still waiting for a keyframe (retry throttled)", 2L);
+            send(channel, 6, true);
+            send(channel, 7, false);
+            expectRequests("keyframe closed the gap", 2L);
+
+            // frame 8 thiếu chunk 1, không có chunk gửi lại: bị bỏ khi quá hạn, frame 9 được giao sau đó
+            Thread.sleep(510);
+            sendChunks(channel, 8, false, 0);
+            send(channel, 9, false);
+            expectRequests("frame 9 held behind incomplete frame 8", 2L);
+            if (!nacks.equals(List.of(8L)))
+                throw new IllegalStateException("expected a NACK for frame 8, got " + nacks);
+            Thread.sleep(NackTracker.DEADLINE_MS + 10);
+            send(channel, 10, false);
+            expectRequests("incomplete frame 8 dropped after the deadline", 2L, 7L);
+
+            // phiên mới
+            handler.resetStream();
+            channel.runPendingTasks();
+            Thread.sleep(510);
+            send(channel, 0, true);
+            send(channel, 1, false);
+            expectRequests("new session restarting at frame 0", 2L, 7L);
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+        System.out.println("Video keyframe/delta sequence OK: keyframe requests " + requests + ", " + handler.nackStats());
+    }
+
+    private static void expectRequests(String step, Long... lastGood) {
+        if (!requests.equals(Arrays.asList(lastGood)))
+            throw new IllegalStateException(step + ": keyframe requests " + requests + ", expected "
+                    + Arrays.asList(lastGood));
+    }
+
+    private static void send(EmbeddedChannel channel, long frameId, boolean keyframe) throws Exception {
+        sendChunks(channel, frameId, keyframe, 0, 1);
+    }
+
+    /** Frame tile 64x64 thật (LZ4) chia hai chunk; chỉ gửi các chunk trong {@code indices}. */
+    private static void sendChunks(EmbeddedChannel channel, long frameId, boolean keyframe, int... indices)
+            throws Exception {
+        byte[] data = encodeFrame(frameId, keyframe);
+        int chunk = (data.length + 1) / 2;
+        VideoPacket header = new VideoPacket();
+        header.setFrameId(frameId);
+        header.setTotalChunks(2);
+        header.setFrameLength(data.length);
+        header.setFormat(VideoPacket.FORMAT_TILES);
+        header.setCodec(FrameCodecs.LZ4);
+        header.setKeyframe(keyframe);
+        header.setTimestamp(System.currentTimeMillis());
+        for (int index : indices) {
+            header.setChunkIndex(index);
+            ByteBuf buf = Unpooled.buffer();
+            DatagramHeader.write(buf, 0, 1);
+            int offset = index * chunk;
+            KryoSerializer.serializeVideoChunk(header, data, offset, Math.min(chunk, data.length - offset), buf);
+            channel.writeInbound(new DatagramPacket(buf, ADDRESS, ADDRESS));
+        }
+    }
+
+    private static byte[] encodeFrame(long frameId, boolean keyframe) throws Exception {
+        BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < SIZE; y++)
+            for (int x = 0; x < SIZE; x++)
+                image.setRGB(x, y, (int) (frameId * 0x010203 + x * 7 + y * 0x0300));
+        FrameEncoder encoder = FrameCodecs.newEncoder(FrameCodecs.LZ4);
+        List<VideoTile> tiles = List.of(new VideoTile(0, 0, SIZE, SIZE, encoder.encodeToArray(image, 1f)));
+        return KryoSerializer.serialize(new TileFrame(SIZE, SIZE, tiles, keyframe, new ArrayList<>()));
+    }
+}
@@ -0,0 +1,130 @@
+package client.service.video;
+
+import codec.KryoSerializer;
+import codec.image.FrameCodecs;
+import codec.image.FrameEncoder;
+import com.esotericsoftware.kryo.io.Output;
+import protocol.media.TileFrame;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Đo số byte cấp phát mỗi khung trên đường encode của ScreenSender (TileEncoder + FrameEncoder của phiên
+ * + serialize TileFrame vào Output dùng lại), bằng {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes}:
+ * <ul>
+ * <li>delta: một vùng nhỏ đổi mỗi khung (gõ chữ);</li>
+ * <li>keyframe: nén lại cả khung.</li>
+ * </ul>
+ * Thất bại nếu vượt ngân sách mỗi khung của codec. Số khung chỉnh bằng -Dbench.iterations.
+ */
+public class EncodeAllocationCheck {
+
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+    private static final int FRAMES = Integer.getInteger("bench.iterations", 200);
+
+    public static void main(String[] args) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported())
+            throw new IllegalStateException("thread allocation counter not supported by this JVM");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        for (int codec : new int[] { FrameCodecs.JPEG, FrameCodecs.PNG, FrameCodecs.RLE, FrameCodecs.LZ4 }) {
+            FrameEncoder encoder = FrameCodecs.newEncoder(codec);
+            TileEncoder tiles = new TileEncoder(encoder);
+            Output output = new Output(64 * 1024, -1);
+            BufferedImage screen = desktop();
+
+            long delta = measure(threads, () -> {
+                typeInto(screen);
+                encodeTiles(tiles, screen, output);
+            }, screen, tiles, output);
+            long keyframe = measure(threads, () -> {
+                typeInto(screen);
+                tiles.requestFullFrame();
+                encodeTiles(tiles, screen, output);
+            }, screen, tiles, output);
+
+            System.out.printf("Encode allocation %-4s: delta %,d B/frame (budget %,d), keyframe %,d B/frame (budget %,d)%n",
+                    FrameCodecs.nameOf(codec), delta, deltaBudget(codec), keyframe, keyframeBudget(codec));
+            if (delta > deltaBudget(codec))
+                throw new IllegalStateException(FrameCodecs.nameOf(codec) + " delta frame allocates " + delta
+                        + " B, budget " + deltaBudget(codec));
+            if (keyframe > keyframeBudget(codec))
+                throw new IllegalStateException(FrameCodecs.nameOf(codec) + " keyframe allocates " + keyframe
+                        + " B, budget " + keyframeBudget(codec));
+        }
+    }
+
+    private interface Step {
+        void run() throws Exception;
+    }
+
+    /** @return byte cấp phát trung bình mỗi khung, sau một lượt làm nóng */
+    private static long measure(com.sun.management.ThreadMXBean threads, Step step, BufferedImage screen,
+            TileEncoder tiles, Output output) throws Exception {
+        long id = Thread.currentThread().getId();
+        for (int i = 0; i < FRAMES / 4; i++)
+            step.run();
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < FRAMES; i++)
+            step.run();
+        return (threads.getThreadAllocatedBytes(id) - before) / FRAMES;
+    }
+
+    private static void encodeTiles(TileEncoder tiles, BufferedImage screen, Output output) throws Exception {
+        TileFrame frame = tiles.encode(screen, 0.75f);
+        if (frame == null)
+            throw new IllegalStateException("changed frame encoded as unchanged");
+        KryoSerializer.serialize(frame, output);
+    }
+
+    private static int typed;
+
+    // một ký tự mới mỗi khung trên một dòng chữ
+    private static void typeInto(BufferedImage screen) {
+        Graphics2D g = screen.createGraphics();
+        int column = typed % 80;
+        int line = typed / 80 % 20;
+        g.setColor(new Color(0x20, 0x20, 0x20));
+        g.fillRect(100 + column * 9, 150 + line * 18, 9, 16);
+        g.setColor(Color.WHITE);
+        g.drawString(String.valueOf((char) ('a' + typed % 26)), 100 + column * 9, 162 + line * 18);
+        g.dispose();
+        typed++;
+    }
+
+    // nền phẳng, thanh tiêu đề, vài khối màu và chữ: gần giống màn hình làm việc
+    private static BufferedImage desktop() {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(0x2d, 0x5f, 0x8a));
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        g.setColor(new Color(0x20, 0x20, 0x20));
+        g.fillRect(80, 100, 760, 420);
+        g.setColor(new Color(0xe0, 0xe0, 0xe0));
+        g.fillRect(80, 80, 760, 20);
+        g.fillRect(900, 100, 300, 500);
+        g.setColor(Color.BLACK);
+        for (int i = 0; i < 25; i++)
+            g.drawString("Lorem ipsum dolor sit amet " + i, 910, 120 + i * 18);
+        g.dispose();
+        return image;
+    }
+
+    // ~1.5 lần số đo lúc viết check (720p); ImageIO (jpeg/png) tự cấp phát bên trong writer
+    private static long deltaBudget(int codec) {
+        return codec == FrameCodecs.JPEG || codec == FrameCodecs.PNG ? 192 * 1024 : 8 * 1024;
+    }
+
+    private static long keyframeBudget(int codec) {
+        return switch (codec) {
+            case FrameCodecs.JPEG -> 4_608 * 1024;
+            case FrameCodecs.PNG -> 8_192 * 1024;
+            default -> 256 * 1024;
+        };
+    }
+}
@@ -0,0 +1,74 @@
+package client.service.video;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Kiểm tra {@link FrameChangeDetector} (bỏ qua khung giống hệt trước khi mask + nén):
+ * <ul>
+ * <li>khung đầu tiên luôn là đổi, khung giống hệt thì không;</li>
+ * <li>đổi một pixel ở bất kỳ hàng nào (đầu, giữa, cuối) đều bị phát hiện;</li>
+ * <li>{@link FrameChangeDetector#invalidate()} làm lần sau báo đổi dù khung giống hệt;</li>
+ * <li>đổi kích thước, ảnh không phải TYPE_INT_RGB hoặc sub-image thì luôn là đổi.</li>
+ * </ul>
+ */
+public class FrameChangeDetectorCheck {
+
+    private static final int W = 320;
+    private static final int H = 200;
+
+    public static void main(String[] args) {
+        FrameChangeDetector detector = new FrameChangeDetector();
+        BufferedImage frame = frame(W, H);
+
+        expect(detector, frame, true, "first frame");
+        expect(detector, frame, false, "same frame again");
+        expect(detector, copy(frame), false, "identical copy");
+
+        int checked = 0;
+        for (int y : new int[] { 0, H / 2, H - 1 }) {
+            for (int x : new int[] { 0, W - 1 }) {
+                frame.setRGB(x, y, frame.getRGB(x, y) ^ 0x000001);
+                expect(detector, frame, true, "pixel " + x + "," + y + " changed");
+                expect(detector, frame, false, "pixel " + x + "," + y + " unchanged afterwards");
+                checked++;
+            }
+        }
+
+        detector.invalidate();
+        expect(detector, frame, true, "after invalidate");
+        expect(detector, frame, false, "after invalidate, second frame");
+
+        // cùng số pixel nhưng khác số cột: hash từng hàng không đủ để so
+        BufferedImage resized = frame(H, W);
+        expect(detector, resized, true, "size changed");
+        expect(detector, resized, false, "resized frame again");
+
+        BufferedImage argb = new BufferedImage(W, H, BufferedImage.TYPE_INT_ARGB);
+        expect(detector, argb, true, "TYPE_INT_ARGB frame");
+        expect(detector, argb, true, "TYPE_INT_ARGB frame again");
+        BufferedImage sub = resized.getSubimage(0, 0, H / 2, W / 2);
+        expect(detector, sub, true, "sub-image");
+        expect(detector, sub, true, "sub-image again");
+
+        System.out.println("Frame change detection OK: " + checked + " single-pixel changes detected");
+    }
+
+    private static void expect(FrameChangeDetector detector, BufferedImage frame, boolean changed, String step) {
+        if (detector.changed(frame) != changed)
+            throw new IllegalStateException(step + ": expected " + (changed ? "changed" : "unchanged"));
+    }
+
+    private static BufferedImage frame(int w, int h) {
+        BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < h; y++)
+            for (int x = 0; x < w; x++)
+                image.setRGB(x, y, (x * 7) ^ (y * 131) ^ 0x204060);
+        return image;
+    }
+
+    private static BufferedImage copy(BufferedImage frame) {
+        BufferedImage copy = new BufferedImage(frame.getWidth(), frame.getHeight(), BufferedImage.TYPE_INT_RGB);
+        copy.setData(frame.getRaster());
+        return copy;
+    }
+}
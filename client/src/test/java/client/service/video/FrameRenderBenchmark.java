@@ -0,0 +1,196 @@
+package client.service.video;
+
+import codec.KryoSerializer;
+import codec.image.FrameCodecs;
+import codec.image.FrameDecoder;
+import codec.image.FrameEncoder;
+import com.esotericsoftware.kryo.io.Output;
+import io.netty.buffer.Unpooled;
+import javafx.application.Platform;
+import protocol.media.TileFrame;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Đo đường hiển thị phía người xem trên khung 1080p, như FrameDecodeWorker làm trên thread giải mã:
+ * <ul>
+ * <li>full: giải mã cả khung vào canvas của {@link TileCompositor} rồi {@link RemoteFrameBuffer#publish};</li>
+ * <li>delta: deserialize TileFrame, {@link TileCompositor#apply}, publish vùng dirty (gõ chữ).</li>
+ * </ul>
+ * In ms và byte cấp phát mỗi khung. Với LZ4 (không mất dữ liệu) canvas sau chuỗi delta phải trùng từng pixel
+ * với màn hình gốc.
+ * <p>
+ * {@link RemoteFrameBuffer#present()} (PixelBuffer.updateBuffer) chỉ chạy được trên FX thread, mà JavaFX 21
+ * không có platform headless: bước này chỉ đo khi có màn hình và chạy với -Dbench.fx=true.
+ * Số khung chỉnh bằng -Dbench.iterations.
+ */
+public class FrameRenderBenchmark {
+
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+    private static final int FRAMES = Integer.getInteger("bench.iterations", 60);
+
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+            .getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        RemoteFrameBuffer frames = new RemoteFrameBuffer();
+        for (int codec : new int[] { FrameCodecs.JPEG, FrameCodecs.LZ4 }) {
+            full(codec, frames);
+            delta(codec, frames);
+        }
+        if (Boolean.getBoolean("bench.fx"))
+            present(frames);
+        else
+            System.out.println("Render present: skipped (needs the FX thread and a display; run with -Dbench.fx=true)");
+    }
+
+    private static void full(int codec, RemoteFrameBuffer frames) throws Exception {
+        BufferedImage screen = desktop();
+        FrameEncoder encoder = FrameCodecs.newEncoder(codec);
+        byte[] data = encoder.encodeToArray(screen, 0.75f);
+        FrameDecoder decoder = FrameCodecs.newDecoder(codec);
+        TileCompositor compositor = new TileCompositor();
+
+        long[] result = measure(FRAMES / 4, () -> {
+            BufferedImage canvas = decoder.decode(data, 0, data.length, compositor.canvas());
+            compositor.replace(canvas);
+            frames.publish(canvas, 0, 0, canvas.getWidth(), canvas.getHeight());
+        });
+        print(codec, "full", result, data.length);
+    }
+
+    private static void delta(int codec, RemoteFrameBuffer frames) throws Exception {
+        // phía gửi: keyframe rồi FRAMES * 5/4 delta (phần đầu để làm nóng), serialize sẵn
+        BufferedImage screen = desktop();
+        TileEncoder tiles = new TileEncoder(FrameCodecs.newEncoder(codec));
+        Output output = new Output(64 * 1024, -1);
+        List<byte[]> wire = new ArrayList<>();
+        wire.add(serialize(tiles.encode(screen, 0.75f), output));
+        int warmup = FRAMES / 4;
+        for (int i = 0; i < warmup + FRAMES; i++) {
+            typeInto(screen, i);
+            wire.add(serialize(tiles.encode(screen, 0.75f), output));
+        }
+        long bytes = 0;
+        for (int i = 1 + warmup; i < wire.size(); i++)
+            bytes += wire.get(i).length;
+
+        FrameDecoder decoder = FrameCodecs.newDecoder(codec);
+        TileCompositor compositor = new TileCompositor();
+        for (int i = 0; i <= warmup; i++)
+            render(wire.get(i), compositor, decoder, frames);
+        int[] next = { warmup + 1 };
+        // đã làm nóng bằng phần đầu chuỗi ở trên: delta phải được áp đúng thứ tự
+        long[] result = measure(0, () -> render(wire.get(next[0]++), compositor, decoder, frames));
+        print(codec, "delta", result, bytes / FRAMES);
+
+        if (codec != FrameCodecs.JPEG) {
+            BufferedImage canvas = compositor.canvas();
+            for (int y = 0; y < HEIGHT; y++)
+                for (int x = 0; x < WIDTH; x++)
+                    if ((canvas.getRGB(x, y) & 0xffffff) != (screen.getRGB(x, y) & 0xffffff))
+                        throw new IllegalStateException(FrameCodecs.nameOf(codec) + " delta chain differs from the "
+                                + "source at " + x + "," + y);
+        }
+    }
+
+    private static void render(byte[] data, TileCompositor compositor, FrameDecoder decoder, RemoteFrameBuffer frames)
+            throws Exception {
+        TileFrame frame = (TileFrame) KryoSerializer.deserialize(Unpooled.wrappedBuffer(data));
+        Rectangle dirty = compositor.apply(frame, decoder);
+        if (!dirty.isEmpty())
+            frames.publish(compositor.canvas(frame.getWidth(), frame.getHeight()), dirty.x, dirty.y, dirty.width,
+                    dirty.height);
+    }
+
+    private static void present(RemoteFrameBuffer frames) throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        Platform.startup(started::countDown);
+        started.await();
+        BufferedImage canvas = new TileCompositor().canvas(WIDTH, HEIGHT);
+        long total = 0;
+        for (int i = 0; i < FRAMES; i++) {
+            frames.publish(canvas, 100, 100, 300, 40);
+            long[] elapsed = new long[1];
+            CountDownLatch done = new CountDownLatch(1);
+            Platform.runLater(() -> {
+                long start = System.nanoTime();
+                frames.present();
+                elapsed[0] = System.nanoTime() - start;
+                done.countDown();
+            });
+            if (!done.await(5, TimeUnit.SECONDS))
+                throw new IllegalStateException("FX thread did not run present()");
+            total += elapsed[0];
+        }
+        Platform.exit();
+        System.out.printf("Render present: 300x40 dirty rect, %.3f ms/frame%n", total / 1e6 / FRAMES);
+    }
+
+    private interface Step {
+        void run() throws Exception;
+    }
+
+    /** @return {ns, byte cấp phát} trung bình mỗi khung, sau warmup lần chạy không tính */
+    private static long[] measure(int warmup, Step step) throws Exception {
+        long id = Thread.currentThread().getId();
+        for (int i = 0; i < warmup; i++)
+            step.run();
+        long allocated = THREADS.getThreadAllocatedBytes(id);
+        long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++)
+            step.run();
+        long elapsed = System.nanoTime() - start;
+        return new long[] { elapsed / FRAMES, (THREADS.getThreadAllocatedBytes(id) - allocated) / FRAMES };
+    }
+
+    private static void print(int codec, String name, long[] result, long frameBytes) {
+        System.out.printf("Render %-4s %-5s %dx%d: %6.2f ms/frame, %,d B allocated/frame, %,d B on the wire%n",
+                FrameCodecs.nameOf(codec), name, WIDTH, HEIGHT, result[0] / 1e6, result[1], frameBytes);
+    }
+
+    private static byte[] serialize(TileFrame frame, Output output) {
+        int length = KryoSerializer.serialize(frame, output);
+        return Arrays.copyOf(output.getBuffer(), length);
+    }
+
+    // một ký tự mới mỗi khung
+    private static void typeInto(BufferedImage screen, int typed) {
+        Graphics2D g = screen.createGraphics();
+        int column = typed % 100;
+        int line = typed / 100 % 30;
+        g.setColor(new Color(0x20, 0x20, 0x20));
+        g.fillRect(120 + column * 9, 160 + line * 18, 9, 16);
+        g.setColor(Color.WHITE);
+        g.drawString(String.valueOf((char) ('a' + typed % 26)), 120 + column * 9, 172 + line * 18);
+        g.dispose();
+    }
+
+    private static BufferedImage desktop() {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(0x2d, 0x5f, 0x8a));
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        g.setColor(new Color(0x20, 0x20, 0x20));
+        g.fillRect(100, 120, 1000, 620);
+        g.setColor(new Color(0xe0, 0xe0, 0xe0));
+        g.fillRect(100, 100, 1000, 20);
+        g.fillRect(1200, 120, 600, 800);
+        g.setColor(Color.BLACK);
+        for (int i = 0; i < 40; i++)
+            g.drawString("Lorem ipsum dolor sit amet, consectetur adipiscing elit " + i, 1210, 140 + i * 18);
+        g.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,113 @@
+package client.service.video;
+
+import protocol.media.CopyRect;
+
+import java.util.Random;
+
+/**
+ * Kiểm tra {@link MotionDetector}: khung giả lập một cửa sổ có viền cố định và vùng nội dung cuộn trên
+ * một "tài liệu" pixel ngẫu nhiên. Hộp truyền vào là cả khung (rộng hơn vùng đổi, như hộp theo ô của
+ * TileEncoder).
+ * <ul>
+ * <li>cuộn lên/xuống/sang ngang: {@link MotionDetector#detect} trả về đúng độ dịch, và
+ * {@link MotionDetector#apply} lên khung trước cho ra khung hiện tại, chỉ trừ dải mới lộ ra;</li>
+ * <li>nội dung đổi hẳn hoặc nền trơn đổi màu: không có lệnh chép.</li>
+ * </ul>
+ */
+public class MotionDetectorCheck {
+
+    private static final int W = 480;
+    private static final int H = 360;
+    // vùng nội dung [X0, X1) x [Y0, Y1), ngoài vùng là viền cố định
+    private static final int X0 = 32;
+    private static final int X1 = W - 32;
+    private static final int Y0 = 40;
+    private static final int Y1 = H - 40;
+
+    private static final Random RANDOM = new Random(42);
+    private static final int[] CHROME = randomPixels(W * H);
+    private static final int DOC_W = 2 * W;
+    private static final int DOC_H = 2 * H;
+    private static final int[] DOC = randomPixels(DOC_W * DOC_H);
+
+    public static void main(String[] args) {
+        MotionDetector detector = new MotionDetector();
+
+        roundTrip(detector, "scroll up", 0, 37);
+        roundTrip(detector, "scroll down", 0, -64);
+        roundTrip(detector, "scroll right", 23, 0);
+        roundTrip(detector, "scroll left", -90, 0);
+
+        int[] previous = view(100, 100);
+        int[] other = view(100, 100);
+        int[] replaced = randomPixels(W * H);
+        for (int y = Y0; y < Y1; y++)
+            for (int x = X0; x < X1; x++)
+                other[y * W + x] = replaced[y * W + x];
+        expectNone(detector, "content replaced", other, previous);
+
+        int[] flatBefore = CHROME.clone();
+        int[] flatAfter = CHROME.clone();
+        for (int y = Y0; y < Y1; y++) {
+            for (int x = X0; x < X1; x++) {
+                flatBefore[y * W + x] = 0xffffff;
+                flatAfter[y * W + x] = 0xf0f0f0;
+            }
+        }
+        expectNone(detector, "flat background recolored", flatAfter, flatBefore);
+
+        System.out.println("Motion detection OK: 4 scrolls round-tripped, 2 non-scroll changes ignored");
+    }
+
+    /** Cuộn tài liệu (dx, dy) pixel: nội dung trên màn hình dịch ngược chiều. */
+    private static void roundTrip(MotionDetector detector, String name, int dx, int dy) {
+        int viewX = W / 2;
+        int viewY = H / 2;
+        int[] previous = view(viewX, viewY);
+        int[] current = view(viewX + dx, viewY + dy);
+
+        CopyRect move = detector.detect(current, previous, W, 0, 0, W, H);
+        if (move == null)
+            throw new IllegalStateException(name + ": no copy detected");
+        int lines = dy != 0 ? Y1 - Y0 - Math.abs(dy) : X1 - X0 - Math.abs(dx);
+        if (move.getDx() != -dx || move.getDy() != -dy || (dy != 0 ? move.getHeight() : move.getWidth()) != lines)
+            throw new IllegalStateException(name + ": got " + move + ", expected shift " + (-dx) + "," + (-dy)
+                    + " over " + lines + " lines");
+
+        MotionDetector.apply(previous, W, move);
+        // dải mới lộ ra ở phía cuối theo chiều cuộn (dx hoặc dy bằng 0 thì dải là cả chiều đó)
+        int stripX0 = dx > 0 ? X1 - dx : X0;
+        int stripX1 = dx < 0 ? X0 - dx : X1;
+        int stripY0 = dy > 0 ? Y1 - dy : Y0;
+        int stripY1 = dy < 0 ? Y0 - dy : Y1;
+        for (int y = 0; y < H; y++) {
+            for (int x = 0; x < W; x++) {
+                boolean inStrip = x >= stripX0 && x < stripX1 && y >= stripY0 && y < stripY1;
+                if (!inStrip && previous[y * W + x] != current[y * W + x])
+                    throw new IllegalStateException(name + ": pixel " + x + "," + y
+                            + " differs after applying " + move);
+            }
+        }
+    }
+
+    private static void expectNone(MotionDetector detector, String name, int[] current, int[] previous) {
+        CopyRect move = detector.detect(current, previous, W, 0, 0, W, H);
+        if (move != null)
+            throw new IllegalStateException(name + ": unexpected copy " + move);
+    }
+
+    // khung W x H: viền cố định, vùng nội dung lấy từ DOC bắt đầu ở (viewX, viewY)
+    private static int[] view(int viewX, int viewY) {
+        int[] pixels = CHROME.clone();
+        for (int y = Y0; y < Y1; y++)
+            System.arraycopy(DOC, (viewY + y - Y0) * DOC_W + viewX, pixels, y * W + X0, X1 - X0);
+        return pixels;
+    }
+
+    private static int[] randomPixels(int length) {
+        int[] pixels = new int[length];
+        for (int i = 0; i < length; i++)
+            pixels[i] = RANDOM.nextInt() & 0xffffff;
+        return pixels;
+    }
+}
@@ -0,0 +1,82 @@
+package codec;
+
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.ByteBufferOutput;
+import io.netty.buffer.ByteBuf;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Kryo Output ghi thẳng vào vùng nhớ của một ByteBuf (qua view nioBuffer, heap hay direct đều không copy).
+ * Hết chỗ thì nới ByteBuf bằng ensureWritable rồi lấy lại view; không có mảng byte trung gian.
+ * ByteBuf phải có đúng một vùng nhớ liền (nioBufferCount() == 1), không dùng được với CompositeByteBuf.
+ * Mỗi KryoPool.Context giữ một instance, dùng lại giữa các lần ghi.
+ */
+final class ByteBufOutput extends ByteBufferOutput {
+
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
+    private ByteBuf buf;
+    private int start;
+
+    ByteBufOutput() {
+        super(EMPTY_BUFFER, -1);
+    }
+
+    static boolean supports(ByteBuf buf) {
+        return buf.nioBufferCount() == 1;
+    }
+
+    /** Bắt đầu ghi tại writerIndex hiện tại của {@code buf}. */
+    void begin(ByteBuf buf) {
+        this.buf = buf;
+        this.start = buf.writerIndex();
+        buf.ensureWritable(64);
+        view(0);
+    }
+
+    /** Đẩy writerIndex tới cuối phần đã ghi, bỏ tham chiếu tới buf. @return số byte đã ghi */
+    int finish() {
+        int written = position;
+        buf.writerIndex(start + written);
+        detach();
+        return written;
+    }
+
+    /** Ghi dở (lỗi serialize): trả writerIndex về chỗ bắt đầu. Không làm gì nếu đã finish(). */
+    void abort() {
+        if (buf == null)
+            return;
+        buf.writerIndex(start);
+        detach();
+    }
+
+    private void detach() {
+        buf = null;
+        setBuffer(EMPTY_BUFFER, -1);
+    }
+
+    @Override
+    protected boolean require(int required) throws KryoException {
+        if (capacity - position >= required)
+            return false;
+        if (buf == null)
+            throw new KryoException("ByteBufOutput used outside begin()/finish()");
+        // chốt phần đã ghi trước khi nới: ByteBuf chỉ bảo toàn dữ liệu tới writerIndex khi cấp phát lại
+        int written = position;
+        buf.writerIndex(start + written);
+        buf.ensureWritable(Math.max(required, buf.capacity() - start));
+        view(written);
+        return true;
+    }
+
+    private void view(int position) {
+        setBuffer(buf.nioBuffer(start, buf.capacity() - start), -1);
+        setPosition(position);
+    }
+
+    @Override
+    public void flush() {
+        // không có OutputStream: dữ liệu đã nằm trong ByteBuf
+    }
+}
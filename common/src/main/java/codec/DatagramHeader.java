@@ -0,0 +1,47 @@
+package codec;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Prefix cố định trước payload Kryo của mọi datagram UDP (video, con trỏ):
+ * [byte MAGIC][byte version][short flags][int udpToken]
+ *
+ * udpToken do server cấp lúc login (LoginResponsePacket), server relay chỉ cần đọc token
+ * để biết người gửi, không phải deserialize VideoPacket. Token 0 = chưa có (server fallback decode).
+ */
+public final class DatagramHeader {
+
+    public static final int LENGTH = 8;
+
+    // bit cao bật -> không trùng byte đầu (class id var-int) của datagram cũ không có prefix
+    public static final byte MAGIC = (byte) 0xA5;
+    public static final int VERSION = 1;
+
+    private DatagramHeader() {
+    }
+
+    public static void write(ByteBuf out, int flags, int token) {
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        out.writeShort(flags);
+        out.writeInt(token);
+    }
+
+    public static boolean isPresent(ByteBuf in) {
+        return in.readableBytes() >= LENGTH && in.getByte(in.readerIndex()) == MAGIC;
+    }
+
+    public static int flags(ByteBuf in) {
+        return in.getUnsignedShort(in.readerIndex() + 2);
+    }
+
+    public static int token(ByteBuf in) {
+        return in.getInt(in.readerIndex() + 4);
+    }
+
+    /** Bỏ qua prefix (nếu có) để readerIndex trỏ vào payload Kryo. */
+    public static void skip(ByteBuf in) {
+        if (isPresent(in))
+            in.skipBytes(LENGTH);
+    }
+}
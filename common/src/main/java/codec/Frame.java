@@ -0,0 +1,102 @@
+package codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+import protocol.core.NetworkPacket;
+import protocol.core.PacketType;
+import protocol.input.ControlPayload;
+
+/**
+ * Frame v2 đã tách header nhưng chưa giải mã payload.
+ *
+ * Header (12 byte, big-endian):
+ * [byte version][byte packetType][short flags][int streamId][int payloadLength]
+ *
+ * streamId hiện để dành: mỗi kết nối chỉ mang một session nên sender luôn ghi 0, không handler nào đọc;
+ * relay giữ nguyên giá trị khi chuyển tiếp. Khi một kết nối mang nhiều session/stream thì mới gán nghĩa.
+ *
+ * content() là slice (retained) của buffer nhận được, payload chỉ được Kryo decode khi handler cần.
+ */
+public class Frame extends DefaultByteBufHolder {
+
+    public static final int HEADER_LENGTH = 12;
+
+    // chỉ bản mới nhất có ý nghĩa (vd. mouse move) -> relay được phép gộp/bỏ bản cũ khi nghẽn
+    public static final int FLAG_COALESCE = 1;
+
+    private static final PacketType[] PACKET_TYPES = PacketType.values();
+
+    private final PacketType type;
+    private final int flags;
+    private final int streamId;
+
+    public Frame(PacketType type, int flags, int streamId, ByteBuf payload) {
+        super(payload);
+        this.type = type;
+        this.flags = flags;
+        this.streamId = streamId;
+    }
+
+    public PacketType getType() {
+        return type;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    /** Để dành (xem doc của class), hiện luôn là 0. */
+    public int getStreamId() {
+        return streamId;
+    }
+
+    public boolean hasFlag(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    public static void writeHeader(ByteBuf out, PacketType type, int flags, int streamId, int payloadLength) {
+        out.writeByte(ProtocolVersion.V2);
+        out.writeByte(type.ordinal());
+        out.writeShort(flags);
+        out.writeInt(streamId);
+        out.writeInt(payloadLength);
+    }
+
+    public static int flagsFor(NetworkPacket packet) {
+        if (packet.getType() == PacketType.CONTROL_SIGNAL && packet.getPayload() instanceof ControlPayload
+                && ((ControlPayload) packet.getPayload()).getActionType() == 0)
+            return FLAG_COALESCE;
+        return 0;
+    }
+
+    /** Đọc packet type ngay trên buffer mà không di chuyển readerIndex; null nếu không phải header v2. */
+    public static PacketType peekType(ByteBuf in, int index) {
+        if (in.getUnsignedByte(index) != ProtocolVersion.V2)
+            return null;
+        int id = in.getUnsignedByte(index + 1);
+        return id < PACKET_TYPES.length ? PACKET_TYPES[id] : null;
+    }
+
+    static PacketType typeOf(int id) {
+        if (id >= PACKET_TYPES.length)
+            throw new IllegalArgumentException("Unknown packet type id: " + id);
+        return PACKET_TYPES[id];
+    }
+
+    @Override
+    public Frame replace(ByteBuf content) {
+        return new Frame(type, flags, streamId, content);
+    }
+
+    @Override
+    public Frame retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "Frame(type=" + type + ", flags=" + flags + ", streamId=" + streamId + ", length="
+                + content().readableBytes() + ")";
+    }
+}
@@ -0,0 +1,33 @@
+package codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import protocol.core.NetworkPacket;
+
+import java.util.List;
+
+/**
+ * Ghi lại một Frame v2 đã nhận (relay) mà không serialize lại payload:
+ * header mới + chính payload ByteBuf (retain), không copy.
+ * Nếu channel đích còn ở v1 thì mới decode payload và để NettyKryoEncoder ghi lại theo v1.
+ *
+ * Đặt sau NettyKryoEncoder khi addLast (outbound chạy từ tail về head).
+ */
+public class FrameEncoder extends MessageToMessageEncoder<Frame> {
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Frame frame, List<Object> out) throws Exception {
+        ByteBuf payload = frame.content();
+
+        if (ProtocolVersion.get(ctx.channel()) < ProtocolVersion.V2) {
+            Object obj = KryoSerializer.deserialize(payload.duplicate());
+            out.add(new NetworkPacket(frame.getType(), obj));
+            return;
+        }
+
+        ByteBuf header = ctx.alloc().directBuffer(Frame.HEADER_LENGTH);
+        Frame.writeHeader(header, frame.getType(), frame.getFlags(), frame.getStreamId(), payload.readableBytes());
+        out.add(header);
+        out.add(payload.retainedDuplicate());
+    }
+}
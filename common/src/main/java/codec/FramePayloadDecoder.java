@@ -0,0 +1,19 @@
+package codec;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import protocol.core.NetworkPacket;
+
+import java.util.List;
+
+/**
+ * Giải mã payload của Frame v2 thành NetworkPacket cho các handler phía sau.
+ * Đặt sau NettyKryoDecoder; handler nào chỉ cần header thì đứng trước nó và tự xử lý Frame.
+ */
+public class FramePayloadDecoder extends MessageToMessageDecoder<Frame> {
+    @Override
+    protected void decode(ChannelHandlerContext ctx, Frame frame, List<Object> out) throws Exception {
+        Object payload = KryoSerializer.deserialize(frame.content());
+        out.add(new NetworkPacket(frame.getType(), payload));
+    }
+}
@@ -0,0 +1,114 @@
+package codec;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
+import com.esotericsoftware.kryo.io.Output;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool Kryo/Output/Input có giới hạn, lock-free, dùng chung cho mọi loại thread
+ * (event loop Netty, thread thường, virtual thread).
+ * Khác ThreadLocal: thread sống ngắn không tạo Kryo mới mỗi lần mà mượn lại bản đã đăng ký sẵn.
+ */
+public final class KryoPool {
+
+    /** Một bộ Kryo + buffer đọc/ghi, chỉ một thread dùng tại một thời điểm. */
+    public static final class Context {
+        private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
+        final Kryo kryo = ProtocolRegistry.createKryo();
+        final Output output = new Output(4096, -1);
+        final ByteBufferInput input = new ByteBufferInput();
+        // ghi thẳng vào ByteBuf của Netty
+        final ByteBufOutput bufOutput = new ByteBufOutput();
+
+        public Kryo getKryo() {
+            return kryo;
+        }
+
+        public Output getOutput() {
+            return output;
+        }
+
+        public ByteBufferInput getInput() {
+            return input;
+        }
+
+        // không giữ tham chiếu tới stream/buffer của người dùng trước
+        void clear() {
+            output.setOutputStream(null);
+            input.setBuffer(EMPTY_BUFFER);
+            bufOutput.abort();
+        }
+    }
+
+    private final int capacity;
+    private final Queue<Context> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleSize = new AtomicInteger();
+    private final AtomicInteger peakSize = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public KryoPool(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be > 0");
+        this.capacity = capacity;
+    }
+
+    public Context borrow() {
+        Context ctx = idle.poll();
+        if (ctx != null) {
+            idleSize.decrementAndGet();
+            hits.increment();
+            return ctx;
+        }
+        misses.increment();
+        return new Context();
+    }
+
+    public void release(Context ctx) {
+        if (ctx == null)
+            return;
+        ctx.clear();
+
+        int size = idleSize.incrementAndGet();
+        if (size > capacity) {
+            // pool đầy -> bỏ cho GC
+            idleSize.decrementAndGet();
+            return;
+        }
+        idle.offer(ctx);
+        peakSize.accumulateAndGet(size, Math::max);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getIdleSize() {
+        return idleSize.get();
+    }
+
+    public int getPeakSize() {
+        return peakSize.get();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "KryoPool[hits=" + getHits() + ", misses=" + getMisses() + ", idle=" + getIdleSize()
+                + ", peak=" + getPeakSize() + ", capacity=" + capacity + "]";
+    }
+}
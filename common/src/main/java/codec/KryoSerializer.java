@@ -1,73 +1,151 @@
 package codec;
 
-import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
-import protocol.auth.ConnectRequestPacket;
-import protocol.auth.ConnectResponsePacket;
-import protocol.auth.DisconnectPacket;
-import protocol.auth.LoginRequest;
-import protocol.chat.ChatMessage;
-import protocol.core.NetworkPacket;
-import protocol.core.PacketType;
-import protocol.file.FileAcceptPacket;
-import protocol.file.FileChunkPacket;
-import protocol.file.FileOfferPacket;
-import protocol.file.FileReqPacket;
-import protocol.input.ClipboardPacket;
-import protocol.input.ControlPayload;
-import protocol.media.AudioPacket;
-import protocol.media.StartStreamPacket;
+import io.netty.buffer.ByteBuf;
 import protocol.media.VideoPacket;
-import protocol.p2p.PeerInfoPacket;
-import protocol.p2p.P2PHelloPacket;
-import protocol.p2p.PeerRegisterPacket;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 
 public class KryoSerializer {
-    private static final ThreadLocal<Kryo> kryoThreadLocal = ThreadLocal.withInitial(() -> {
-        Kryo kryo = new Kryo();
-        kryo.setRegistrationRequired(false);
-
-        kryo.register(NetworkPacket.class);
-        kryo.register(PacketType.class);
-        kryo.register(LoginRequest.class);
-        kryo.register(ChatMessage.class);
-        kryo.register(VideoPacket.class);
-        kryo.register(ControlPayload.class);
-        kryo.register(ClipboardPacket.class);
-        kryo.register(FileReqPacket.class);
-        kryo.register(FileChunkPacket.class);
-        kryo.register(ConnectRequestPacket.class);
-        kryo.register(ConnectResponsePacket.class);
-        kryo.register(StartStreamPacket.class);
-        kryo.register(FileOfferPacket.class);
-        kryo.register(FileAcceptPacket.class);
-        kryo.register(DisconnectPacket.class);
-        kryo.register(AudioPacket.class);
-        kryo.register(PeerInfoPacket.class);
-        kryo.register(PeerRegisterPacket.class);
-        kryo.register(P2PHelloPacket.class);
-
-        return kryo;
-    });
+    private static final KryoPool pool = new KryoPool(Runtime.getRuntime().availableProcessors() * 4);
+
+    public static KryoPool pool() {
+        return pool;
+    }
 
     public static byte[] serialize(Object object) {
-        Kryo kryo = kryoThreadLocal.get();
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        Output output = new Output(outputStream);
-        kryo.writeClassAndObject(output, object);
-        output.close();
-        return outputStream.toByteArray();
+        KryoPool.Context ctx = pool.borrow();
+        try {
+            Output output = ctx.output;
+            output.setOutputStream(null);
+            ctx.kryo.writeClassAndObject(output, object);
+            return output.toBytes();
+        } finally {
+            pool.release(ctx);
+        }
     }
 
     public static Object deserialize(byte[] bytes) {
-        Kryo kryo = kryoThreadLocal.get();
-        ByteArrayInputStream inputStream = new ByteArrayInputStream(bytes);
-        Input input = new Input(inputStream);
-        return kryo.readClassAndObject(input);
+        KryoPool.Context ctx = pool.borrow();
+        try {
+            return ctx.kryo.readClassAndObject(new Input(bytes));
+        } finally {
+            pool.release(ctx);
+        }
+    }
+
+    /**
+     * Ghi object thẳng vào vùng nhớ của ByteBuf (từ writerIndex hiện tại) qua {@link ByteBufOutput},
+     * không qua mảng trung gian. CompositeByteBuf (nhiều vùng nhớ) thì ghi vào Output của pool rồi copy.
+     * Trả về số byte đã ghi.
+     */
+    public static int serialize(Object object, ByteBuf out) {
+        return writeTo(out, (ctx, output) -> ctx.kryo.writeClassAndObject(output, object));
+    }
+
+    /**
+     * Ghi object vào một Output do người gọi giữ và tái sử dụng (từ vị trí 0).
+     * Kết quả nằm ở output.getBuffer()[0, trả về), hợp lệ tới lần ghi sau.
+     */
+    public static int serialize(Object object, Output output) {
+        KryoPool.Context ctx = pool.borrow();
+        try {
+            output.reset();
+            ctx.kryo.writeClassAndObject(output, object);
+            return output.position();
+        } finally {
+            pool.release(ctx);
+        }
+    }
+
+    /**
+     * Ghi một VideoPacket vào ByteBuf với data lấy từ một đoạn của mảng đã nén,
+     * byte-for-byte giống serialize(VideoPacket) nhưng không copy chunk.
+     * {@code header.data} bị bỏ qua. Trả về số byte đã ghi.
+     */
+    public static int serializeVideoChunk(VideoPacket header, byte[] data, int offset, int length, ByteBuf out) {
+        return writeTo(out, (ctx, output) -> {
+            ctx.kryo.writeClass(output, VideoPacket.class);
+            ProtocolSerializers.VideoPacketSerializer.writeChunk(output, header, data, offset, length);
+        });
+    }
+
+    private interface Writer {
+        void write(KryoPool.Context ctx, Output output);
+    }
+
+    // ghi lỗi giữa chừng thì writerIndex của out giữ nguyên như trước khi gọi
+    private static int writeTo(ByteBuf out, Writer writer) {
+        KryoPool.Context ctx = pool.borrow();
+        try {
+            if (!ByteBufOutput.supports(out)) {
+                Output output = ctx.output;
+                output.reset();
+                writer.write(ctx, output);
+                out.writeBytes(output.getBuffer(), 0, output.position());
+                return output.position();
+            }
+            ByteBufOutput output = ctx.bufOutput;
+            output.begin(out);
+            writer.write(ctx, output);
+            return output.finish();
+        } finally {
+            pool.release(ctx);
+        }
+    }
+
+    /**
+     * Đọc một VideoPacket mà không copy data ra mảng riêng: các field khác được ghi vào {@code header}
+     * (header.data giữ nguyên), readerIndex của {@code in} được đặt ở đầu data để người gọi
+     * copy thẳng vào chỗ cần. Trả về độ dài data, -1 nếu data null hoặc gói không phải VideoPacket.
+     */
+    public static int readVideoChunk(ByteBuf in, VideoPacket header) {
+        KryoPool.Context ctx = pool.borrow();
+        try {
+            ByteBufferInput input = ctx.input;
+            int start = in.readerIndex();
+            ByteBuffer view = in.nioBuffer(start, in.readableBytes());
+            int base = view.position();
+            input.setBuffer(view);
+            Registration registration = ctx.kryo.readClass(input);
+            if (registration == null || registration.getType() != VideoPacket.class)
+                return -1;
+
+            ProtocolSerializers.VideoPacketSerializer.readHead(input, header);
+            int length = input.readVarInt(true) - 1;
+            int dataStart = input.position();
+            if (length > 0)
+                input.skip(length);
+            ProtocolSerializers.VideoPacketSerializer.readTail(input, header);
+
+            in.readerIndex(start + dataStart - base);
+            return length;
+        } finally {
+            pool.release(ctx);
+        }
+    }
+
+    /**
+     * Đọc một object từ toàn bộ phần readable của ByteBuf và tăng readerIndex tương ứng.
+     * Với direct buffer, Kryo đọc trực tiếp trên vùng nhớ của ByteBuf (không copy).
+     */
+    public static Object deserialize(ByteBuf in) {
+        KryoPool.Context ctx = pool.borrow();
+        try {
+            ByteBufferInput input = ctx.input;
+            int start = in.readerIndex();
+            ByteBuffer view = in.nioBuffer(start, in.readableBytes());
+            int base = view.position();
+            input.setBuffer(view);
+            Object obj = ctx.kryo.readClassAndObject(input);
+            in.readerIndex(start + input.position() - base);
+            return obj;
+        } finally {
+            pool.release(ctx);
+        }
     }
-}
\ No newline at end of file
+}
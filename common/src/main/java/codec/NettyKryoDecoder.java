@@ -5,13 +5,26 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
 import java.util.List;
 
+/**
+ * Tách frame TCP, nhận cả hai version:
+ * - byte đầu = {@link ProtocolVersion#V2}: frame v2 -> {@link Frame} (payload chưa decode)
+ * - còn lại: frame v1 [int length] (byte cao của length luôn là 0) -> NetworkPacket
+ */
 public class NettyKryoDecoder extends ByteToMessageDecoder {
+    // relay chuyển tiếp frame v2 mà không decode -> phải chặn length từ wire, không thì gom tới 2 GB/kết nối
+    static final int MAX_FRAME_BYTES = Integer.getInteger("ultraview.net.maxFrameBytes", 16 * 1024 * 1024);
+
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
         if (in.readableBytes() < 4) {
             return;
         }
 
+        if (in.getUnsignedByte(in.readerIndex()) == ProtocolVersion.V2) {
+            decodeV2(ctx, in, out);
+            return;
+        }
+
         in.markReaderIndex();
 
         int dataLength = in.readInt();
@@ -21,10 +34,37 @@ public class NettyKryoDecoder extends ByteToMessageDecoder {
             return;
         }
 
-        byte[] body = new byte[dataLength];
-        in.readBytes(body);
+        // đọc thẳng trên vùng nhớ của cumulation buffer, không copy ra byte[]
+        ByteBuf body = in.slice(in.readerIndex(), dataLength);
+        in.skipBytes(dataLength);
 
         Object obj = KryoSerializer.deserialize(body);
         out.add(obj);
     }
-}
\ No newline at end of file
+
+    private void decodeV2(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        if (in.readableBytes() < Frame.HEADER_LENGTH) {
+            return;
+        }
+
+        int start = in.readerIndex();
+        int payloadLength = in.getInt(start + 8);
+        if (payloadLength < 0 || payloadLength > MAX_FRAME_BYTES) {
+            System.out.println("[Decoder] Frame v2 length không hợp lệ (" + payloadLength + ") từ "
+                    + ctx.channel().remoteAddress() + ", đóng kết nối");
+            in.skipBytes(in.readableBytes());
+            ctx.close();
+            return;
+        }
+        if (in.readableBytes() < Frame.HEADER_LENGTH + payloadLength) {
+            return;
+        }
+
+        int typeId = in.getUnsignedByte(start + 1);
+        int flags = in.getUnsignedShort(start + 2);
+        int streamId = in.getInt(start + 4);
+
+        in.skipBytes(Frame.HEADER_LENGTH);
+        out.add(new Frame(Frame.typeOf(typeId), flags, streamId, in.readRetainedSlice(payloadLength)));
+    }
+}
@@ -6,13 +6,34 @@ import io.netty.handler.codec.MessageToByteEncoder;
 import protocol.core.NetworkPacket;
 
 public class NettyKryoEncoder extends MessageToByteEncoder<NetworkPacket> {
+
+    public NettyKryoEncoder() {
+        // out là pooled direct ByteBuf lấy từ ctx.alloc()
+        super(true);
+    }
+
     @Override
     protected void encode(ChannelHandlerContext ctx, NetworkPacket msg, ByteBuf out) throws Exception {
-        byte[] body = KryoSerializer.serialize(msg);
-        int dataLength = body.length;
+        if (ProtocolVersion.get(ctx.channel()) >= ProtocolVersion.V2) {
+            encodeV2(msg, out);
+            return;
+        }
+
+        // giữ chỗ cho length prefix, ghi body rồi back-patch lại
+        int lengthIndex = out.writerIndex();
+        out.writeInt(0);
+
+        int dataLength = KryoSerializer.serialize(msg, out);
+
+        out.setInt(lengthIndex, dataLength);
+    }
+
+    private void encodeV2(NetworkPacket msg, ByteBuf out) {
+        int headerIndex = out.writerIndex();
+        Frame.writeHeader(out, msg.getType(), Frame.flagsFor(msg), 0, 0);
 
-        out.writeInt(dataLength);
+        int payloadLength = KryoSerializer.serialize(msg.getPayload(), out);
 
-        out.writeBytes(body);
+        out.setInt(headerIndex + 8, payloadLength);
     }
-}
\ No newline at end of file
+}
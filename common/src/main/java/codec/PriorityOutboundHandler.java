@@ -0,0 +1,242 @@
+package codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+import protocol.core.NetworkPacket;
+import protocol.core.PacketType;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lập lịch gói ra theo độ ưu tiên trên một channel TCP dùng chung:
+ * input điều khiển > audio > clipboard/chat/control-plane > file (offer/req/chunk).
+ *
+ * Khi channel writable, gói đi thẳng như cũ. Khi channel vượt high watermark, gói được giữ
+ * trong hàng đợi theo làn và xả lại theo thứ tự ưu tiên mỗi khi channel writable trở lại,
+ * nên một click không phải chờ sau hàng MB file chunk đang đợi. Làn BULK vẫn được phục vụ
+ * 1 lần mỗi {@link #BULK_EVERY} lần lấy để file không bị đói.
+ *
+ * Mỗi làn giữ tối đa {@link #MAX_LANE_BYTES} byte / {@link #MAX_LANE_MESSAGES} gói: peer chậm mãi
+ * không làm heap phình vô hạn. Gói vượt giới hạn bị bỏ (promise fail, đếm trong {@link #stats()});
+ * riêng làn BULK (luồng file, phải đủ và đúng thứ tự) thì đóng kết nối thay vì bỏ một chunk.
+ * Bình thường không chạm tới: relay đã bỏ audio, gộp mouse move và tạm dừng người gửi file khi nghẽn.
+ *
+ * Đặt cuối pipeline khi addLast (outbound chạy từ tail về head nên gặp handler này trước encoder).
+ * Chỉ chạy trên event loop của channel, không cần khóa.
+ */
+public class PriorityOutboundHandler extends ChannelDuplexHandler {
+
+    public enum Lane {
+        INTERACTIVE, AUDIO, NORMAL, BULK
+    }
+
+    static final int BULK_EVERY = 8;
+    static final int MAX_LANE_BYTES = Integer.getInteger("ultraview.net.maxLaneBytes", 4 * 1024 * 1024);
+    static final int MAX_LANE_MESSAGES = Integer.getInteger("ultraview.net.maxLaneMessages", 8192);
+    // gói không phải ByteBuf (NetworkPacket chưa encode) không biết kích thước: giới hạn số gói lo phần đó
+    private static final int UNKNOWN_MESSAGE_SIZE = 64;
+
+    private static final Lane[] LANES = Lane.values();
+
+    private final List<ArrayDeque<Pending>> queues = new ArrayList<>(LANES.length);
+    private final long[] queuedBytes = new long[LANES.length];
+    private final long[] overflowed = new long[LANES.length];
+    private int queued;
+    private int sinceBulk;
+
+    // thống kê thời gian chờ theo làn (chỉ tính gói đã phải xếp hàng)
+    private final long[] delayed = new long[LANES.length];
+    private final long[] totalWaitNanos = new long[LANES.length];
+    private final long[] maxWaitNanos = new long[LANES.length];
+
+    public PriorityOutboundHandler() {
+        for (int i = 0; i < LANES.length; i++)
+            queues.add(new ArrayDeque<>());
+    }
+
+    public static Lane laneOf(Object msg) {
+        PacketType type = null;
+        if (msg instanceof NetworkPacket)
+            type = ((NetworkPacket) msg).getType();
+        else if (msg instanceof Frame)
+            type = ((Frame) msg).getType();
+
+        if (type == null)
+            return Lane.NORMAL;
+        switch (type) {
+            case CONTROL_SIGNAL:
+                return Lane.INTERACTIVE;
+            case AUDIO_DATA:
+                return Lane.AUDIO;
+            // cả luồng file chung một làn FIFO: FILE_REQ của file sau không được vượt chunk cuối của file trước
+            case FILE_OFFER:
+            case FILE_ACCEPT:
+            case FILE_REQ:
+            case FILE_CHUNK:
+                return Lane.BULK;
+            default:
+                return Lane.NORMAL;
+        }
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        // channel đã đóng: để head fail + release, không giữ lại trong hàng đợi không còn ai xả
+        if (queued == 0 && ctx.channel().isWritable() || !ctx.channel().isActive()) {
+            ctx.write(msg, promise);
+            return;
+        }
+        int lane = laneOf(msg).ordinal();
+        ArrayDeque<Pending> queue = queues.get(lane);
+        int size = sizeOf(msg);
+        if (queue.size() >= MAX_LANE_MESSAGES || queuedBytes[lane] + size > MAX_LANE_BYTES) {
+            ReferenceCountUtil.release(msg);
+            promise.tryFailure(new IllegalStateException("Outbound lane " + LANES[lane] + " full"));
+            if (LANES[lane] == Lane.BULK) {
+                // bỏ một chunk giữa luồng file là file hỏng mà hai bên không biết -> đóng kết nối
+                overflowed[lane]++;
+                System.out.println("Outbound lane BULK full for " + ctx.channel().remoteAddress() + ", closing");
+                ctx.close();
+                return;
+            }
+            if (overflowed[lane]++ == 0)
+                System.out.println("Outbound lane " + LANES[lane] + " full for " + ctx.channel().remoteAddress()
+                        + ", dropping");
+            return;
+        }
+        queue.add(new Pending(msg, promise, size, System.nanoTime()));
+        queuedBytes[lane] += size;
+        queued++;
+    }
+
+    private static int sizeOf(Object msg) {
+        if (msg instanceof ByteBuf)
+            return ((ByteBuf) msg).readableBytes();
+        if (msg instanceof ByteBufHolder)
+            return ((ByteBufHolder) msg).content().readableBytes();
+        return UNKNOWN_MESSAGE_SIZE;
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        drain(ctx);
+        ctx.flush();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable() && queued > 0) {
+            drain(ctx);
+            ctx.flush();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        discardAll();
+        if (hasDelays())
+            System.out.println("Outbound priority " + ctx.channel().remoteAddress() + ": " + stats());
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        discardAll();
+    }
+
+    private void drain(ChannelHandlerContext ctx) {
+        while (queued > 0 && ctx.channel().isWritable()) {
+            Lane lane = nextLane();
+            Pending p = queues.get(lane.ordinal()).poll();
+            queuedBytes[lane.ordinal()] -= p.size;
+            queued--;
+            record(lane, System.nanoTime() - p.enqueuedAt);
+            ctx.write(p.msg, p.promise);
+        }
+    }
+
+    private Lane nextLane() {
+        boolean bulkWaiting = !queues.get(Lane.BULK.ordinal()).isEmpty();
+        if (bulkWaiting && ++sinceBulk >= BULK_EVERY) {
+            sinceBulk = 0;
+            return Lane.BULK;
+        }
+        for (Lane lane : LANES) {
+            if (!queues.get(lane.ordinal()).isEmpty())
+                return lane;
+        }
+        return Lane.BULK; // không tới được: queued > 0
+    }
+
+    private void record(Lane lane, long waitNanos) {
+        int i = lane.ordinal();
+        delayed[i]++;
+        totalWaitNanos[i] += waitNanos;
+        if (waitNanos > maxWaitNanos[i])
+            maxWaitNanos[i] = waitNanos;
+    }
+
+    private boolean hasDelays() {
+        for (int i = 0; i < LANES.length; i++)
+            if (delayed[i] > 0 || overflowed[i] > 0)
+                return true;
+        return false;
+    }
+
+    private void discardAll() {
+        ClosedChannelException cause = null;
+        for (ArrayDeque<Pending> q : queues) {
+            Pending p;
+            while ((p = q.poll()) != null) {
+                if (cause == null)
+                    cause = new ClosedChannelException();
+                ReferenceCountUtil.release(p.msg);
+                p.promise.tryFailure(cause);
+            }
+        }
+        queued = 0;
+        Arrays.fill(queuedBytes, 0);
+    }
+
+    /** Số gói phải chờ, thời gian chờ trung bình / lớn nhất theo làn (ms), số gói bị bỏ vì làn đầy. */
+    public String stats() {
+        StringBuilder sb = new StringBuilder();
+        for (Lane lane : LANES) {
+            int i = lane.ordinal();
+            if (sb.length() > 0)
+                sb.append(", ");
+            sb.append(lane.name().toLowerCase()).append('=').append(delayed[i]);
+            if (delayed[i] > 0) {
+                sb.append(" avg ").append(TimeUnit.NANOSECONDS.toMillis(totalWaitNanos[i] / delayed[i]))
+                        .append("ms max ").append(TimeUnit.NANOSECONDS.toMillis(maxWaitNanos[i])).append("ms");
+            }
+            if (overflowed[i] > 0)
+                sb.append(" dropped ").append(overflowed[i]);
+        }
+        return sb.toString();
+    }
+
+    private static final class Pending {
+        final Object msg;
+        final ChannelPromise promise;
+        final int size;
+        final long enqueuedAt;
+
+        Pending(Object msg, ChannelPromise promise, int size, long enqueuedAt) {
+            this.msg = msg;
+            this.promise = promise;
+            this.size = size;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
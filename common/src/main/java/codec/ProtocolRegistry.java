@@ -0,0 +1,167 @@
+package codec;
+
+import com.esotericsoftware.kryo.Kryo;
+
+import codec.ProtocolSerializers.*;
+import protocol.auth.ConnectRequestPacket;
+import protocol.auth.ConnectResponsePacket;
+import protocol.auth.DisconnectPacket;
+import protocol.auth.LoginRequest;
+import protocol.auth.LoginResponsePacket;
+import protocol.chat.ChatMessage;
+import protocol.core.NetworkPacket;
+import protocol.core.PacketType;
+import protocol.file.FileAcceptPacket;
+import protocol.file.FileChunkPacket;
+import protocol.file.FileOfferPacket;
+import protocol.file.FileReqPacket;
+import protocol.file.FlowControlPacket;
+import protocol.input.ClipboardPacket;
+import protocol.input.ControlPayload;
+import protocol.media.AudioPacket;
+import protocol.media.CopyRect;
+import protocol.media.CursorPacket;
+import protocol.media.KeyframeRequestPacket;
+import protocol.media.NackPacket;
+import protocol.media.ReceiverReportPacket;
+import protocol.media.StartStreamPacket;
+import protocol.media.TileFrame;
+import protocol.media.VideoPacket;
+import protocol.media.VideoTile;
+import protocol.p2p.P2PHelloPacket;
+import protocol.p2p.PeerInfoPacket;
+import protocol.p2p.PeerRegisterPacket;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.CRC32;
+
+/**
+ * Bảng đăng ký cố định (id tường minh) cho mọi class đi trên dây.
+ *
+ * Quy tắc:
+ * - Không đổi id đã cấp, chỉ thêm id mới ở cuối.
+ * - Sửa field của class protocol -> sửa serializer tương ứng, tăng VERSION và append fingerprint mới.
+ * Build của module common chạy {@link #main} (exec-maven-plugin) và sẽ fail nếu fingerprint lệch.
+ */
+public final class ProtocolRegistry {
+
+    public static final int VERSION = 12;
+
+    // FINGERPRINTS[v - 1] = fingerprint của registry version v, chỉ được append
+    private static final long[] FINGERPRINTS = {
+            0x373fd8d7L, // v1
+            0xe0f39083L, // v2: LoginRequest.protocolVersion, LoginResponsePacket
+            0x5be9ce70L, // v3: LoginResponsePacket.udpToken
+            0x69c02ed4L, // v4: PacketType.FLOW_CONTROL, FlowControlPacket
+            0x9d3583aaL, // v5: VideoPacket.format, VideoTile, TileFrame
+            0x49b3e961L, // v6: PacketType.RECEIVER_REPORT, ReceiverReportPacket
+            0xf687e708L, // v7: VideoPacket.fecGroup, VideoPacket.frameLength
+            0x894355e1L, // v8: PacketType.VIDEO_NACK, NackPacket
+            0x4ad71df6L, // v9: cờ keyframe, PacketType.KEYFRAME_REQUEST, KeyframeRequestPacket
+            0x3700e5d2L, // v10: CursorPacket
+            0x5b8dab07L, // v11: CopyRect, TileFrame.copies
+            0xcdb56d40L, // v12: VideoPacket.codec
+    };
+
+    // id < 20 dành cho các kiểu mặc định của Kryo (int, String, ...)
+    private static final int FIRST_ID = 20;
+
+    private ProtocolRegistry() {
+    }
+
+    public static Kryo createKryo() {
+        Kryo kryo = new Kryo();
+        kryo.setRegistrationRequired(true);
+        kryo.setReferences(false);
+
+        kryo.register(PacketType.class, FIRST_ID);
+        kryo.register(NetworkPacket.class, new NetworkPacketSerializer(), FIRST_ID + 1);
+
+        kryo.register(LoginRequest.class, new LoginRequestSerializer(), FIRST_ID + 2);
+        kryo.register(ConnectRequestPacket.class, new ConnectRequestSerializer(), FIRST_ID + 3);
+        kryo.register(ConnectResponsePacket.class, new ConnectResponseSerializer(), FIRST_ID + 4);
+        kryo.register(DisconnectPacket.class, new DisconnectSerializer(), FIRST_ID + 5);
+
+        kryo.register(ChatMessage.class, new ChatMessageSerializer(), FIRST_ID + 6);
+
+        kryo.register(ControlPayload.class, new ControlPayloadSerializer(), FIRST_ID + 7);
+        kryo.register(ClipboardPacket.class, new ClipboardSerializer(), FIRST_ID + 8);
+
+        kryo.register(FileReqPacket.class, new FileReqSerializer(), FIRST_ID + 9);
+        kryo.register(FileChunkPacket.class, new FileChunkSerializer(), FIRST_ID + 10);
+        kryo.register(FileOfferPacket.class, new FileOfferSerializer(), FIRST_ID + 11);
+        kryo.register(FileAcceptPacket.class, new FileAcceptSerializer(), FIRST_ID + 12);
+
+        kryo.register(VideoPacket.class, new VideoPacketSerializer(), FIRST_ID + 13);
+        kryo.register(AudioPacket.class, new AudioPacketSerializer(), FIRST_ID + 14);
+        kryo.register(StartStreamPacket.class, new StartStreamSerializer(), FIRST_ID + 15);
+
+        kryo.register(PeerInfoPacket.class, new PeerInfoSerializer(), FIRST_ID + 16);
+        kryo.register(PeerRegisterPacket.class, new PeerRegisterSerializer(), FIRST_ID + 17);
+        kryo.register(P2PHelloPacket.class, new P2PHelloSerializer(), FIRST_ID + 18);
+
+        kryo.register(LoginResponsePacket.class, new LoginResponseSerializer(), FIRST_ID + 19);
+        kryo.register(FlowControlPacket.class, new FlowControlSerializer(), FIRST_ID + 20);
+        kryo.register(VideoTile.class, new VideoTileSerializer(), FIRST_ID + 21);
+        kryo.register(TileFrame.class, new TileFrameSerializer(), FIRST_ID + 22);
+        kryo.register(ReceiverReportPacket.class, new ReceiverReportSerializer(), FIRST_ID + 23);
+        kryo.register(NackPacket.class, new NackSerializer(), FIRST_ID + 24);
+        kryo.register(KeyframeRequestPacket.class, new KeyframeRequestSerializer(), FIRST_ID + 25);
+        kryo.register(CursorPacket.class, new CursorSerializer(), FIRST_ID + 26);
+        kryo.register(CopyRect.class, new CopyRectSerializer(), FIRST_ID + 27);
+
+        return kryo;
+    }
+
+    /**
+     * Dấu vân tay của toàn bộ registry: id, tên class, tên + kiểu field (và hằng enum).
+     */
+    public static long computeFingerprint() {
+        Kryo kryo = createKryo();
+        StringBuilder sb = new StringBuilder();
+        for (int id = FIRST_ID; kryo.getRegistration(id) != null; id++) {
+            Class<?> type = kryo.getRegistration(id).getType();
+            sb.append(id).append(':').append(type.getName()).append('{');
+            if (type.isEnum()) {
+                for (Object c : type.getEnumConstants())
+                    sb.append(c).append(',');
+            } else {
+                Field[] fields = type.getDeclaredFields();
+                Arrays.sort(fields, Comparator.comparing(Field::getName));
+                for (Field f : fields) {
+                    if (Modifier.isStatic(f.getModifiers()) || Modifier.isTransient(f.getModifiers()))
+                        continue;
+                    sb.append(f.getName()).append(':').append(f.getType().getName()).append(',');
+                }
+            }
+            sb.append('}');
+        }
+        CRC32 crc = new CRC32();
+        crc.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    public static void verify() {
+        if (FINGERPRINTS.length != VERSION) {
+            throw new IllegalStateException("ProtocolRegistry.VERSION=" + VERSION + " but "
+                    + FINGERPRINTS.length + " fingerprints are recorded");
+        }
+        long actual = computeFingerprint();
+        long expected = FINGERPRINTS[VERSION - 1];
+        if (actual != expected) {
+            throw new IllegalStateException(String.format(
+                    "Protocol classes changed (fingerprint 0x%xL, registry v%d expects 0x%xL). "
+                            + "Update ProtocolSerializers, bump ProtocolRegistry.VERSION and append the new fingerprint.",
+                    actual, VERSION, expected));
+        }
+    }
+
+    public static void main(String[] args) {
+        verify();
+        System.out.println("Protocol registry v" + VERSION + " OK");
+    }
+}
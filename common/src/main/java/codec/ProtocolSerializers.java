@@ -0,0 +1,554 @@
+package codec;
+
+import codec.image.FrameCodecs;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import protocol.auth.ConnectRequestPacket;
+import protocol.auth.ConnectResponsePacket;
+import protocol.auth.DisconnectPacket;
+import protocol.auth.LoginRequest;
+import protocol.auth.LoginResponsePacket;
+import protocol.chat.ChatMessage;
+import protocol.core.NetworkPacket;
+import protocol.core.PacketType;
+import protocol.file.FileAcceptPacket;
+import protocol.file.FileChunkPacket;
+import protocol.file.FileOfferPacket;
+import protocol.file.FileReqPacket;
+import protocol.file.FlowControlPacket;
+import protocol.input.ClipboardPacket;
+import protocol.input.ControlPayload;
+import protocol.media.AudioPacket;
+import protocol.media.CopyRect;
+import protocol.media.CursorPacket;
+import protocol.media.KeyframeRequestPacket;
+import protocol.media.NackPacket;
+import protocol.media.ReceiverReportPacket;
+import protocol.media.StartStreamPacket;
+import protocol.media.TileFrame;
+import protocol.media.VideoPacket;
+import protocol.media.VideoTile;
+import protocol.p2p.P2PHelloPacket;
+import protocol.p2p.PeerInfoPacket;
+import protocol.p2p.PeerRegisterPacket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serializer viết tay cho từng class trong protocol.*.
+ * Số nguyên dùng var-int, float/timestamp dùng fixed-width, không dùng reflection.
+ * Đổi thứ tự/kiểu field ở đây = đổi wire format -> phải bump ProtocolRegistry.VERSION.
+ */
+public final class ProtocolSerializers {
+
+    private static final PacketType[] PACKET_TYPES = PacketType.values();
+
+    private ProtocolSerializers() {
+    }
+
+    // ===== helpers =====
+
+    // length + 1 để phân biệt null (0) với mảng rỗng (1)
+    static void writeBytes(Output out, byte[] data) {
+        if (data == null) {
+            out.writeVarInt(0, true);
+            return;
+        }
+        out.writeVarInt(data.length + 1, true);
+        out.writeBytes(data);
+    }
+
+    static byte[] readBytes(Input in) {
+        int length = in.readVarInt(true);
+        if (length == 0)
+            return null;
+        return in.readBytes(length - 1);
+    }
+
+    // ===== core =====
+
+    public static class NetworkPacketSerializer extends Serializer<NetworkPacket> {
+        @Override
+        public void write(Kryo kryo, Output out, NetworkPacket p) {
+            PacketType type = p.getType();
+            // 0 = null, còn lại ordinal + 1
+            out.writeVarInt(type == null ? 0 : type.ordinal() + 1, true);
+            kryo.writeClassAndObject(out, p.getPayload());
+        }
+
+        @Override
+        public NetworkPacket read(Kryo kryo, Input in, Class<? extends NetworkPacket> cls) {
+            int type = in.readVarInt(true);
+            Object payload = kryo.readClassAndObject(in);
+            return new NetworkPacket(type == 0 ? null : PACKET_TYPES[type - 1], payload);
+        }
+    }
+
+    // ===== auth =====
+
+    public static class LoginRequestSerializer extends Serializer<LoginRequest> {
+        @Override
+        public void write(Kryo kryo, Output out, LoginRequest p) {
+            out.writeString(p.getUserId());
+            out.writeString(p.getPassword());
+            out.writeVarInt(p.getProtocolVersion(), true);
+        }
+
+        @Override
+        public LoginRequest read(Kryo kryo, Input in, Class<? extends LoginRequest> cls) {
+            String userId = in.readString();
+            String password = in.readString();
+            // client v1 không gửi field này; LoginRequest luôn nằm cuối frame nên dựa vào end()
+            int version = in.end() ? 1 : in.readVarInt(true);
+            return new LoginRequest(userId, password, version);
+        }
+    }
+
+    public static class LoginResponseSerializer extends Serializer<LoginResponsePacket> {
+        @Override
+        public void write(Kryo kryo, Output out, LoginResponsePacket p) {
+            out.writeString(p.getStatus());
+            out.writeVarInt(p.getProtocolVersion(), true);
+            out.writeInt(p.getUdpToken());
+        }
+
+        @Override
+        public LoginResponsePacket read(Kryo kryo, Input in, Class<? extends LoginResponsePacket> cls) {
+            return new LoginResponsePacket(in.readString(), in.readVarInt(true), in.readInt());
+        }
+    }
+
+    public static class ConnectRequestSerializer extends Serializer<ConnectRequestPacket> {
+        @Override
+        public void write(Kryo kryo, Output out, ConnectRequestPacket p) {
+            out.writeString(p.getTargetId());
+            out.writeString(p.getTargetPass());
+        }
+
+        @Override
+        public ConnectRequestPacket read(Kryo kryo, Input in, Class<? extends ConnectRequestPacket> cls) {
+            return new ConnectRequestPacket(in.readString(), in.readString());
+        }
+    }
+
+    public static class ConnectResponseSerializer extends Serializer<ConnectResponsePacket> {
+        @Override
+        public void write(Kryo kryo, Output out, ConnectResponsePacket p) {
+            out.writeBoolean(p.isSuccess());
+            out.writeString(p.getMessage());
+            out.writeString(p.getSessionId());
+            out.writeString(p.getPeerHost());
+            out.writeVarInt(p.getPeerControlPort(), true);
+        }
+
+        @Override
+        public ConnectResponsePacket read(Kryo kryo, Input in, Class<? extends ConnectResponsePacket> cls) {
+            return new ConnectResponsePacket(in.readBoolean(), in.readString(), in.readString(), in.readString(),
+                    in.readVarInt(true));
+        }
+    }
+
+    public static class DisconnectSerializer extends Serializer<DisconnectPacket> {
+        @Override
+        public void write(Kryo kryo, Output out, DisconnectPacket p) {
+            out.writeString(p.getDisconnectedId());
+        }
+
+        @Override
+        public DisconnectPacket read(Kryo kryo, Input in, Class<? extends DisconnectPacket> cls) {
+            return new DisconnectPacket(in.readString());
+        }
+    }
+
+    // ===== chat =====
+
+    public static class ChatMessageSerializer extends Serializer<ChatMessage> {
+        @Override
+        public void write(Kryo kryo, Output out, ChatMessage p) {
+            out.writeString(p.getSenderId());
+            out.writeString(p.getReceiverId());
+            out.writeString(p.getMessage());
+        }
+
+        @Override
+        public ChatMessage read(Kryo kryo, Input in, Class<? extends ChatMessage> cls) {
+            return new ChatMessage(in.readString(), in.readString(), in.readString());
+        }
+    }
+
+    // ===== input =====
+
+    public static class ControlPayloadSerializer extends Serializer<ControlPayload> {
+        @Override
+        public void write(Kryo kryo, Output out, ControlPayload p) {
+            out.writeVarInt(p.getActionType(), true);
+            out.writeFloat(p.getX());
+            out.writeFloat(p.getY());
+            out.writeVarInt(p.getButton(), false);
+            out.writeVarInt(p.getKeyCode(), false);
+        }
+
+        @Override
+        public ControlPayload read(Kryo kryo, Input in, Class<? extends ControlPayload> cls) {
+            return new ControlPayload(in.readVarInt(true), in.readFloat(), in.readFloat(), in.readVarInt(false),
+                    in.readVarInt(false));
+        }
+    }
+
+    public static class ClipboardSerializer extends Serializer<ClipboardPacket> {
+        @Override
+        public void write(Kryo kryo, Output out, ClipboardPacket p) {
+            out.writeString(p.getContent());
+        }
+
+        @Override
+        public ClipboardPacket read(Kryo kryo, Input in, Class<? extends ClipboardPacket> cls) {
+            return new ClipboardPacket(in.readString());
+        }
+    }
+
+    // ===== file =====
+
+    public static class FileReqSerializer extends Serializer<FileReqPacket> {
+        @Override
+        public void write(Kryo kryo, Output out, FileReqPacket p) {
+            out.writeString(p.getFileName());
+            out.writeVarLong(p.getFileSize(), true);
+        }
+
+        @Override
+        public FileReqPacket read(Kryo kryo, Input in, Class<? extends FileReqPacket> cls) {
+            return new FileReqPacket(in.readString(), in.readVarLong(true));
+        }
+    }
+
+    public static class FileChunkSerializer extends Serializer<FileChunkPacket> {
+        @Override
+        public void write(Kryo kryo, Output out, FileChunkPacket p) {
+            out.writeVarInt(p.getLength(), true);
+            out.writeBoolean(p.isLast());
+            writeBytes(out, p.getData());
+        }
+
+        @Override
+        public FileChunkPacket read(Kryo kryo, Input in, Class<? extends FileChunkPacket> cls) {
+            int length = in.readVarInt(true);
+            boolean isLast = in.readBoolean();
+            return new FileChunkPacket(readBytes(in), length, isLast);
+        }
+    }
+
+    public static class FileOfferSerializer extends Serializer<FileOfferPacket> {
+        @Override
+        public void write(Kryo kryo, Output out, FileOfferPacket p) {
+            out.writeString(p.getFileName());
+            out.writeVarLong(p.getFileSize(), true);
+        }
+
+        @Override
+        public FileOfferPacket read(Kryo kryo, Input in, Class<? extends FileOfferPacket> cls) {
+            return new FileOfferPacket(in.readString(), in.readVarLong(true));
+        }
+    }
+
+    public static class FileAcceptSerializer extends Serializer<FileAcceptPacket> {
+        @Override
+        public void write(Kryo kryo, Output out, FileAcceptPacket p) {
+            out.writeString(p.getFileName());
+        }
+
+        @Override
+        public FileAcceptPacket read(Kryo kryo, Input in, Class<? extends FileAcceptPacket> cls) {
+            return new FileAcceptPacket(in.readString());
+        }
+    }
+
+    public static class FlowControlSerializer extends Serializer<FlowControlPacket> {
+        @Override
+        public void write(Kryo kryo, Output out, FlowControlPacket p) {
+            out.writeBoolean(p.isPaused());
+        }
+
+        @Override
+        public FlowControlPacket read(Kryo kryo, Input in, Class<? extends FlowControlPacket> cls) {
+            return new FlowControlPacket(in.readBoolean());
+        }
+    }
+
+    // ===== media =====
+
+    public static class VideoPacketSerializer extends Serializer<VideoPacket> {
+        @Override
+        public void write(Kryo kryo, Output out, VideoPacket p) {
+            byte[] data = p.getData();
+            writeChunk(out, p, data, 0, data == null ? -1 : data.length);
+        }
+
+        /**
+         * Ghi VideoPacket với data là một đoạn [offset, offset + length) của mảng lớn hơn,
+         * không cần copy chunk ra mảng riêng. length = -1 nghĩa là data null.
+         */
+        static void writeChunk(Output out, VideoPacket p, byte[] data, int offset, int length) {
+            out.writeString(p.getSenderId());
+            out.writeString(p.getTargetId());
+            out.writeLong(p.getTimestamp());
+            out.writeVarLong(p.getFrameId(), true);
+            out.writeVarInt(p.getChunkIndex(), true);
+            out.writeVarInt(p.getTotalChunks(), true);
+            out.writeVarInt(length + 1, true);
+            if (length > 0)
+                out.writeBytes(data, offset, length);
+            out.writeVarInt(p.getFormat(), true);
+            out.writeVarInt(p.getFecGroup(), true);
+            out.writeVarInt(p.getFrameLength(), true);
+            out.writeBoolean(p.isKeyframe());
+            out.writeVarInt(p.getCodec(), true);
+        }
+
+        @Override
+        public VideoPacket read(Kryo kryo, Input in, Class<? extends VideoPacket> cls) {
+            VideoPacket p = new VideoPacket();
+            readHead(in, p);
+            p.setData(readBytes(in));
+            readTail(in, p);
+            return p;
+        }
+
+        // các field trước data
+        static void readHead(Input in, VideoPacket p) {
+            p.setSenderId(in.readString());
+            p.setTargetId(in.readString());
+            p.setTimestamp(in.readLong());
+            p.setFrameId(in.readVarLong(true));
+            p.setChunkIndex(in.readVarInt(true));
+            p.setTotalChunks(in.readVarInt(true));
+        }
+
+        // các field sau data
+        static void readTail(Input in, VideoPacket p) {
+            // sender cũ không gửi format; VideoPacket luôn nằm cuối datagram nên dựa vào end()
+            p.setFormat(in.end() ? VideoPacket.FORMAT_JPEG : in.readVarInt(true));
+            if (!in.end()) {
+                p.setFecGroup(in.readVarInt(true));
+                p.setFrameLength(in.readVarInt(true));
+            }
+            if (!in.end())
+                p.setKeyframe(in.readBoolean());
+            p.setCodec(in.end() ? FrameCodecs.JPEG : in.readVarInt(true));
+        }
+    }
+
+    public static class VideoTileSerializer extends Serializer<VideoTile> {
+        @Override
+        public void write(Kryo kryo, Output out, VideoTile t) {
+            out.writeVarInt(t.getX(), true);
+            out.writeVarInt(t.getY(), true);
+            out.writeVarInt(t.getWidth(), true);
+            out.writeVarInt(t.getHeight(), true);
+            writeBytes(out, t.getData());
+        }
+
+        @Override
+        public VideoTile read(Kryo kryo, Input in, Class<? extends VideoTile> cls) {
+            return new VideoTile(in.readVarInt(true), in.readVarInt(true), in.readVarInt(true),
+                    in.readVarInt(true), readBytes(in));
+        }
+    }
+
+    public static class CopyRectSerializer extends Serializer<CopyRect> {
+        @Override
+        public void write(Kryo kryo, Output out, CopyRect r) {
+            out.writeVarInt(r.getX(), true);
+            out.writeVarInt(r.getY(), true);
+            out.writeVarInt(r.getWidth(), true);
+            out.writeVarInt(r.getHeight(), true);
+            out.writeVarInt(r.getDx(), false);
+            out.writeVarInt(r.getDy(), false);
+        }
+
+        @Override
+        public CopyRect read(Kryo kryo, Input in, Class<? extends CopyRect> cls) {
+            return new CopyRect(in.readVarInt(true), in.readVarInt(true), in.readVarInt(true),
+                    in.readVarInt(true), in.readVarInt(false), in.readVarInt(false));
+        }
+    }
+
+    public static class TileFrameSerializer extends Serializer<TileFrame> {
+        @Override
+        public void write(Kryo kryo, Output out, TileFrame f) {
+            out.writeVarInt(f.getWidth(), true);
+            out.writeVarInt(f.getHeight(), true);
+            List<VideoTile> tiles = f.getTiles();
+            int count = tiles == null ? 0 : tiles.size();
+            out.writeVarInt(count, true);
+            for (int i = 0; i < count; i++)
+                kryo.writeObject(out, tiles.get(i));
+            out.writeBoolean(f.isKeyframe());
+            List<CopyRect> copies = f.getCopies();
+            int copyCount = copies == null ? 0 : copies.size();
+            out.writeVarInt(copyCount, true);
+            for (int i = 0; i < copyCount; i++)
+                kryo.writeObject(out, copies.get(i));
+        }
+
+        @Override
+        public TileFrame read(Kryo kryo, Input in, Class<? extends TileFrame> cls) {
+            int width = in.readVarInt(true);
+            int height = in.readVarInt(true);
+            int count = in.readVarInt(true);
+            List<VideoTile> tiles = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+                tiles.add(kryo.readObject(in, VideoTile.class));
+            // TileFrame luôn là cả data của frame nên sender cũ nhận ra bằng end()
+            boolean keyframe = !in.end() && in.readBoolean();
+            int copyCount = in.end() ? 0 : in.readVarInt(true);
+            List<CopyRect> copies = new ArrayList<>(copyCount);
+            for (int i = 0; i < copyCount; i++)
+                copies.add(kryo.readObject(in, CopyRect.class));
+            return new TileFrame(width, height, tiles, keyframe, copies);
+        }
+    }
+
+    public static class ReceiverReportSerializer extends Serializer<ReceiverReportPacket> {
+        @Override
+        public void write(Kryo kryo, Output out, ReceiverReportPacket p) {
+            out.writeVarInt(p.getIntervalMs(), true);
+            out.writeVarInt(p.getFramesCompleted(), true);
+            out.writeVarInt(p.getFramesDropped(), true);
+            out.writeVarInt(p.getChunksExpected(), true);
+            out.writeVarInt(p.getChunksReceived(), true);
+            // có thể âm do lệch đồng hồ hai máy
+            out.writeVarInt(p.getAvgDelayMs(), false);
+            out.writeVarInt(p.getMinDelayMs(), false);
+        }
+
+        @Override
+        public ReceiverReportPacket read(Kryo kryo, Input in, Class<? extends ReceiverReportPacket> cls) {
+            return new ReceiverReportPacket(in.readVarInt(true), in.readVarInt(true), in.readVarInt(true),
+                    in.readVarInt(true), in.readVarInt(true), in.readVarInt(false), in.readVarInt(false));
+        }
+    }
+
+    public static class NackSerializer extends Serializer<NackPacket> {
+        @Override
+        public void write(Kryo kryo, Output out, NackPacket p) {
+            out.writeVarLong(p.getFrameId(), true);
+            int[] missing = p.getMissingChunks();
+            int count = missing == null ? 0 : missing.length;
+            out.writeVarInt(count, true);
+            for (int i = 0; i < count; i++)
+                out.writeVarInt(missing[i], true);
+        }
+
+        @Override
+        public NackPacket read(Kryo kryo, Input in, Class<? extends NackPacket> cls) {
+            long frameId = in.readVarLong(true);
+            int[] missing = new int[in.readVarInt(true)];
+            for (int i = 0; i < missing.length; i++)
+                missing[i] = in.readVarInt(true);
+            return new NackPacket(frameId, missing);
+        }
+    }
+
+    public static class KeyframeRequestSerializer extends Serializer<KeyframeRequestPacket> {
+        @Override
+        public void write(Kryo kryo, Output out, KeyframeRequestPacket p) {
+            out.writeVarLong(p.getLastFrameId() + 1, true);
+        }
+
+        @Override
+        public KeyframeRequestPacket read(Kryo kryo, Input in, Class<? extends KeyframeRequestPacket> cls) {
+            return new KeyframeRequestPacket(in.readVarLong(true) - 1);
+        }
+    }
+
+    public static class CursorSerializer extends Serializer<CursorPacket> {
+        @Override
+        public void write(Kryo kryo, Output out, CursorPacket p) {
+            out.writeVarLong(p.getSeq(), true);
+            out.writeFloat(p.getX());
+            out.writeFloat(p.getY());
+            out.writeInt(p.getShapeHash());
+            out.writeVarInt(p.getHotspotX(), true);
+            out.writeVarInt(p.getHotspotY(), true);
+            writeBytes(out, p.getShape());
+        }
+
+        @Override
+        public CursorPacket read(Kryo kryo, Input in, Class<? extends CursorPacket> cls) {
+            return new CursorPacket(in.readVarLong(true), in.readFloat(), in.readFloat(), in.readInt(),
+                    in.readVarInt(true), in.readVarInt(true), readBytes(in));
+        }
+    }
+
+    public static class AudioPacketSerializer extends Serializer<AudioPacket> {
+        @Override
+        public void write(Kryo kryo, Output out, AudioPacket p) {
+            out.writeVarInt(p.getLength(), true);
+            writeBytes(out, p.getData());
+        }
+
+        @Override
+        public AudioPacket read(Kryo kryo, Input in, Class<? extends AudioPacket> cls) {
+            int length = in.readVarInt(true);
+            return new AudioPacket(readBytes(in), length);
+        }
+    }
+
+    public static class StartStreamSerializer extends Serializer<StartStreamPacket> {
+        @Override
+        public void write(Kryo kryo, Output out, StartStreamPacket p) {
+            out.writeString(p.getControllerId());
+            out.writeString(p.getSessionId());
+        }
+
+        @Override
+        public StartStreamPacket read(Kryo kryo, Input in, Class<? extends StartStreamPacket> cls) {
+            return new StartStreamPacket(in.readString(), in.readString());
+        }
+    }
+
+    // ===== p2p =====
+
+    public static class PeerInfoSerializer extends Serializer<PeerInfoPacket> {
+        @Override
+        public void write(Kryo kryo, Output out, PeerInfoPacket p) {
+            out.writeString(p.getHost());
+            out.writeVarInt(p.getPort(), true);
+        }
+
+        @Override
+        public PeerInfoPacket read(Kryo kryo, Input in, Class<? extends PeerInfoPacket> cls) {
+            return new PeerInfoPacket(in.readString(), in.readVarInt(true));
+        }
+    }
+
+    public static class PeerRegisterSerializer extends Serializer<PeerRegisterPacket> {
+        @Override
+        public void write(Kryo kryo, Output out, PeerRegisterPacket p) {
+            out.writeVarInt(p.getControlPort(), true);
+        }
+
+        @Override
+        public PeerRegisterPacket read(Kryo kryo, Input in, Class<? extends PeerRegisterPacket> cls) {
+            return new PeerRegisterPacket(in.readVarInt(true));
+        }
+    }
+
+    public static class P2PHelloSerializer extends Serializer<P2PHelloPacket> {
+        @Override
+        public void write(Kryo kryo, Output out, P2PHelloPacket p) {
+            out.writeString(p.getFromId());
+            out.writeString(p.getSessionId());
+        }
+
+        @Override
+        public P2PHelloPacket read(Kryo kryo, Input in, Class<? extends P2PHelloPacket> cls) {
+            return new P2PHelloPacket(in.readString(), in.readString());
+        }
+    }
+}
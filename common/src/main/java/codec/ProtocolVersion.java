@@ -0,0 +1,37 @@
+package codec;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+/**
+ * Phiên bản wire format TCP.
+ * V1: [int length][Kryo(NetworkPacket)]
+ * V2: header cố định {@link Frame#HEADER_LENGTH} byte + payload Kryo (chỉ payload, type nằm trong header)
+ *
+ * Decoder luôn nhận được cả hai (phân biệt bằng byte đầu tiên), encoder chọn theo version đã thỏa thuận
+ * lúc LOGIN_REQUEST/LOGIN_RESPONSE và lưu trong attribute của channel.
+ */
+public final class ProtocolVersion {
+
+    public static final int V1 = 1;
+    public static final int V2 = 2;
+    public static final int LATEST = V2;
+
+    private static final AttributeKey<Integer> KEY = AttributeKey.valueOf("protocolVersion");
+
+    private ProtocolVersion() {
+    }
+
+    public static int get(Channel channel) {
+        Integer v = channel.attr(KEY).get();
+        return v == null ? V1 : v;
+    }
+
+    public static void set(Channel channel, int version) {
+        channel.attr(KEY).set(version);
+    }
+
+    public static int negotiate(int offered) {
+        return Math.max(V1, Math.min(offered, LATEST));
+    }
+}
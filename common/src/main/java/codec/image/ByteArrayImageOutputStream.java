@@ -0,0 +1,81 @@
+package codec.image;
+
+import javax.imageio.stream.ImageOutputStreamImpl;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * ImageOutputStream ghi vào một mảng byte tự nới rộng và dùng lại được giữa các khung hình
+ * (rewind() thay vì tạo ByteArrayOutputStream + ImageOutputStream mới mỗi lần).
+ */
+final class ByteArrayImageOutputStream extends ImageOutputStreamImpl {
+
+    private byte[] buf;
+    private int length;
+
+    ByteArrayImageOutputStream(int initialCapacity) {
+        buf = new byte[initialCapacity];
+    }
+
+    void rewind() {
+        streamPos = 0;
+        flushedPos = 0;
+        bitOffset = 0;
+        length = 0;
+    }
+
+    /** Mảng nội bộ; dữ liệu hợp lệ trong [0, size()). */
+    byte[] buffer() {
+        return buf;
+    }
+
+    int size() {
+        return length;
+    }
+
+    private void ensureCapacity(long required) {
+        if (required > buf.length)
+            buf = Arrays.copyOf(buf, (int) Math.max(required, buf.length * 2L));
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        flushBits();
+        ensureCapacity(streamPos + 1);
+        buf[(int) streamPos++] = (byte) b;
+        length = Math.max(length, (int) streamPos);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        flushBits();
+        ensureCapacity(streamPos + len);
+        System.arraycopy(b, off, buf, (int) streamPos, len);
+        streamPos += len;
+        length = Math.max(length, (int) streamPos);
+    }
+
+    @Override
+    public int read() {
+        bitOffset = 0;
+        if (streamPos >= length)
+            return -1;
+        return buf[(int) streamPos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        bitOffset = 0;
+        if (streamPos >= length)
+            return -1;
+        int n = (int) Math.min(len, length - streamPos);
+        System.arraycopy(buf, (int) streamPos, b, off, n);
+        streamPos += n;
+        return n;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+}
@@ -0,0 +1,64 @@
+package codec.image;
+
+import java.util.Locale;
+
+/**
+ * Danh sách codec ảnh của stream video. Id nằm trong VideoPacket.codec nên chỉ được thêm mới,
+ * không đổi số đã dùng; sender cũ không gửi id và luôn là JPEG.
+ */
+public final class FrameCodecs {
+
+    /** Mất dữ liệu, nhỏ nhất với ảnh/video; mặc định. */
+    public static final int JPEG = 0;
+    /** Không mất dữ liệu, nén tốt chữ và UI nhưng chậm. */
+    public static final int PNG = 1;
+    /** Run-length trên pixel: rất nhanh, hợp nội dung phẳng (UI, terminal). */
+    public static final int RLE = 2;
+    /** Pixel BGR thô nén khối kiểu LZ4: nhanh, không mất dữ liệu, hợp mạng LAN. */
+    public static final int LZ4 = 3;
+
+    // ImageWriteParam của PNG: quality cao = mức deflate thấp; mức thấp nhanh gấp mấy lần mà ảnh chỉ lớn hơn chút
+    private static final float PNG_SPEED = 0.75f;
+
+    private static final String[] NAMES = { "jpeg", "png", "rle", "lz4" };
+
+    private FrameCodecs() {
+    }
+
+    public static FrameEncoder newEncoder(int id) {
+        return switch (id) {
+            case JPEG -> new ImageIOFrameEncoder(JPEG, "jpg", true, 0.75f);
+            case PNG -> new ImageIOFrameEncoder(PNG, "png", false, PNG_SPEED);
+            case RLE -> new RleFrameEncoder();
+            case LZ4 -> new Lz4FrameEncoder();
+            default -> throw new IllegalArgumentException("Unknown frame codec id " + id);
+        };
+    }
+
+    public static FrameDecoder newDecoder(int id) {
+        return switch (id) {
+            case JPEG -> new ImageIOFrameDecoder(JPEG, "jpeg");
+            case PNG -> new ImageIOFrameDecoder(PNG, "png");
+            case RLE -> new RleFrameDecoder();
+            case LZ4 -> new Lz4FrameDecoder();
+            default -> throw new IllegalArgumentException("Unknown frame codec id " + id);
+        };
+    }
+
+    public static boolean isKnown(int id) {
+        return id >= 0 && id < NAMES.length;
+    }
+
+    /** "jpeg", "png", "rle", "lz4" (không phân biệt hoa thường). */
+    public static int idOf(String name) {
+        String key = name.trim().toLowerCase(Locale.ROOT);
+        for (int i = 0; i < NAMES.length; i++)
+            if (NAMES[i].equals(key))
+                return i;
+        throw new IllegalArgumentException("Unknown frame codec " + name);
+    }
+
+    public static String nameOf(int id) {
+        return id >= 0 && id < NAMES.length ? NAMES[id] : "codec#" + id;
+    }
+}
@@ -0,0 +1,19 @@
+package codec.image;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Giải nén dữ liệu của một {@link FrameEncoder} cùng id. Kết quả luôn là TYPE_3BYTE_BGR, kiểu canvas
+ * phía người xem. Không thread-safe.
+ */
+public interface FrameDecoder {
+
+    int id();
+
+    /**
+     * @param reuse ảnh BGR được phép ghi đè nếu đúng kích thước (thường là canvas hiện tại), có thể null
+     * @return reuse nếu dùng được, ngược lại một ảnh mới
+     */
+    BufferedImage decode(byte[] data, int offset, int length, BufferedImage reuse) throws IOException;
+}
@@ -0,0 +1,31 @@
+package codec.image;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Nén một ảnh (cả khung hoặc một tile) thành byte để gửi trong VideoPacket.
+ * Khác {@link codec.FrameEncoder} (đóng khung byte trên kênh TCP): đây là tầng nén ảnh, chọn theo phiên
+ * qua {@link FrameCodecs}. Mỗi instance giữ buffer riêng, không thread-safe.
+ */
+public interface FrameEncoder {
+
+    /** Id ghi trong VideoPacket.codec để người xem chọn đúng {@link FrameDecoder}. */
+    int id();
+
+    /**
+     * Nén vào buffer nội bộ; kết quả ở {@link #buffer()}[0, trả về), hợp lệ tới lần encode sau.
+     *
+     * @param quality 0..1, codec không mất dữ liệu bỏ qua
+     */
+    int encode(BufferedImage image, float quality) throws IOException;
+
+    byte[] buffer();
+
+    /** Nén rồi copy ra mảng riêng (dùng cho tile nhỏ cần giữ lại trong TileFrame). */
+    default byte[] encodeToArray(BufferedImage image, float quality) throws IOException {
+        int length = encode(image, quality);
+        return Arrays.copyOf(buffer(), length);
+    }
+}
@@ -0,0 +1,43 @@
+package codec.image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/** Giải mã JPEG/PNG qua ImageIO thẳng vào ảnh BGR đích: không tạo ảnh mới mỗi frame. */
+final class ImageIOFrameDecoder implements FrameDecoder {
+
+    private final int id;
+    private final ImageReader reader;
+    private final ImageReadParam param;
+
+    ImageIOFrameDecoder(int id, String format) {
+        this.id = id;
+        this.reader = ImageIO.getImageReadersByFormatName(format).next();
+        this.param = reader.getDefaultReadParam();
+    }
+
+    @Override
+    public int id() {
+        return id;
+    }
+
+    @Override
+    public BufferedImage decode(byte[] data, int offset, int length, BufferedImage reuse) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(data, offset, length))) {
+            reader.setInput(in, true, true);
+            // kích thước lấy từ header ảnh nhận qua mạng: chặn như RLE/LZ4 trước khi cấp phát
+            BufferedImage target = RawPixels.target(reuse, RawPixels.checkSide(reader.getWidth(0)),
+                    RawPixels.checkSide(reader.getHeight(0)));
+            param.setDestination(target);
+            reader.read(0, param);
+            return target;
+        } finally {
+            reader.setInput(null);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package codec.image;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Bộ nén JPEG/PNG qua ImageIO sống suốt một phiên stream: một ImageWriter, một ImageWriteParam và một
+ * buffer đầu ra dùng lại cho mọi khung.
+ */
+final class ImageIOFrameEncoder implements FrameEncoder {
+
+    private final int id;
+    private final boolean lossy;
+    private final ImageWriter writer;
+    private final ImageWriteParam param;
+    private final ByteArrayImageOutputStream out = new ByteArrayImageOutputStream(256 * 1024);
+    // writer copy cả raster INT_RGB sang byte mỗi lần (~12 byte/pixel rác);
+    // vẽ vào ảnh BGR dùng lại trước thì vừa ít rác hơn vừa nhanh hơn
+    private BufferedImage staging;
+
+    ImageIOFrameEncoder(int id, String format, boolean lossy, float fixedQuality) {
+        this.id = id;
+        this.lossy = lossy;
+        this.writer = ImageIO.getImageWritersByFormatName(format).next();
+        this.param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(fixedQuality);
+    }
+
+    @Override
+    public int id() {
+        return id;
+    }
+
+    @Override
+    public int encode(BufferedImage image, float quality) throws IOException {
+        out.rewind();
+        if (lossy)
+            param.setCompressionQuality(quality);
+        writer.setOutput(out);
+        writer.write(null, new IIOImage(toBgr(image), null, null), param);
+        return out.size();
+    }
+
+    private BufferedImage toBgr(BufferedImage image) {
+        // chỉ áp dụng cho ảnh cả khung; tile nhỏ (subimage) nén thẳng
+        if (image.getType() == BufferedImage.TYPE_3BYTE_BGR || image.getRaster().getParent() != null)
+            return image;
+        if (staging == null || staging.getWidth() != image.getWidth() || staging.getHeight() != image.getHeight())
+            staging = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = staging.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return staging;
+    }
+
+    @Override
+    public byte[] buffer() {
+        return out.buffer();
+    }
+}
@@ -0,0 +1,81 @@
+package codec.image;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/** Giải nén khối LZ4 của {@link Lz4FrameEncoder} thẳng vào mảng byte của ảnh BGR, kiểm tra mọi biên. */
+final class Lz4FrameDecoder implements FrameDecoder {
+
+    private final int[] pos = new int[1];
+
+    @Override
+    public int id() {
+        return FrameCodecs.LZ4;
+    }
+
+    @Override
+    public BufferedImage decode(byte[] data, int offset, int length, BufferedImage reuse) throws IOException {
+        int end = offset + length;
+        pos[0] = offset;
+        int w = RawPixels.readSide(data, pos, end);
+        int h = RawPixels.readSide(data, pos, end);
+        BufferedImage target = RawPixels.target(reuse, w, h);
+        byte[] dst = RawPixels.bgrOf(target);
+        if (decompress(data, pos[0], end, dst, w * h * 3) != w * h * 3)
+            throw new IOException("Corrupt LZ4 frame");
+        return target;
+    }
+
+    private static int decompress(byte[] src, int ip, int end, byte[] dst, int dstLength) throws IOException {
+        int op = 0;
+        while (ip < end) {
+            int token = src[ip++] & 0xff;
+            int literals = token >>> 4;
+            if (literals == 15) {
+                int b;
+                do {
+                    if (ip >= end)
+                        throw new IOException("Corrupt LZ4 frame");
+                    b = src[ip++] & 0xff;
+                    literals += b;
+                } while (b == 255);
+            }
+            if (literals > end - ip || literals > dstLength - op)
+                throw new IOException("Corrupt LZ4 frame");
+            System.arraycopy(src, ip, dst, op, literals);
+            ip += literals;
+            op += literals;
+            if (ip == end)
+                break; // khối kết thúc bằng literal
+
+            if (ip + 2 > end)
+                throw new IOException("Corrupt LZ4 frame");
+            int distance = (src[ip] & 0xff) | (src[ip + 1] & 0xff) << 8;
+            ip += 2;
+            int matchLength = token & 15;
+            if (matchLength == 15) {
+                int b;
+                do {
+                    if (ip >= end)
+                        throw new IOException("Corrupt LZ4 frame");
+                    b = src[ip++] & 0xff;
+                    matchLength += b;
+                } while (b == 255);
+            }
+            matchLength += Lz4FrameEncoder.MIN_MATCH;
+            if (distance == 0 || distance > op || matchLength > dstLength - op)
+                throw new IOException("Corrupt LZ4 frame");
+            // match chồng lên chính nó (lặp mẫu ngắn, ví dụ vùng một màu): nguồn là chuỗi tuần hoàn chu kỳ
+            // distance nên mỗi lần được copy gấp đôi đoạn đã có
+            int from = op - distance;
+            int copied = 0;
+            while (copied < matchLength) {
+                int n = Math.min(distance + copied, matchLength - copied);
+                System.arraycopy(dst, from, dst, op + copied, n);
+                copied += n;
+            }
+            op += matchLength;
+        }
+        return op;
+    }
+}
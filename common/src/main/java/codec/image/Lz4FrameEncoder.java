@@ -0,0 +1,131 @@
+package codec.image;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Pixel BGR thô (3 byte/pixel, đúng layout canvas người xem) nén bằng định dạng khối LZ4:
+ * [varint width][varint height][khối LZ4]. Bản cài đặt gọn của thuật toán nén nhanh LZ4 (bảng băm
+ * 4 byte, không tìm match tối ưu), không kéo thêm thư viện vào common.
+ */
+final class Lz4FrameEncoder implements FrameEncoder {
+
+    static final int MIN_MATCH = 4;
+    // theo định dạng LZ4: 5 byte cuối luôn là literal, match cuối bắt đầu trước cuối khối ít nhất 12 byte
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_OFFSET = 65535;
+    private static final int HASH_LOG = 14;
+    // càng lâu không gặp match càng nhảy xa (vùng ảnh nhiễu không đáng tìm kỹ)
+    private static final int SKIP_STRENGTH = 6;
+
+    private final int[] table = new int[1 << HASH_LOG];
+    private byte[] raw = new byte[0];
+    private byte[] out = new byte[256 * 1024];
+    private int[] scratch;
+
+    @Override
+    public int id() {
+        return FrameCodecs.LZ4;
+    }
+
+    @Override
+    public int encode(BufferedImage image, float quality) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        int n = w * h;
+        int[] px = RawPixels.rgbOf(image, scratch);
+        if (!RawPixels.isDirect(image))
+            scratch = px;
+        if (raw.length < n * 3)
+            raw = new byte[n * 3];
+        for (int i = 0, o = 0; i < n; i++) {
+            int p = px[i];
+            raw[o++] = (byte) p;
+            raw[o++] = (byte) (p >>> 8);
+            raw[o++] = (byte) (p >>> 16);
+        }
+
+        int bound = 10 + n * 3 + n * 3 / 255 + 16;
+        if (out.length < bound)
+            out = new byte[bound];
+        int pos = RawPixels.writeVarInt(out, 0, w);
+        pos = RawPixels.writeVarInt(out, pos, h);
+        return compress(raw, n * 3, out, pos);
+    }
+
+    private int compress(byte[] src, int srcLength, byte[] dst, int op) {
+        int anchor = 0;
+        if (srcLength > MF_LIMIT) {
+            Arrays.fill(table, -1);
+            int limit = srcLength - MF_LIMIT;
+            int matchLimit = srcLength - LAST_LITERALS;
+            int ip = 0;
+            int misses = 0;
+            while (ip < limit) {
+                int seq = readInt(src, ip);
+                int h = (seq * -1640531535) >>> (32 - HASH_LOG);
+                int ref = table[h];
+                table[h] = ip;
+                if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != seq) {
+                    ip += 1 + (misses++ >>> SKIP_STRENGTH);
+                    continue;
+                }
+                misses = 0;
+                while (ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+                int len = MIN_MATCH;
+                while (ip + len < matchLimit && src[ip + len] == src[ref + len])
+                    len++;
+                op = writeSequence(dst, op, src, anchor, ip - anchor, ip - ref, len);
+                ip += len;
+                anchor = ip;
+            }
+        }
+        return writeLiterals(dst, op, src, anchor, srcLength - anchor);
+    }
+
+    private static int writeSequence(byte[] dst, int op, byte[] src, int from, int literals, int offset,
+            int matchLength) {
+        int code = matchLength - MIN_MATCH;
+        int token = op++;
+        dst[token] = (byte) ((Math.min(literals, 15) << 4) | Math.min(code, 15));
+        op = writeLength(dst, op, literals);
+        System.arraycopy(src, from, dst, op, literals);
+        op += literals;
+        dst[op++] = (byte) offset;
+        dst[op++] = (byte) (offset >>> 8);
+        return writeLength(dst, op, code);
+    }
+
+    private static int writeLiterals(byte[] dst, int op, byte[] src, int from, int literals) {
+        dst[op++] = (byte) (Math.min(literals, 15) << 4);
+        op = writeLength(dst, op, literals);
+        System.arraycopy(src, from, dst, op, literals);
+        return op + literals;
+    }
+
+    // phần dư của độ dài >= 15: chuỗi 255 rồi byte cuối < 255
+    private static int writeLength(byte[] dst, int op, int length) {
+        if (length < 15)
+            return op;
+        length -= 15;
+        while (length >= 255) {
+            dst[op++] = (byte) 255;
+            length -= 255;
+        }
+        dst[op++] = (byte) length;
+        return op;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xff) | (b[i + 1] & 0xff) << 8 | (b[i + 2] & 0xff) << 16 | b[i + 3] << 24;
+    }
+
+    @Override
+    public byte[] buffer() {
+        return out;
+    }
+}
@@ -0,0 +1,82 @@
+package codec.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+
+/** Tiện ích chung cho các codec: header kích thước, đọc hàng pixel, ảnh BGR đích. */
+final class RawPixels {
+
+    // chặn header hỏng đòi cấp phát mảng khổng lồ
+    private static final int MAX_SIDE = 16384;
+
+    private RawPixels() {
+    }
+
+    /** Ảnh BGR w x h: reuse nếu dùng được, ngược lại tạo mới. */
+    static BufferedImage target(BufferedImage reuse, int width, int height) {
+        if (reuse != null && reuse.getType() == BufferedImage.TYPE_3BYTE_BGR && reuse.getWidth() == width
+                && reuse.getHeight() == height && reuse.getRaster().getParent() == null)
+            return reuse;
+        return new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+    }
+
+    /** Mảng B,G,R,B,G,R... của ảnh do {@link #target} trả về. */
+    static byte[] bgrOf(BufferedImage image) {
+        return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Pixel RGB của cả ảnh theo hàng, không copy nếu ảnh là TYPE_INT_RGB nguyên khối (ảnh chụp của Robot);
+     * subimage và kiểu khác đi qua getRGB vào scratch.
+     */
+    static int[] rgbOf(BufferedImage image, int[] scratch) {
+        if (isDirect(image))
+            return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        int n = image.getWidth() * image.getHeight();
+        if (scratch == null || scratch.length < n)
+            scratch = new int[n];
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), scratch, 0, image.getWidth());
+    }
+
+    /** true nếu {@link #rgbOf} trả về chính mảng của ảnh (caller không được giữ làm scratch). */
+    static boolean isDirect(BufferedImage image) {
+        return image.getType() == BufferedImage.TYPE_INT_RGB
+                && image.getRaster().getDataBuffer() instanceof DataBufferInt && image.getRaster().getParent() == null;
+    }
+
+    static int writeVarInt(byte[] out, int pos, int value) {
+        while ((value & ~0x7f) != 0) {
+            out[pos++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    /** Đọc varint tại data[pos[0]], tăng pos[0]. */
+    static int readVarInt(byte[] data, int[] pos, int end) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (pos[0] >= end)
+                throw new IOException("Truncated frame header");
+            int b = data[pos[0]++];
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static int readSide(byte[] data, int[] pos, int end) throws IOException {
+        return checkSide(readVarInt(data, pos, end));
+    }
+
+    /** Cạnh ảnh đọc từ dữ liệu nhận được (header RLE/LZ4, hoặc header JPEG/PNG qua ImageIO). */
+    static int checkSide(int side) throws IOException {
+        if (side <= 0 || side > MAX_SIDE)
+            throw new IOException("Bad frame size " + side);
+        return side;
+    }
+}
@@ -0,0 +1,51 @@
+package codec.image;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+
+/** Giải mã {@link RleFrameEncoder} thẳng vào mảng byte của ảnh BGR. */
+final class RleFrameDecoder implements FrameDecoder {
+
+    private final int[] pos = new int[1];
+
+    @Override
+    public int id() {
+        return FrameCodecs.RLE;
+    }
+
+    @Override
+    public BufferedImage decode(byte[] data, int offset, int length, BufferedImage reuse) throws IOException {
+        int end = offset + length;
+        pos[0] = offset;
+        int w = RawPixels.readSide(data, pos, end);
+        int h = RawPixels.readSide(data, pos, end);
+        BufferedImage target = RawPixels.target(reuse, w, h);
+        byte[] bgr = RawPixels.bgrOf(target);
+
+        int op = 0;
+        int limit = w * h * 3;
+        while (op < limit) {
+            int run = RawPixels.readVarInt(data, pos, end);
+            int ip = pos[0];
+            if (run <= 0 || run > (limit - op) / 3 || ip + 3 > end)
+                throw new IOException("Corrupt RLE frame");
+            byte b = data[ip];
+            byte g = data[ip + 1];
+            byte r = data[ip + 2];
+            pos[0] = ip + 3;
+            if (b == g && g == r) {
+                // xám/trắng/đen: phần lớn nền UI
+                Arrays.fill(bgr, op, op + run * 3, b);
+                op += run * 3;
+            } else {
+                for (int k = 0; k < run; k++) {
+                    bgr[op++] = b;
+                    bgr[op++] = g;
+                    bgr[op++] = r;
+                }
+            }
+        }
+        return target;
+    }
+}
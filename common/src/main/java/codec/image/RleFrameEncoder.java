@@ -0,0 +1,55 @@
+package codec.image;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Run-length trên luồng pixel (theo hàng, run được nối qua cuối hàng):
+ * [varint width][varint height] rồi lặp [varint số pixel][B][G][R].
+ * Nền, thanh tiêu đề, vùng chữ một màu nén còn vài byte; ảnh chụp thì gần như không nén được,
+ * nên codec này dành cho phiên làm việc với UI phẳng.
+ */
+final class RleFrameEncoder implements FrameEncoder {
+
+    private byte[] out = new byte[256 * 1024];
+    private int[] scratch;
+
+    @Override
+    public int id() {
+        return FrameCodecs.RLE;
+    }
+
+    @Override
+    public int encode(BufferedImage image, float quality) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        int[] px = RawPixels.rgbOf(image, scratch);
+        if (!RawPixels.isDirect(image))
+            scratch = px;
+        int n = w * h;
+
+        int pos = RawPixels.writeVarInt(out, 0, w);
+        pos = RawPixels.writeVarInt(out, pos, h);
+        int i = 0;
+        while (i < n) {
+            int color = px[i] & 0xffffff;
+            int run = i + 1;
+            while (run < n && (px[run] & 0xffffff) == color)
+                run++;
+            // tối đa 5 byte varint + 3 byte màu
+            if (pos + 8 > out.length)
+                out = Arrays.copyOf(out, out.length * 2);
+            pos = RawPixels.writeVarInt(out, pos, run - i);
+            out[pos++] = (byte) color;
+            out[pos++] = (byte) (color >>> 8);
+            out[pos++] = (byte) (color >>> 16);
+            i = run;
+        }
+        return pos;
+    }
+
+    @Override
+    public byte[] buffer() {
+        return out;
+    }
+}
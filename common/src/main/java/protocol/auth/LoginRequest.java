@@ -10,4 +10,5 @@ import lombok.NoArgsConstructor;
 public class LoginRequest {
     private String userId;
     private String password;
+    private int protocolVersion; // version cao nhất client hỗ trợ (0/1 = client cũ)
 }
\ No newline at end of file
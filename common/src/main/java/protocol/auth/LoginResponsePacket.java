@@ -0,0 +1,12 @@
+package protocol.auth;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoginResponsePacket {
+    private String status; // "OK" | "DUPLICATE_ID"
+    private int protocolVersion; // version server chọn cho kết nối này
+    private int udpToken; // định danh ngắn ghi trong DatagramHeader của mọi gói UDP
+}
@@ -18,5 +18,9 @@ public enum PacketType {
     AUDIO_DATA,
     PEER_INFO,
     PEER_REGISTER,
-    P2P_HELLO
+    P2P_HELLO,
+    FLOW_CONTROL,
+    RECEIVER_REPORT,
+    VIDEO_NACK,
+    KEYFRAME_REQUEST
 }
\ No newline at end of file
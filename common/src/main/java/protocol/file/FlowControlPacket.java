@@ -0,0 +1,10 @@
+package protocol.file;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FlowControlPacket {
+    private boolean paused; // true: tạm dừng gửi FILE_CHUNK, false: gửi tiếp
+}
@@ -0,0 +1,21 @@
+package protocol.media;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Lệnh chép vùng (x, y, width, height) của khung trước sang (x + dx, y + dy): cuộn/di chuyển nội dung
+ * mà không phải nén lại pixel. Người xem áp trước các tile của cùng {@link TileFrame}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CopyRect {
+    private int x;
+    private int y;
+    private int width;
+    private int height;
+    private int dx;
+    private int dy;
+}
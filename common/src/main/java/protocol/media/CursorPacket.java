@@ -0,0 +1,27 @@
+package protocol.media;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Vị trí và hình con trỏ của bên chia sẻ, gửi qua UDP tách khỏi video với tần số cao.
+ * Con trỏ không nằm trong ảnh chụp: người xem tự vẽ lớp phủ, nên di chuột không làm bẩn frame.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPacket {
+    /** tăng dần, người xem bỏ gói tới trễ */
+    private long seq;
+    /** tọa độ tỉ lệ [0, 1] trên vùng chụp */
+    private float x;
+    private float y;
+
+    /** hash của ảnh con trỏ; người xem cache ảnh theo hash */
+    private int shapeHash;
+    private int hotspotX;
+    private int hotspotY;
+    /** ảnh PNG; null khi chỉ nhắc lại hash (không phải lần gửi hình) */
+    private byte[] shape;
+}
@@ -0,0 +1,17 @@
+package protocol.media;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Người xem mất một delta frame không dựng lại được (FEC và NACK đều không cứu): yêu cầu bên chia sẻ
+ * gửi keyframe (cả màn hình) ngay thay vì chờ lần làm mới định kỳ.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KeyframeRequestPacket {
+    /** frame cuối người xem dựng được trước chỗ hổng */
+    private long lastFrameId;
+}
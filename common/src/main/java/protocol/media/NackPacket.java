@@ -0,0 +1,14 @@
+package protocol.media;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Người xem báo thiếu các chunk dữ liệu của một frame video, yêu cầu gửi lại. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NackPacket {
+    private long frameId;
+    private int[] missingChunks;
+}
@@ -0,0 +1,23 @@
+package protocol.media;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Báo cáo định kỳ của người xem về luồng video nhận được trong một khoảng intervalMs.
+ * Độ trễ tính bằng (giờ nhận - VideoPacket.timestamp) nên có lệch đồng hồ hai máy;
+ * bên gửi chỉ dùng xu hướng (so với minDelayMs nhỏ nhất từng thấy), không dùng giá trị tuyệt đối.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceiverReportPacket {
+    private int intervalMs;
+    private int framesCompleted;
+    private int framesDropped;
+    private int chunksExpected;
+    private int chunksReceived;
+    private int avgDelayMs;
+    private int minDelayMs;
+}
@@ -0,0 +1,24 @@
+package protocol.media;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Khung hình dạng tile: chỉ gồm các vùng thay đổi so với khung trước (sau khi áp các lệnh chép vùng).
+ * Được serialize rồi chia chunk qua {@link VideoPacket} với format = FORMAT_TILES.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TileFrame {
+    private int width;
+    private int height;
+    private List<VideoTile> tiles;
+    /** một tile phủ cả màn hình, không phụ thuộc frame trước */
+    private boolean keyframe;
+    /** chép vùng (cuộn) áp lên khung trước, trước khi dán tiles */
+    private List<CopyRect> copies;
+}
@@ -8,6 +8,16 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 public class VideoPacket {
+    /** data của cả frame là một ảnh, nén bằng {@link #codec} (tên giữ từ khi chỉ có JPEG) */
+    public static final int FORMAT_JPEG = 0;
+    /** data của cả frame là một TileFrame đã serialize */
+    public static final int FORMAT_TILES = 1;
+
+    /** Số byte dữ liệu tối đa của một chunk (và một chunk parity). */
+    public static final int MAX_CHUNK_SIZE = 45000;
+    /** Số chunk dữ liệu tối đa của một frame (~34 MB, đủ cho một khung 4K 32 bit không nén). */
+    public static final int MAX_CHUNKS = 768;
+
     private String senderId;
     private String targetId;
     private byte[] data;
@@ -16,4 +26,23 @@ public class VideoPacket {
     private long frameId;
     private int chunkIndex;
     private int totalChunks;
+
+    private int format;
+
+    /**
+     * FEC XOR: số chunk dữ liệu mỗi nhóm (0 = không có parity). Chunk có chunkIndex >= totalChunks là parity
+     * của nhóm (chunkIndex - totalChunks), phủ các chunk dữ liệu [g * fecGroup, (g + 1) * fecGroup).
+     */
+    private int fecGroup;
+    /** Tổng số byte dữ liệu của cả frame, để dựng lại độ dài chunk cuối bị mất. */
+    private int frameLength;
+
+    /**
+     * Frame tự đủ (cả màn hình). Delta frame (false) chỉ đúng khi đã áp mọi frame trước nó tính từ
+     * keyframe gần nhất; người xem thấy hổng thì gửi KEYFRAME_REQUEST.
+     */
+    private boolean keyframe;
+
+    /** Codec ảnh của khung và các tile (codec.image.FrameCodecs); sender cũ không gửi = JPEG. */
+    private int codec;
 }
\ No newline at end of file
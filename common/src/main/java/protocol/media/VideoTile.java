@@ -0,0 +1,17 @@
+package protocol.media;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Một vùng ảnh đã nén (JPEG) cùng toạ độ của nó trên khung hình. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VideoTile {
+    private int x;
+    private int y;
+    private int width;
+    private int height;
+    private byte[] data;
+}
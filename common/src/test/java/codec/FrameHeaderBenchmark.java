@@ -0,0 +1,102 @@
+package codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import protocol.core.NetworkPacket;
+import protocol.core.PacketType;
+import protocol.file.FileChunkPacket;
+import protocol.input.ControlPayload;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Chi phí lấy PacketType của một frame TCP đã nhận đủ:
+ * <ul>
+ * <li>v1: NettyKryoDecoder phải Kryo decode cả NetworkPacket;</li>
+ * <li>v2: NettyKryoDecoder chỉ tách header, payload giữ nguyên trong {@link Frame};</li>
+ * <li>peek: {@link Frame#peekType} đọc thẳng trên buffer (chưa tách frame).</li>
+ * </ul>
+ * Kiểm tra cả ba cho cùng PacketType. Số vòng chỉnh bằng -Dbench.iterations.
+ */
+public class FrameHeaderBenchmark {
+
+    private static final int ITERATIONS = Integer.getInteger("bench.iterations", 200_000);
+
+    public static void main(String[] args) {
+        byte[] chunk = new byte[8192];
+        new Random(42).nextBytes(chunk);
+
+        List<NetworkPacket> packets = new ArrayList<>();
+        packets.add(new NetworkPacket(PacketType.CONTROL_SIGNAL, new ControlPayload(1, 0.5f, 0.5f, 1, 0)));
+        packets.add(new NetworkPacket(PacketType.FILE_CHUNK, new FileChunkPacket(chunk, chunk.length, false)));
+
+        for (NetworkPacket packet : packets) {
+            ByteBuf v1 = encode(packet, ProtocolVersion.V1);
+            ByteBuf v2 = encode(packet, ProtocolVersion.V2);
+            try {
+                double full = decodeNanos(v1, packet.getType());
+                double header = decodeNanos(v2, packet.getType());
+                double peek = peekNanos(v2, packet.getType());
+                System.out.printf("Frame %s (v1 %d B, v2 %d B): v1 full decode %.0f ns, v2 header %.0f ns,"
+                        + " peekType %.1f ns%n", packet.getType(), v1.readableBytes(), v2.readableBytes(),
+                        full, header, peek);
+            } finally {
+                v1.release();
+                v2.release();
+            }
+        }
+    }
+
+    /** ns mỗi frame qua NettyKryoDecoder tới lúc biết PacketType. */
+    private static double decodeNanos(ByteBuf wire, PacketType expected) {
+        EmbeddedChannel ch = new EmbeddedChannel(new NettyKryoDecoder());
+        try {
+            for (int i = 0; i < ITERATIONS / 4; i++)
+                decodeOnce(ch, wire, expected);
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++)
+                decodeOnce(ch, wire, expected);
+            return (double) (System.nanoTime() - start) / ITERATIONS;
+        } finally {
+            ch.finishAndReleaseAll();
+        }
+    }
+
+    private static void decodeOnce(EmbeddedChannel ch, ByteBuf wire, PacketType expected) {
+        ch.writeInbound(wire.retainedDuplicate());
+        Object msg = ch.readInbound();
+        PacketType type = msg instanceof Frame ? ((Frame) msg).getType()
+                : msg instanceof NetworkPacket ? ((NetworkPacket) msg).getType() : null;
+        ReferenceCountUtil.release(msg);
+        if (type != expected)
+            throw new IllegalStateException("decoded " + type + ", expected " + expected);
+    }
+
+    private static double peekNanos(ByteBuf wire, PacketType expected) {
+        int index = wire.readerIndex();
+        int mismatches = 0;
+        for (int i = 0; i < ITERATIONS; i++)
+            if (Frame.peekType(wire, index) != expected)
+                mismatches++;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            if (Frame.peekType(wire, index) != expected)
+                mismatches++;
+        double nanos = (double) (System.nanoTime() - start) / ITERATIONS;
+        if (mismatches > 0)
+            throw new IllegalStateException("peekType mismatched " + mismatches + " times");
+        return nanos;
+    }
+
+    private static ByteBuf encode(NetworkPacket packet, int version) {
+        EmbeddedChannel encoder = new EmbeddedChannel(new NettyKryoEncoder());
+        ProtocolVersion.set(encoder, version);
+        encoder.writeOutbound(packet);
+        ByteBuf wire = encoder.readOutbound();
+        encoder.finishAndReleaseAll();
+        return wire;
+    }
+}
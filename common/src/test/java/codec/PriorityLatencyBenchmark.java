@@ -0,0 +1,190 @@
+package codec;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.traffic.ChannelTrafficShapingHandler;
+import protocol.core.NetworkPacket;
+import protocol.core.PacketType;
+import protocol.file.FileChunkPacket;
+import protocol.file.FileReqPacket;
+import protocol.input.ControlPayload;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Độ trễ input (CONTROL_SIGNAL) khi một luồng file chạy trên cùng kết nối TCP, qua socket loopback thật
+ * mà phía nhận chỉ đọc {@link #LINK_BYTES_PER_SECOND} byte/s (giả lập đường truyền chậm):
+ * <ul>
+ * <li>idle: chỉ có input;</li>
+ * <li>unbound: file + input, người gửi file chỉ chờ channel writable (không giới hạn chunk chưa ghi xong);</li>
+ * <li>fifo: file + input, không có {@link PriorityOutboundHandler};</li>
+ * <li>priority: file + input qua {@link PriorityOutboundHandler}.</li>
+ * </ul>
+ * Người gửi file làm như FileSender (chờ channel writable và tối đa {@link #MAX_IN_FLIGHT_CHUNKS} chunk 8 KB
+ * chưa ghi xong), xen FILE_REQ giữa các chunk.
+ * Kiểm tra: mọi input đều tới, luồng file tới đủ và đúng thứ tự (FILE_REQ không vượt chunk trước nó).
+ * Thời gian mỗi kịch bản chỉnh bằng -Dbench.millis.
+ */
+public class PriorityLatencyBenchmark {
+
+    private static final long LINK_BYTES_PER_SECOND = 4L * 1024 * 1024;
+    private static final int DURATION_MS = Integer.getInteger("bench.millis", 2_000);
+    private static final int INPUT_INTERVAL_MS = 10;
+    private static final int CHUNK = 8192;
+    private static final int REQ_EVERY = 64;
+    // như FileSender.MAX_IN_FLIGHT_CHUNKS
+    private static final int MAX_IN_FLIGHT_CHUNKS = 16;
+
+    public static void main(String[] args) throws Exception {
+        // làm nóng JIT/Kryo, không in kết quả
+        run("warmup", true, true, MAX_IN_FLIGHT_CHUNKS);
+        System.out.println(run("idle", false, false, MAX_IN_FLIGHT_CHUNKS));
+        // người gửi cũ chỉ chờ isWritable(): các lần ghi từ thread ngoài event loop không được tính vào đó
+        System.out.println(run("unbound", true, false, Integer.MAX_VALUE));
+        System.out.println(run("fifo", true, false, MAX_IN_FLIGHT_CHUNKS));
+        System.out.println(run("priority", true, true, MAX_IN_FLIGHT_CHUNKS));
+    }
+
+    private static String run(String name, boolean transfer, boolean priority, int maxInFlight) throws Exception {
+        EventLoopGroup group = new NioEventLoopGroup(2);
+        int inputs = DURATION_MS / INPUT_INTERVAL_MS;
+        AtomicLongArray sentAt = new AtomicLongArray(inputs);
+        long[] latencies = new long[inputs];
+        AtomicInteger received = new AtomicInteger();
+        AtomicInteger nextFileSeq = new AtomicInteger();
+        AtomicLong fileBytes = new AtomicLong();
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        try {
+            Channel server = new ServerBootstrap().group(group).channel(NioServerSocketChannel.class)
+                    .childOption(ChannelOption.SO_RCVBUF, 64 * 1024)
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            ch.pipeline().addLast(new ChannelTrafficShapingHandler(0, LINK_BYTES_PER_SECOND, 10));
+                            ch.pipeline().addLast(new NettyKryoDecoder());
+                            ch.pipeline().addLast(new FramePayloadDecoder());
+                            ch.pipeline().addLast(new SimpleChannelInboundHandler<NetworkPacket>() {
+                                @Override
+                                protected void channelRead0(ChannelHandlerContext ctx, NetworkPacket packet) {
+                                    long now = System.nanoTime();
+                                    switch (packet.getType()) {
+                                        case CONTROL_SIGNAL:
+                                            int seq = ((ControlPayload) packet.getPayload()).getKeyCode();
+                                            latencies[received.getAndIncrement()] = now - sentAt.get(seq);
+                                            break;
+                                        case FILE_REQ:
+                                            expectFileSeq((int) ((FileReqPacket) packet.getPayload()).getFileSize());
+                                            break;
+                                        case FILE_CHUNK:
+                                            FileChunkPacket chunk = (FileChunkPacket) packet.getPayload();
+                                            byte[] d = chunk.getData();
+                                            expectFileSeq(((d[0] & 0xff) << 24) | ((d[1] & 0xff) << 16)
+                                                    | ((d[2] & 0xff) << 8) | (d[3] & 0xff));
+                                            fileBytes.addAndGet(chunk.getLength());
+                                            break;
+                                        default:
+                                            break;
+                                    }
+                                }
+
+                                private void expectFileSeq(int seq) {
+                                    int expected = nextFileSeq.getAndIncrement();
+                                    if (seq != expected)
+                                        failure.compareAndSet(null, "file stream out of order: got " + seq
+                                                + ", expected " + expected);
+                                }
+                            });
+                        }
+                    }).bind(InetAddress.getLoopbackAddress(), 0).sync().channel();
+
+            Channel client = new Bootstrap().group(group).channel(NioSocketChannel.class)
+                    .option(ChannelOption.SO_SNDBUF, 64 * 1024)
+                    // cùng watermark với server relay
+                    .option(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(32 * 1024, 128 * 1024))
+                    .handler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            ProtocolVersion.set(ch, ProtocolVersion.V2);
+                            ch.pipeline().addLast(new NettyKryoEncoder());
+                            if (priority)
+                                ch.pipeline().addLast(new PriorityOutboundHandler());
+                        }
+                    }).connect((InetSocketAddress) server.localAddress()).sync().channel();
+
+            Thread pump = new Thread(() -> {
+                int seq = 0;
+                Semaphore inFlight = new Semaphore(maxInFlight);
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        if (seq % REQ_EVERY == 0) {
+                            client.writeAndFlush(new NetworkPacket(PacketType.FILE_REQ, new FileReqPacket("f", seq++)));
+                            continue;
+                        }
+                        while (!client.isWritable() || !inFlight.tryAcquire())
+                            Thread.sleep(5);
+                        byte[] data = new byte[CHUNK];
+                        data[0] = (byte) (seq >>> 24);
+                        data[1] = (byte) (seq >>> 16);
+                        data[2] = (byte) (seq >>> 8);
+                        data[3] = (byte) seq++;
+                        client.writeAndFlush(new NetworkPacket(PacketType.FILE_CHUNK,
+                                new FileChunkPacket(data, CHUNK, false))).addListener(f -> inFlight.release());
+                    }
+                } catch (InterruptedException e) {
+                    // hết giờ đo
+                }
+            }, "file-pump");
+            pump.setDaemon(true);
+            if (transfer)
+                pump.start();
+
+            long start = System.nanoTime();
+            for (int i = 0; i < inputs; i++) {
+                sentAt.set(i, System.nanoTime());
+                client.writeAndFlush(new NetworkPacket(PacketType.CONTROL_SIGNAL, new ControlPayload(1, 0.5f, 0.5f, 1, i)));
+                Thread.sleep(INPUT_INTERVAL_MS);
+            }
+            pump.interrupt();
+            pump.join(1_000);
+            long elapsed = System.nanoTime() - start;
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (received.get() < inputs && System.nanoTime() < deadline)
+                Thread.sleep(5);
+            client.close().sync();
+            server.close().sync();
+
+            if (failure.get() != null)
+                throw new IllegalStateException(name + ": " + failure.get());
+            if (received.get() < inputs)
+                throw new IllegalStateException(name + ": only " + received.get() + "/" + inputs + " inputs arrived");
+
+            Arrays.sort(latencies);
+            return String.format("Input latency %-8s: p50 %.1f ms, p99 %.1f ms, max %.1f ms, file %.1f MB/s",
+                    name, latencies[inputs / 2] / 1e6, latencies[inputs * 99 / 100] / 1e6,
+                    latencies[inputs - 1] / 1e6, fileBytes.get() / (1024.0 * 1024) / (elapsed / 1e9));
+        } finally {
+            group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+        }
+    }
+}
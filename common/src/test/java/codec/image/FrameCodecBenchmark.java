@@ -0,0 +1,182 @@
+package codec.image;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * So sánh các codec ảnh của {@link FrameCodecs} trên khung 720p (màn hình làm việc và ảnh chụp có nhiễu):
+ * thời gian encode, decode và kích thước. Trước khi đo kiểm tra round-trip của từng codec:
+ * <ul>
+ * <li>PNG/RLE/LZ4 giải ra đúng từng pixel (cả khung, tile là subimage, ảnh lẻ kích thước, ảnh reuse sai kích thước);</li>
+ * <li>JPEG sai số trung bình mỗi kênh dưới {@link #JPEG_MAX_MEAN_ERROR};</li>
+ * <li>header ghi cạnh ảnh quá lớn bị từ chối (IOException) trước khi cấp phát.</li>
+ * </ul>
+ * Số vòng đo chỉnh bằng -Dbench.iterations.
+ */
+public class FrameCodecBenchmark {
+
+    private static final int ITERATIONS = Integer.getInteger("bench.iterations", 20);
+    private static final int[] CODECS = { FrameCodecs.JPEG, FrameCodecs.PNG, FrameCodecs.RLE, FrameCodecs.LZ4 };
+    private static final double JPEG_MAX_MEAN_ERROR = 4.0;
+    private static final int OVERSIZED_SIDE = 16385;
+
+    public static void main(String[] args) throws Exception {
+        BufferedImage desktop = desktop(1280, 720);
+        BufferedImage photo = photo(1280, 720);
+
+        for (int codec : CODECS) {
+            roundTrip(codec, "desktop", desktop);
+            roundTrip(codec, "photo", photo);
+            roundTrip(codec, "tile", desktop.getSubimage(960, 64, 200, 128));
+            roundTrip(codec, "odd size", photo(63, 17));
+            roundTrip(codec, "1x1", photo(1, 1));
+            rejectsOversized(codec, desktop.getSubimage(0, 0, 16, 16));
+        }
+        System.out.println("Frame codec round trip OK: jpeg, png, rle, lz4");
+
+        for (BufferedImage image : new BufferedImage[] { desktop, photo }) {
+            String name = image == desktop ? "desktop" : "photo";
+            for (int codec : CODECS)
+                System.out.println(measure(codec, name, image));
+        }
+    }
+
+    private static void roundTrip(int codec, String name, BufferedImage image) throws IOException {
+        FrameEncoder encoder = FrameCodecs.newEncoder(codec);
+        FrameDecoder decoder = FrameCodecs.newDecoder(codec);
+        byte[] data = encoder.encodeToArray(image, 0.9f);
+        // reuse đúng kích thước phải được ghi đè, sai kích thước thì phải tạo ảnh mới
+        BufferedImage wrongSize = new BufferedImage(image.getWidth() + 1, image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+        BufferedImage decoded = decoder.decode(data, 0, data.length, wrongSize);
+        if (decoded == wrongSize || decoded.getWidth() != image.getWidth() || decoded.getHeight() != image.getHeight())
+            throw new IllegalStateException(FrameCodecs.nameOf(codec) + " " + name + ": decoded into a wrong-size image");
+        // data nằm giữa mảng: decoder phải tôn trọng offset/length
+        byte[] padded = new byte[data.length + 10];
+        System.arraycopy(data, 0, padded, 7, data.length);
+        if (decoder.decode(padded, 7, data.length, decoded) != decoded)
+            throw new IllegalStateException(FrameCodecs.nameOf(codec) + " " + name + ": did not reuse the target");
+
+        double error = meanError(image, decoded);
+        double limit = codec == FrameCodecs.JPEG ? JPEG_MAX_MEAN_ERROR : 0;
+        if (error > limit)
+            throw new IllegalStateException(String.format("%s %s: decoded image differs, mean error %.3f (limit %.1f)",
+                    FrameCodecs.nameOf(codec), name, error, limit));
+    }
+
+    private static void rejectsOversized(int codec, BufferedImage image) throws IOException {
+        FrameEncoder encoder = FrameCodecs.newEncoder(codec);
+        byte[] data = encoder.encodeToArray(image, 0.9f);
+        setWidth(codec, data, OVERSIZED_SIDE);
+        try {
+            FrameCodecs.newDecoder(codec).decode(data, 0, data.length, null);
+        } catch (IOException e) {
+            // phải bị chặn ở bước đọc kích thước, không phải lỗi giải mã sau khi đã cấp phát
+            if (String.valueOf(e.getMessage()).startsWith("Bad frame size"))
+                return;
+            throw new IllegalStateException(FrameCodecs.nameOf(codec) + ": oversized frame failed late", e);
+        }
+        throw new IllegalStateException(FrameCodecs.nameOf(codec) + ": accepted a " + OVERSIZED_SIDE + " px wide frame");
+    }
+
+    // ghi đè cạnh ngang trong header của từng định dạng
+    private static void setWidth(int codec, byte[] data, int width) {
+        switch (codec) {
+            case FrameCodecs.JPEG:
+                // SOFn: FF Cx, độ dài (2), precision (1), height (2), width (2)
+                for (int i = 2; i + 8 < data.length; i++) {
+                    int marker = data[i + 1] & 0xff;
+                    if ((data[i] & 0xff) == 0xff && marker >= 0xc0 && marker <= 0xc3) {
+                        data[i + 7] = (byte) (width >>> 8);
+                        data[i + 8] = (byte) width;
+                        return;
+                    }
+                }
+                throw new IllegalStateException("no SOF marker in JPEG");
+            case FrameCodecs.PNG:
+                // chữ ký 8 byte, IHDR: độ dài (4), "IHDR" (4), width (4)
+                data[16] = (byte) (width >>> 24);
+                data[17] = (byte) (width >>> 16);
+                data[18] = (byte) (width >>> 8);
+                data[19] = (byte) width;
+                return;
+            default:
+                // [varint width][varint height]: varint 3 byte đè lên cả height và byte dữ liệu đầu,
+                // decoder phải dừng ngay ở width
+                RawPixels.writeVarInt(data, 0, width);
+        }
+    }
+
+    private static String measure(int codec, String name, BufferedImage image) throws IOException {
+        FrameEncoder encoder = FrameCodecs.newEncoder(codec);
+        FrameDecoder decoder = FrameCodecs.newDecoder(codec);
+        int length = 0;
+        for (int i = 0; i < Math.max(1, ITERATIONS / 4); i++)
+            length = encoder.encode(image, 0.75f);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            length = encoder.encode(image, 0.75f);
+        long encodeNs = (System.nanoTime() - start) / ITERATIONS;
+
+        byte[] data = Arrays.copyOf(encoder.buffer(), length);
+        BufferedImage target = null;
+        for (int i = 0; i < Math.max(1, ITERATIONS / 4); i++)
+            target = decoder.decode(data, 0, length, target);
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            target = decoder.decode(data, 0, length, target);
+        long decodeNs = (System.nanoTime() - start) / ITERATIONS;
+
+        return String.format("Frame codec %-4s %-7s %dx%d: encode %6.2f ms, decode %6.2f ms, %,8d B (%.1f%% of raw)",
+                FrameCodecs.nameOf(codec), name, image.getWidth(), image.getHeight(), encodeNs / 1e6, decodeNs / 1e6,
+                length, 100.0 * length / (image.getWidth() * image.getHeight() * 3));
+    }
+
+    private static double meanError(BufferedImage expected, BufferedImage actual) {
+        long sum = 0;
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int a = expected.getRGB(x, y);
+                int b = actual.getRGB(x, y);
+                for (int shift = 0; shift <= 16; shift += 8)
+                    sum += Math.abs((a >> shift & 0xff) - (b >> shift & 0xff));
+            }
+        }
+        return (double) sum / (expected.getWidth() * expected.getHeight() * 3);
+    }
+
+    // nền phẳng, cửa sổ, chữ: kiểu nội dung RLE/LZ4 nhắm tới
+    private static BufferedImage desktop(int w, int h) {
+        BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(0x2d, 0x5f, 0x8a));
+        g.fillRect(0, 0, w, h);
+        g.setColor(new Color(0xf0, 0xf0, 0xf0));
+        g.fillRect(w / 2, 40, w / 2 - 40, h - 80);
+        g.setColor(Color.BLACK);
+        for (int i = 0; i * 18 + 60 < h - 40; i++)
+            g.drawString("The quick brown fox jumps over the lazy dog " + i, w / 2 + 10, 60 + i * 18);
+        g.setColor(new Color(0xc0, 0x40, 0x30));
+        g.fillOval(60, 60, 300, 200);
+        g.dispose();
+        return image;
+    }
+
+    // gradient có nhiễu: gần như không nén được bằng RLE
+    private static BufferedImage photo(int w, int h) {
+        Random random = new Random(w * 31L + h);
+        BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int r = Math.min(255, x * 255 / Math.max(1, w) + random.nextInt(8));
+                int g = Math.min(255, y * 255 / Math.max(1, h) + random.nextInt(8));
+                int b = Math.min(255, 128 + random.nextInt(8));
+                image.setRGB(x, y, r << 16 | g << 8 | b);
+            }
+        }
+        return image;
+    }
+}
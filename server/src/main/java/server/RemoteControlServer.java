@@ -1,69 +1,101 @@
 package server;
 
+import codec.FrameEncoder;
+import codec.FramePayloadDecoder;
 import codec.NettyKryoDecoder;
 import codec.NettyKryoEncoder;
+import codec.PriorityOutboundHandler;
+import server.handler.RelayHandler;
 import server.handler.ServerHandler;
 import server.handler.UdpServerHandler;
 
 import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioDatagramChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.channel.FixedRecvByteBufAllocator;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class RemoteControlServer {
 
     private final int port;
+    private final boolean nativeTransport;
 
     public RemoteControlServer(int port) {
+        // bật bằng -Dultraview.epoll=true (chỉ có tác dụng trên Linux có native epoll)
+        this(port, Boolean.getBoolean("ultraview.epoll"));
+    }
+
+    public RemoteControlServer(int port, boolean nativeTransport) {
         this.port = port;
+        this.nativeTransport = nativeTransport;
     }
 
     public void run() throws Exception {
+        boolean epoll = nativeTransport && Epoll.isAvailable();
+        if (nativeTransport && !epoll)
+            System.out.println("Native epoll unavailable, fallback to NIO: " + Epoll.unavailabilityCause());
+
         // BossGroup: Chấp nhận kết nối mới
-        EventLoopGroup bossGroup = new NioEventLoopGroup(1);
+        EventLoopGroup bossGroup = epoll ? new EpollEventLoopGroup(1) : new NioEventLoopGroup(1);
         // WorkerGroup: Xử lý dữ liệu (IO)
-        EventLoopGroup workerGroup = new NioEventLoopGroup();
+        EventLoopGroup workerGroup = epoll ? new EpollEventLoopGroup() : new NioEventLoopGroup();
+        Class<? extends ServerChannel> serverChannelClass = epoll ? EpollServerSocketChannel.class
+                : NioServerSocketChannel.class;
 
         try {
             // --- 1. TCP Server ---
             ServerBootstrap b = new ServerBootstrap();
             b.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
+                    .channel(serverChannelClass)
                     .childHandler(new ChannelInitializer<SocketChannel>() {
                         @Override
                         public void initChannel(SocketChannel ch) throws Exception {
                             // Pipeline xử lý gói tin TCP
                             ch.pipeline().addLast(new NettyKryoDecoder());
+                            ch.pipeline().addLast(new RelayHandler());
+                            ch.pipeline().addLast(new FramePayloadDecoder());
                             ch.pipeline().addLast(new NettyKryoEncoder());
+                            ch.pipeline().addLast(new FrameEncoder());
+                            ch.pipeline().addLast(new PriorityOutboundHandler());
                             ch.pipeline().addLast(new ServerHandler());
                         }
                     })
                     .option(ChannelOption.SO_BACKLOG, 128)
-                    .childOption(ChannelOption.SO_KEEPALIVE, true);
+                    .childOption(ChannelOption.SO_KEEPALIVE, true)
+                    // vượt high -> channel không writable -> relay áp RelayPolicy thay vì buffer vô hạn
+                    .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                            Integer.getInteger("ultraview.relay.lowWatermark", 32 * 1024),
+                            Integer.getInteger("ultraview.relay.highWatermark", 128 * 1024)));
 
             ChannelFuture fTCP = b.bind(port).sync();
-            System.out.println("TCP Server started on port " + port);
+            System.out.println("TCP Server started on port " + port + (epoll ? " (epoll)" : " (nio)"));
 
             // --- 2. UDP Server ---
-            Bootstrap udpBootstrap = new Bootstrap();
-            udpBootstrap.group(workerGroup)
-                    .channel(NioDatagramChannel.class)
-                    .option(ChannelOption.SO_RCVBUF, 1024 * 1024)
-                    .option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(65535))
-                    .handler(new UdpServerHandler());
-
-            ChannelFuture fUDP = udpBootstrap.bind(port + 1).sync();
-            System.out.println("UDP Server started on port " + (port + 1));
+            int udpSockets = epoll ? Runtime.getRuntime().availableProcessors() : 1;
+            List<Channel> udpChannels = bindUdp(workerGroup, epoll, port + 1, udpSockets);
+            System.out.println("UDP Server started on port " + (port + 1) + " (" + udpSockets + " socket)");
 
             fTCP.channel().closeFuture().sync();
-            fUDP.channel().closeFuture().sync();
+            for (Channel ch : udpChannels)
+                ch.closeFuture().sync();
 
         } finally {
             workerGroup.shutdownGracefully();
@@ -71,8 +103,37 @@ public class RemoteControlServer {
         }
     }
 
+    /**
+     * Bind relay UDP. epoll: {@code sockets} socket cùng port (SO_REUSEPORT), mỗi socket một event loop,
+     * kernel tự chia datagram theo 4-tuple -> relay video chạy song song trên nhiều core.
+     * NIO không có SO_REUSEPORT nên luôn chỉ một socket.
+     */
+    static List<Channel> bindUdp(EventLoopGroup group, boolean epoll, int port, int sockets)
+            throws InterruptedException {
+        Bootstrap udpBootstrap = new Bootstrap();
+        udpBootstrap.group(group)
+                .channel(epoll ? EpollDatagramChannel.class : NioDatagramChannel.class)
+                .option(ChannelOption.SO_RCVBUF, 1024 * 1024)
+                .option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(65535))
+                .handler(new ChannelInitializer<DatagramChannel>() {
+                    @Override
+                    protected void initChannel(DatagramChannel ch) {
+                        ch.pipeline().addLast(new UdpServerHandler());
+                    }
+                });
+        if (epoll)
+            udpBootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        else
+            sockets = 1;
+
+        List<Channel> channels = new ArrayList<>();
+        for (int i = 0; i < sockets; i++)
+            channels.add(udpBootstrap.bind(port).sync().channel());
+        return channels;
+    }
+
     public static void main(String[] args) throws Exception {
         int port = 8080;
         new RemoteControlServer(port).run();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,111 @@
+package server.core;
+
+import codec.ProtocolVersion;
+import io.netty.channel.Channel;
+import io.netty.util.ReferenceCountUtil;
+import protocol.core.NetworkPacket;
+import protocol.core.PacketType;
+import protocol.file.FlowControlPacket;
+
+/**
+ * Chuyển gói từ một client sang partner trong cùng Session, có tính tới backpressure:
+ * partner chậm không làm server buffer vô hạn, mà áp {@link RelayPolicy} theo loại gói.
+ */
+public final class Relay {
+
+    // PacketType thêm sau bản v1 (ordinal lớn hơn) client v1 không decode được -> không chuyển tới họ
+    private static final PacketType LAST_V1_TYPE = PacketType.P2P_HELLO;
+
+    private Relay() {
+    }
+
+    /**
+     * @param msg      Frame (relay nguyên vẹn) hoặc NetworkPacket (client v1)
+     * @param coalesce gói chỉ có giá trị bản mới nhất (mouse move)
+     */
+    public static void forward(Channel from, Session session, PacketType type, boolean coalesce, Object msg,
+            int bytes) {
+        Channel to = session.partnerChannel(from);
+        session.recordTcp(bytes);
+
+        if (type.ordinal() > LAST_V1_TYPE.ordinal() && ProtocolVersion.get(to) < ProtocolVersion.V2) {
+            ReferenceCountUtil.release(msg);
+            session.recordDrop();
+            return;
+        }
+
+        RelayPolicy policy = to.isWritable() ? RelayPolicy.DELIVER
+                : coalesce ? RelayPolicy.COALESCE : RelayPolicy.forType(type);
+
+        switch (policy) {
+            case DROP:
+                ReferenceCountUtil.release(msg);
+                session.recordDrop();
+                return;
+
+            case COALESCE:
+                Object old = session.replacePending(to, msg);
+                if (old != null) {
+                    ReferenceCountUtil.release(old);
+                    session.recordCoalesced();
+                }
+                return;
+
+            case PAUSE_SENDER:
+                deliver(session, to, msg);
+                if (session.markPaused(from)) {
+                    session.recordPause();
+                    pauseSender(from, true);
+                }
+                return;
+
+            default:
+                deliver(session, to, msg);
+        }
+    }
+
+    private static void deliver(Session session, Channel to, Object msg) {
+        // mouse move đang chờ phải tới trước (click dùng vị trí con trỏ hiện tại)
+        Object pending = session.takePending(to);
+        if (pending != null)
+            to.write(pending);
+        to.writeAndFlush(msg);
+    }
+
+    /** Gọi khi channel {@code ch} writable trở lại: xả gói đã gộp và cho người gửi chạy tiếp. */
+    public static void onWritable(Channel ch) {
+        Session session = ServerContext.getSession(ch);
+        if (session == null)
+            return;
+
+        Object pending = session.takePending(ch);
+        if (pending != null)
+            ch.writeAndFlush(pending);
+
+        Channel sender = session.partnerChannel(ch);
+        if (session.clearPaused(sender))
+            pauseSender(sender, false);
+    }
+
+    /**
+     * Session vừa đóng ({@code ch} là một trong hai bên): không còn onWritable nào cho session này,
+     * nên người gửi đang tạm dừng phải được cho chạy lại ngay.
+     */
+    static void onSessionClosed(Session session, Channel ch) {
+        if (session.clearPaused(ch))
+            pauseSender(ch, false);
+        Channel partner = session.partnerChannel(ch);
+        if (session.clearPaused(partner))
+            pauseSender(partner, false);
+    }
+
+    private static void pauseSender(Channel ch, boolean paused) {
+        if (ProtocolVersion.get(ch) >= ProtocolVersion.V2) {
+            ch.writeAndFlush(new NetworkPacket(PacketType.FLOW_CONTROL, new FlowControlPacket(paused)));
+        } else {
+            // client v1 không biết PacketType.FLOW_CONTROL: ngừng đọc socket của họ, TCP tự chặn người gửi
+            // (cả input/chat của họ cũng chờ theo, nhưng server không buffer vô hạn)
+            ch.config().setAutoRead(!paused);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package server.core;
+
+import protocol.core.PacketType;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Cách relay xử lý một gói khi channel của partner đang không writable (vượt high watermark).
+ * Khi partner còn writable thì mọi gói đều được chuyển ngay.
+ */
+public enum RelayPolicy {
+    /** Luôn chuyển (click, phím, clipboard, điều khiển file). */
+    DELIVER,
+    /** Bỏ gói (audio cũ không còn giá trị khi tới trễ). */
+    DROP,
+    /** Chỉ giữ bản mới nhất, gửi khi partner writable lại (mouse move). */
+    COALESCE,
+    /**
+     * Vẫn chuyển nhưng báo người gửi tạm dừng bằng FLOW_CONTROL (file chunk); client v1 không hiểu
+     * FLOW_CONTROL thì server ngừng đọc socket của họ tới khi partner writable lại.
+     */
+    PAUSE_SENDER;
+
+    // chỉ ghi trong static init, sau đó mọi event loop đọc không cần khóa
+    private static final Map<PacketType, RelayPolicy> policies;
+
+    static {
+        Map<PacketType, RelayPolicy> map = new EnumMap<>(PacketType.class);
+        map.put(PacketType.AUDIO_DATA, DROP);
+        map.put(PacketType.FILE_CHUNK, PAUSE_SENDER);
+        policies = Collections.unmodifiableMap(map);
+    }
+
+    public static RelayPolicy forType(PacketType type) {
+        return policies.getOrDefault(type, DELIVER);
+    }
+}
@@ -3,119 +3,286 @@ package server.core;
 import io.netty.channel.Channel;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.AttributeKey;
 import io.netty.util.concurrent.GlobalEventExecutor;
 import server.model.ClientModel;
 import server.ui.ServerApp;
 
 import java.net.InetSocketAddress;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.Objects;
 
 public class ServerContext {
 
-    private static final Map<String, Channel> clients = new ConcurrentHashMap<>();
-    private static final Map<String, String> passwords = new ConcurrentHashMap<>();
-    private static final Map<String, String> partners = new ConcurrentHashMap<>();
-    private static final Map<String, Integer> controlPorts = new ConcurrentHashMap<>();
-    private static final Map<String, String> sessions = new ConcurrentHashMap<>();
+    // trạng thái theo từng kết nối nằm trên chính channel -> tra cứu O(1), không quét map
+    public static final AttributeKey<String> USER_ID = AttributeKey.valueOf("userId");
+    public static final AttributeKey<Session> SESSION = AttributeKey.valueOf("session");
+    public static final AttributeKey<InetSocketAddress> UDP_ADDRESS = AttributeKey.valueOf("udpAddress");
+    public static final AttributeKey<Integer> UDP_TOKEN = AttributeKey.valueOf("udpToken");
+    public static final AttributeKey<String> PASSWORD = AttributeKey.valueOf("password");
+    public static final AttributeKey<Integer> CONTROL_PORT = AttributeKey.valueOf("controlPort");
 
-    private static final Map<String, InetSocketAddress> udpClients = new ConcurrentHashMap<>();
+    /**
+     * Presence chia theo shard (hash userId). Pair/unpair chỉ khóa shard của hai user liên quan
+     * (luôn theo thứ tự index để tránh deadlock) thay vì một monitor toàn cục,
+     * nên một đợt reconnect hàng loạt không dồn mọi worker thread vào cùng một lock.
+     */
+    private static final int SHARD_COUNT = 64; // lũy thừa của 2
+    private static final Shard[] shards = new Shard[SHARD_COUNT];
+
+    static {
+        for (int i = 0; i < SHARD_COUNT; i++)
+            shards[i] = new Shard(i);
+    }
+
+    private static final class Shard {
+        final int index;
+        final Map<String, Channel> clients = new ConcurrentHashMap<>();
+
+        Shard(int index) {
+            this.index = index;
+        }
+    }
+
+    private static Shard shardOf(String userId) {
+        int h = userId.hashCode();
+        h ^= (h >>> 16);
+        return shards[h & (SHARD_COUNT - 1)];
+    }
+
+    private static Channel channelOf(String userId) {
+        return userId == null ? null : shardOf(userId).clients.get(userId);
+    }
+
+    // reverse index: udpToken (prefix datagram) -> channel TCP của người gửi
+    private static final Map<Integer, Channel> udpTokenOwners = new ConcurrentHashMap<>();
+    private static final SecureRandom tokenRandom = new SecureRandom();
 
     public static final ChannelGroup allChannels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
 
-    public static void addClient(String userId, String pass, Channel channel, String ip) {
-        clients.put(userId, channel);
-        passwords.put(userId, pass);
+    /** Đăng ký user online; false nếu ID đã online (kiểm tra + thêm là một thao tác atomic). */
+    public static boolean addClient(String userId, String pass, Channel channel, String ip) {
+        channel.attr(PASSWORD).set(pass);
+        if (shardOf(userId).clients.putIfAbsent(userId, channel) != null)
+            return false;
+        // USER_ID chỉ gắn khi thắng putIfAbsent, để channelInactive của kết nối trùng không xóa user thật
+        channel.attr(USER_ID).set(userId);
+        assignUdpToken(channel);
 
         ServerApp.updateClientList(new ClientModel(userId, ip, "Online"), true);
+        return true;
     }
 
-    public static void removeClient(String userId) {
+    /**
+     * Xóa user và đóng session của họ. Việc xóa khỏi shard giữ khóa shard nên một pair() chạy song song
+     * hoặc đã gắn session trước đó (và bị gỡ ngay dưới đây), hoặc không còn thấy channel để gắn.
+     *
+     * @return partner của session vừa đóng, hoặc null
+     */
+    public static String removeClient(String userId) {
         if (userId == null)
-            return;
-        clients.remove(userId);
-        passwords.remove(userId);
-        udpClients.remove(userId);
-        controlPorts.remove(userId);
-        unpair(userId);
+            return null;
+        Shard shard = shardOf(userId);
+        Channel channel;
+        synchronized (shard) {
+            channel = shard.clients.remove(userId);
+        }
+        String partnerId = null;
+        if (channel != null) {
+            partnerId = unpair(userId, channel);
+            Integer token = channel.attr(UDP_TOKEN).getAndSet(null);
+            if (token != null)
+                udpTokenOwners.remove(token);
+            channel.attr(UDP_ADDRESS).set(null);
+            channel.attr(CONTROL_PORT).set(null);
+        }
 
         ServerApp.updateClientList(new ClientModel(userId, "", ""), false);
+        return partnerId;
     }
 
     public static Channel getClientChannel(String userId) {
-        return clients.get(userId);
+        return channelOf(userId);
     }
 
     public static boolean checkPassword(String userId, String inputPass) {
-        String realPass = passwords.get(userId);
+        Channel channel = channelOf(userId);
+        String realPass = channel == null ? null : channel.attr(PASSWORD).get();
         return realPass != null && realPass.equals(inputPass);
     }
 
     public static boolean isOnline(String userId) {
-        return clients.containsKey(userId);
+        return channelOf(userId) != null;
     }
 
-    public static void registerUdp(String userId, InetSocketAddress address) {
-        udpClients.put(userId, address);
+    public static void registerUdp(Channel channel, InetSocketAddress address) {
+        channel.attr(UDP_ADDRESS).set(address);
+        Session session = channel.attr(SESSION).get();
+        if (session != null)
+            session.setUdp(channel, address);
     }
 
     public static InetSocketAddress getUdpAddress(String userId) {
-        return udpClients.get(userId);
+        Channel channel = channelOf(userId);
+        return channel == null ? null : channel.attr(UDP_ADDRESS).get();
+    }
+
+    private static void assignUdpToken(Channel channel) {
+        int token;
+        do {
+            token = tokenRandom.nextInt();
+        } while (token == 0 || udpTokenOwners.putIfAbsent(token, channel) != null);
+        channel.attr(UDP_TOKEN).set(token);
+    }
+
+    public static int getUdpToken(Channel channel) {
+        Integer token = channel.attr(UDP_TOKEN).get();
+        return token == null ? 0 : token;
+    }
+
+    public static Channel getChannelByUdpToken(int token) {
+        return token == 0 ? null : udpTokenOwners.get(token);
     }
 
     public static String getClientIdByChannel(Channel channel) {
-        for (Map.Entry<String, Channel> entry : clients.entrySet()) {
-            if (entry.getValue() == channel)
-                return entry.getKey();
-        }
-        return null;
+        return channel.attr(USER_ID).get();
+    }
+
+    public static Session getSession(Channel channel) {
+        return channel.attr(SESSION).get();
     }
 
-    public static synchronized boolean pair(String a, String b, String sessionId) {
+    public static boolean pair(String a, String b, String sessionId) {
         if (a == null || b == null || a.equals(b))
             return false;
-        if (partners.containsKey(a) || partners.containsKey(b))
-            return false;
 
-        partners.put(a, b);
-        partners.put(b, a);
+        Shard first = shardOf(a);
+        Shard second = shardOf(b);
+        if (first.index > second.index) {
+            Shard t = first;
+            first = second;
+            second = t;
+        }
 
-        sessions.put(a, sessionId);
-        sessions.put(b, sessionId);
-        return true;
+        synchronized (first) {
+            synchronized (second) {
+                Channel chA = channelOf(a);
+                Channel chB = channelOf(b);
+                // channel đang đóng (chưa kịp removeClient) không được nhận session mới
+                if (chA == null || chB == null || !chA.isActive() || !chB.isActive())
+                    return false;
+                if (chA.attr(SESSION).get() != null || chB.attr(SESSION).get() != null)
+                    return false;
+
+                Session session = new Session(sessionId, a, chA, b, chB);
+                chA.attr(SESSION).set(session);
+                chB.attr(SESSION).set(session);
+                return true;
+            }
+        }
     }
 
-    public static synchronized String unpair(String userId) {
-        if (userId == null)
+    public static String unpair(String userId) {
+        return userId == null ? null : unpair(userId, channelOf(userId));
+    }
+
+    private static String unpair(String userId, Channel ch) {
+        if (ch == null)
             return null;
-        String other = partners.remove(userId);
-        if (other != null)
-            partners.remove(other);
 
-        sessions.remove(userId);
-        if (other != null)
-            sessions.remove(other);
-        return other;
+        while (true) {
+            Session session = ch.attr(SESSION).get();
+            if (session == null)
+                return null;
+
+            String partnerId = session.partnerId(ch);
+            Shard first = shardOf(userId);
+            Shard second = shardOf(partnerId);
+            if (first.index > second.index) {
+                Shard t = first;
+                first = second;
+                second = t;
+            }
+
+            synchronized (first) {
+                synchronized (second) {
+                    // session có thể đã đổi trong lúc chờ lock -> đọc lại
+                    if (ch.attr(SESSION).get() != session)
+                        continue;
+                    ch.attr(SESSION).set(null);
+                    session.partnerChannel(ch).attr(SESSION).compareAndSet(session, null);
+                }
+            }
+            // session đã gỡ khỏi cả hai channel, chỉ thread này tới được đây: ghi channel/log ngoài khóa shard
+            session.releasePending();
+            Relay.onSessionClosed(session, ch);
+            System.out.println("Session closed: " + session);
+            return partnerId;
+        }
+    }
+
+    /**
+     * Kiểm tra trạng thái presence (dùng bởi bài kiểm tra tải, gọi khi không còn thao tác song song):
+     * user nằm đúng shard, channel mang đúng USER_ID, session gắn đối xứng trên cả hai channel.
+     *
+     * @return danh sách vi phạm, rỗng nếu nhất quán
+     */
+    static List<String> checkInvariants() {
+        List<String> violations = new ArrayList<>();
+        for (Shard shard : shards) {
+            for (Map.Entry<String, Channel> e : shard.clients.entrySet()) {
+                String userId = e.getKey();
+                Channel ch = e.getValue();
+                if (shardOf(userId) != shard)
+                    violations.add(userId + " in shard " + shard.index);
+                if (!userId.equals(ch.attr(USER_ID).get()))
+                    violations.add(userId + " channel has USER_ID " + ch.attr(USER_ID).get());
+
+                Session session = ch.attr(SESSION).get();
+                if (session == null)
+                    continue;
+                String partnerId = session.partnerId(ch);
+                Channel partner = channelOf(partnerId);
+                if (partner != session.partnerChannel(ch))
+                    violations.add(userId + " paired with " + partnerId + " who is not online on that channel");
+                else if (partner.attr(SESSION).get() != session)
+                    violations.add(userId + " -> " + partnerId + " session is one-sided");
+            }
+        }
+        return violations;
     }
 
     public static String getPartner(String userId) {
-        return partners.get(userId);
+        Channel ch = channelOf(userId);
+        if (ch == null)
+            return null;
+        Session session = ch.attr(SESSION).get();
+        return session == null ? null : session.partnerId(ch);
     }
 
     public static String getSessionId(String userId) {
-        return sessions.get(userId);
+        Channel ch = channelOf(userId);
+        if (ch == null)
+            return null;
+        Session session = ch.attr(SESSION).get();
+        return session == null ? null : session.getSessionId();
     }
 
     public static void setControlPort(String userId, int port) {
-        controlPorts.put(userId, port);
+        Channel channel = channelOf(userId);
+        if (channel != null)
+            channel.attr(CONTROL_PORT).set(port);
     }
 
     public static Integer getControlPort(String userId) {
-        return controlPorts.get(userId);
+        Channel channel = channelOf(userId);
+        return channel == null ? null : channel.attr(CONTROL_PORT).get();
     }
 
     public static boolean isPaired(String userId) {
-        return userId != null && partners.containsKey(userId);
+        return getPartner(userId) != null;
     }
-}
\ No newline at end of file
+}
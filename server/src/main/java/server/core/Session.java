@@ -0,0 +1,166 @@
+package server.core;
+
+import io.netty.channel.Channel;
+import io.netty.util.ReferenceCountUtil;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Một phiên điều khiển 1-1 giữa hai client (A = controller, B = target).
+ * Được gắn vào attribute của cả hai channel TCP để đường relay chỉ cần một lần tra cứu.
+ */
+public class Session {
+
+    private final String sessionId;
+    private final String userA;
+    private final String userB;
+    private final Channel channelA;
+    private final Channel channelB;
+
+    private volatile InetSocketAddress udpA;
+    private volatile InetSocketAddress udpB;
+
+    private final LongAdder tcpFrames = new LongAdder();
+    private final LongAdder tcpBytes = new LongAdder();
+    private final LongAdder udpPackets = new LongAdder();
+    private final LongAdder udpBytes = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder pauses = new LongAdder();
+
+    // gói gộp (mouse move mới nhất) đang chờ gửi tới A / B
+    private final AtomicReference<Object> pendingToA = new AtomicReference<>();
+    private final AtomicReference<Object> pendingToB = new AtomicReference<>();
+    // người gửi A / B đang bị tạm dừng gửi file
+    private final AtomicBoolean pausedA = new AtomicBoolean();
+    private final AtomicBoolean pausedB = new AtomicBoolean();
+    // đã releasePending: slot pending không còn ai xả
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    public Session(String sessionId, String userA, Channel channelA, String userB, Channel channelB) {
+        this.sessionId = sessionId;
+        this.userA = userA;
+        this.userB = userB;
+        this.channelA = channelA;
+        this.channelB = channelB;
+        this.udpA = channelA.attr(ServerContext.UDP_ADDRESS).get();
+        this.udpB = channelB.attr(ServerContext.UDP_ADDRESS).get();
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public Channel partnerChannel(Channel self) {
+        return self == channelA ? channelB : channelA;
+    }
+
+    public String partnerId(Channel self) {
+        return self == channelA ? userB : userA;
+    }
+
+    public String partnerId(String userId) {
+        return userA.equals(userId) ? userB : userA;
+    }
+
+    public InetSocketAddress partnerUdp(Channel self) {
+        return self == channelA ? udpB : udpA;
+    }
+
+    void setUdp(Channel self, InetSocketAddress address) {
+        if (self == channelA)
+            udpA = address;
+        else if (self == channelB)
+            udpB = address;
+    }
+
+    Object replacePending(Channel to, Object msg) {
+        AtomicReference<Object> slot = to == channelA ? pendingToA : pendingToB;
+        Object old = slot.getAndSet(msg);
+        // forward chạy song song với unpair (khác thread): releasePending có thể đã xả slot trước khi msg vào
+        if (closed.get())
+            ReferenceCountUtil.release(slot.getAndSet(null));
+        return old;
+    }
+
+    Object takePending(Channel to) {
+        return (to == channelA ? pendingToA : pendingToB).getAndSet(null);
+    }
+
+    /** @return true nếu vừa chuyển từ đang chạy sang tạm dừng */
+    boolean markPaused(Channel sender) {
+        return (sender == channelA ? pausedA : pausedB).compareAndSet(false, true);
+    }
+
+    /** @return true nếu vừa chuyển từ tạm dừng sang chạy */
+    boolean clearPaused(Channel sender) {
+        return (sender == channelA ? pausedA : pausedB).compareAndSet(true, false);
+    }
+
+    /** Giải phóng gói còn treo khi session kết thúc; gói gộp tới sau đó bị giải phóng ngay. */
+    void releasePending() {
+        closed.set(true);
+        ReferenceCountUtil.release(pendingToA.getAndSet(null));
+        ReferenceCountUtil.release(pendingToB.getAndSet(null));
+    }
+
+    void recordDrop() {
+        dropped.increment();
+    }
+
+    void recordCoalesced() {
+        coalesced.increment();
+    }
+
+    void recordPause() {
+        pauses.increment();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getPauses() {
+        return pauses.sum();
+    }
+
+    public void recordTcp(int bytes) {
+        tcpFrames.increment();
+        tcpBytes.add(bytes);
+    }
+
+    public void recordUdp(int bytes) {
+        udpPackets.increment();
+        udpBytes.add(bytes);
+    }
+
+    public long getTcpFrames() {
+        return tcpFrames.sum();
+    }
+
+    public long getTcpBytes() {
+        return tcpBytes.sum();
+    }
+
+    public long getUdpPackets() {
+        return udpPackets.sum();
+    }
+
+    public long getUdpBytes() {
+        return udpBytes.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "Session[" + sessionId + " " + userA + "<->" + userB + ", tcp=" + getTcpFrames() + "/"
+                + getTcpBytes() + "B, udp=" + getUdpPackets() + "/" + getUdpBytes() + "B, dropped=" + getDropped()
+                + ", coalesced=" + getCoalesced() + ", pauses=" + getPauses() + "]";
+    }
+}
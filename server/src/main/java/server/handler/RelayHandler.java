@@ -0,0 +1,54 @@
+package server.handler;
+
+import codec.Frame;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.ReferenceCountUtil;
+import protocol.core.PacketType;
+import server.core.Relay;
+import server.core.ServerContext;
+import server.core.Session;
+
+/**
+ * Relay frame v2 giữa hai client đã pair chỉ dựa vào header:
+ * payload không bị decode/encode lại, frame gốc được chuyển thẳng sang channel partner.
+ * Gói control-plane (login, connect, chat, ...) đi tiếp xuống FramePayloadDecoder -> ServerHandler.
+ */
+public class RelayHandler extends ChannelInboundHandlerAdapter {
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof Frame) || !isRelayed(((Frame) msg).getType())) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+
+        Frame frame = (Frame) msg;
+        Session session = ServerContext.getSession(ctx.channel());
+        if (session == null) {
+            ReferenceCountUtil.release(frame);
+            return;
+        }
+        // ownership của frame chuyển sang Relay (ghi sang partner hoặc release nếu bị bỏ)
+        Relay.forward(ctx.channel(), session, frame.getType(), frame.hasFlag(Frame.FLAG_COALESCE), frame,
+                frame.content().readableBytes());
+    }
+
+    static boolean isRelayed(PacketType type) {
+        switch (type) {
+            case CONTROL_SIGNAL:
+            case CLIPBOARD_DATA:
+            case FILE_REQ:
+            case FILE_CHUNK:
+            case FILE_OFFER:
+            case FILE_ACCEPT:
+            case AUDIO_DATA:
+            case RECEIVER_REPORT:
+            case VIDEO_NACK:
+            case KEYFRAME_REQUEST:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package server.handler;
 
+import codec.Frame;
+import codec.ProtocolVersion;
 import protocol.auth.*;
 import protocol.chat.ChatMessage;
 import protocol.core.*;
@@ -11,7 +13,9 @@ import java.util.UUID;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import server.core.Relay;
 import server.core.ServerContext;
+import server.core.Session;
 
 import java.net.InetSocketAddress;
 
@@ -28,13 +32,10 @@ public class ServerHandler extends SimpleChannelInboundHandler<NetworkPacket> {
         if (userId != null) {
             System.out.println("Client disconnected: " + userId);
 
-            // 1) unpair và lấy partner (nếu có)
-            String partnerId = ServerContext.unpair(userId);
+            // 1) remove user, đóng session và lấy partner (nếu có)
+            String partnerId = ServerContext.removeClient(userId);
 
-            // 2) remove user
-            ServerContext.removeClient(userId);
-
-            // 3) báo partner (ưu tiên báo trực tiếp)
+            // 2) báo partner (ưu tiên báo trực tiếp)
             if (partnerId != null) {
                 Channel partnerCh = ServerContext.getClientChannel(partnerId);
                 if (partnerCh != null) {
@@ -78,6 +79,9 @@ public class ServerHandler extends SimpleChannelInboundHandler<NetworkPacket> {
             case FILE_OFFER:
             case FILE_ACCEPT:
             case AUDIO_DATA:
+            case RECEIVER_REPORT:
+            case VIDEO_NACK:
+            case KEYFRAME_REQUEST:
                 forwardToPartner(ctx, packet);
                 break;
             default:
@@ -86,17 +90,28 @@ public class ServerHandler extends SimpleChannelInboundHandler<NetworkPacket> {
     }
 
     private void handleLogin(ChannelHandlerContext ctx, LoginRequest req) {
-        if (ServerContext.isOnline(req.getUserId())) {
+        int version = ProtocolVersion.negotiate(req.getProtocolVersion());
+
+        String ip = ((InetSocketAddress) ctx.channel().remoteAddress()).getAddress().getHostAddress();
+        if (!ServerContext.addClient(req.getUserId(), req.getPassword(), ctx.channel(), ip)) {
             // ID đã online -> từ chối
-            ctx.writeAndFlush(new NetworkPacket(PacketType.LOGIN_RESPONSE, "DUPLICATE_ID"));
+            ctx.writeAndFlush(loginResponse("DUPLICATE_ID", version, 0));
             ctx.close();
             return;
         }
 
-        String ip = ((InetSocketAddress) ctx.channel().remoteAddress()).getAddress().getHostAddress();
-        ServerContext.addClient(req.getUserId(), req.getPassword(), ctx.channel(), ip);
-        System.out.println("User Login: " + req.getUserId());
-        ctx.writeAndFlush(new NetworkPacket(PacketType.LOGIN_RESPONSE, "OK"));
+        System.out.println("User Login: " + req.getUserId() + " (protocol v" + version + ")");
+
+        // response vẫn đi bằng v1, các gói sau mới chuyển sang version đã chọn
+        ctx.writeAndFlush(loginResponse("OK", version, ServerContext.getUdpToken(ctx.channel())));
+        ProtocolVersion.set(ctx.channel(), version);
+    }
+
+    private NetworkPacket loginResponse(String status, int version, int udpToken) {
+        // client cũ chỉ hiểu payload String
+        if (version < ProtocolVersion.V2)
+            return new NetworkPacket(PacketType.LOGIN_RESPONSE, status);
+        return new NetworkPacket(PacketType.LOGIN_RESPONSE, new LoginResponsePacket(status, version, udpToken));
     }
 
     private void handleConnect(ChannelHandlerContext ctx, ConnectRequestPacket req) {
@@ -166,17 +181,19 @@ public class ServerHandler extends SimpleChannelInboundHandler<NetworkPacket> {
     }
 
     private void forwardToPartner(ChannelHandlerContext ctx, NetworkPacket packet) {
-        String senderId = ServerContext.getClientIdByChannel(ctx.channel());
-        if (senderId == null)
+        Session session = ServerContext.getSession(ctx.channel());
+        if (session == null)
             return;
 
-        String partnerId = ServerContext.getPartner(senderId);
-        if (partnerId == null)
-            return;
+        // gói v1 đã decode, không còn kích thước frame gốc
+        Relay.forward(ctx.channel(), session, packet.getType(), Frame.flagsFor(packet) != 0, packet, 0);
+    }
 
-        Channel partnerCh = ServerContext.getClientChannel(partnerId);
-        if (partnerCh != null)
-            partnerCh.writeAndFlush(packet);
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable())
+            Relay.onWritable(ctx.channel());
+        super.channelWritabilityChanged(ctx);
     }
 
     private void handleForward(ChannelHandlerContext ctx, NetworkPacket packet, String targetId) {
@@ -1,77 +1,89 @@
 package server.handler;
 
+import codec.DatagramHeader;
 import codec.KryoSerializer;
 import protocol.media.VideoPacket;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.socket.DatagramPacket;
 import server.core.ServerContext;
+import server.core.Session;
 
 import java.net.InetSocketAddress;
 
 public class UdpServerHandler extends SimpleChannelInboundHandler<DatagramPacket> {
 
-    private final java.util.concurrent.ConcurrentHashMap<String, Integer> udpCounters = new java.util.concurrent.ConcurrentHashMap<>();
-
-    private void logUdpRelay(VideoPacket video, InetSocketAddress targetAddr, int bytes) {
-        String sender = video.getSenderId();
-        int c = udpCounters.merge(sender, 1, Integer::sum);
+    private void logUdpRelay(Session session, InetSocketAddress targetAddr, int bytes) {
+        long c = session.getUdpPackets();
 
         if (c % 30 == 0) {
-            String partner = ServerContext.getPartner(sender);
-            System.out.printf("[UDP-RELAY] sender=%s partner=%s -> %s bytes=%d count=%d%n",
-                    sender, partner, targetAddr, bytes, c);
+            System.out.printf("[UDP-RELAY] %s -> %s bytes=%d%n", session, targetAddr, bytes);
         }
     }
 
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket packet) throws Exception {
-        byte[] data = new byte[packet.content().readableBytes()];
-        packet.content().readBytes(data);
-
-        Object obj;
-        try {
-            obj = KryoSerializer.deserialize(data);
-        } catch (Exception e) {
+        ByteBuf content = packet.content();
+
+        // fast path: người gửi xác định qua token trong prefix, không đụng tới payload
+        Channel owner = null;
+        if (DatagramHeader.isPresent(content))
+            owner = ServerContext.getChannelByUdpToken(DatagramHeader.token(content));
+        if (owner == null)
+            owner = decodeSender(content);
+        if (owner == null)
             return;
-        }
 
-        if (obj instanceof VideoPacket) {
-            VideoPacket video = (VideoPacket) obj;
-            String senderId = video.getSenderId();
+        InetSocketAddress senderAddr = packet.sender();
+        InetSocketAddress oldAddr = owner.attr(ServerContext.UDP_ADDRESS).get();
 
-            if (senderId != null) {
-                InetSocketAddress senderAddr = packet.sender();
-                InetSocketAddress oldAddr = ServerContext.getUdpAddress(senderId);
-
-                if (oldAddr == null || !oldAddr.equals(senderAddr)) {
-                    ServerContext.registerUdp(senderId, senderAddr);
-                    System.out.println("UDP REGISTERED: User " + senderId + " at " + senderAddr);
-                }
-            }
+        if (oldAddr == null || !oldAddr.equals(senderAddr)) {
+            ServerContext.registerUdp(owner, senderAddr);
+            System.out.println("UDP REGISTERED: User " + ServerContext.getClientIdByChannel(owner) + " at "
+                    + senderAddr);
+        }
 
-            // target thật = partner đã được server pair
-            String targetId = ServerContext.getPartner(senderId);
-            if (targetId == null)
-                return;
+        // target thật = partner đã được server pair
+        Session session = owner.attr(ServerContext.SESSION).get();
+        if (session == null)
+            return;
 
-            InetSocketAddress targetAddr = ServerContext.getUdpAddress(targetId);
-            if (targetAddr == null)
-                return;
+        InetSocketAddress targetAddr = session.partnerUdp(owner);
+        if (targetAddr == null)
+            return;
 
-            // relay
-            DatagramPacket relayPacket = new DatagramPacket(
-                    Unpooled.wrappedBuffer(data),
-                    targetAddr);
-            logUdpRelay(video, targetAddr, data.length);
-            ctx.writeAndFlush(relayPacket);
+        // relay: gửi lại chính buffer đã nhận (retain vì SimpleChannelInboundHandler sẽ release),
+        // flush gom lại ở channelReadComplete
+        int bytes = content.readableBytes();
+        session.recordUdp(bytes);
+        logUdpRelay(session, targetAddr, bytes);
+        ctx.write(new DatagramPacket(content.retain(), targetAddr));
+    }
 
+    /** Slow path cho client chưa có token: decode VideoPacket chỉ để lấy senderId. */
+    private Channel decodeSender(ByteBuf content) {
+        ByteBuf view = content.duplicate();
+        DatagramHeader.skip(view);
+        try {
+            Object obj = KryoSerializer.deserialize(view);
+            if (obj instanceof VideoPacket) {
+                String senderId = ((VideoPacket) obj).getSenderId();
+                return senderId == null ? null : ServerContext.getClientChannel(senderId);
+            }
+        } catch (Exception e) {
         }
+        return null;
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+        ctx.flush();
     }
 
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         // cause.printStackTrace();
     }
-}
\ No newline at end of file
+}
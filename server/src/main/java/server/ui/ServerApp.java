@@ -34,12 +34,16 @@ public class ServerApp extends Application {
     private Thread serverThread;
 
     public static void updateClientList(ClientModel client, boolean isAdd) {
-        Platform.runLater(() -> {
-            connectedClients.removeIf(c -> c.getId().equals(client.getId()));
-            if (isAdd) {
-                connectedClients.add(client);
-            }
-        });
+        try {
+            Platform.runLater(() -> {
+                connectedClients.removeIf(c -> c.getId().equals(client.getId()));
+                if (isAdd) {
+                    connectedClients.add(client);
+                }
+            });
+        } catch (IllegalStateException e) {
+            // FX toolkit chưa chạy (ServerContext dùng không có UI, ví dụ bài kiểm tra tải): không có gì để cập nhật
+        }
     }
 
     @Override
@@ -0,0 +1,245 @@
+package server;
+
+import codec.DatagramHeader;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import server.core.ServerContext;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Kiểm tra tải relay UDP ({@link RemoteControlServer#bindUdp}): {@link #SENDERS} cặp client đã pair,
+ * mỗi người gửi một socket riêng (4-tuple khác nhau) bắn datagram có token tới relay trên loopback.
+ * <ul>
+ * <li>mọi datagram phải tới đúng partner của người gửi (so token trong prefix);</li>
+ * <li>epoll nhiều socket (SO_REUSEPORT): kernel phải chia tải cho hơn một socket;</li>
+ * <li>in packets/s theo số socket để so với số core.</li>
+ * </ul>
+ * Không có native epoll thì chỉ chạy NIO (đường fallback). Số gói mỗi người gửi chỉnh bằng -Dbench.packets.
+ */
+public class UdpRelayLoadCheck {
+
+    private static final int SENDERS = 16;
+    private static final int PACKETS_PER_SENDER = Integer.getInteger("bench.packets", 5_000);
+    private static final int PAYLOAD = 1200;
+    // số gói được phép "đang bay" mỗi cặp (receiver trả lại quyền gửi), tránh tràn buffer socket loopback
+    private static final int WINDOW = 8;
+    private static final long WINDOW_WAIT_MS = 50;
+
+    private static int runSeq;
+
+    public static void main(String[] args) throws Exception {
+        PrintStream console = System.out;
+        // UdpServerHandler log mỗi 30 gói -> tắt stdout trong lúc đo
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            console.printf("UDP relay load: %d senders x %d packets, %d cores%n", SENDERS, PACKETS_PER_SENDER,
+                    Runtime.getRuntime().availableProcessors());
+            console.println(run(false, 1));
+            if (Epoll.isAvailable()) {
+                for (int sockets : new int[] { 1, 2, 4 })
+                    console.println(run(true, sockets));
+            } else {
+                console.println("UDP relay load: native epoll unavailable (" + Epoll.unavailabilityCause()
+                        + "), only NIO checked");
+            }
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static String run(boolean epoll, int sockets) throws Exception {
+        EventLoopGroup group = epoll ? new EpollEventLoopGroup(sockets) : new NioEventLoopGroup(1);
+        List<DatagramSocket> udp = new ArrayList<>();
+        List<String> users = new ArrayList<>();
+        try {
+            int port;
+            try (DatagramSocket probe = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+                port = probe.getLocalPort();
+            }
+            List<Channel> relay = RemoteControlServer.bindUdp(group, epoll, port, sockets);
+            AtomicLong[] perSocket = new AtomicLong[relay.size()];
+            for (int i = 0; i < relay.size(); i++) {
+                AtomicLong counter = perSocket[i] = new AtomicLong();
+                relay.get(i).pipeline().addFirst(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        counter.incrementAndGet();
+                        ctx.fireChannelRead(msg);
+                    }
+                });
+            }
+            InetSocketAddress relayAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+
+            int run = runSeq++;
+            AtomicLong[] received = new AtomicLong[SENDERS];
+            AtomicLong mismatches = new AtomicLong();
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            List<Thread> receivers = new ArrayList<>();
+            List<Thread> senders = new ArrayList<>();
+            for (int s = 0; s < SENDERS; s++) {
+                String sender = "udp-" + run + "-s" + s;
+                String receiver = "udp-" + run + "-r" + s;
+                EmbeddedChannel chS = new EmbeddedChannel();
+                EmbeddedChannel chR = new EmbeddedChannel();
+                ServerContext.addClient(sender, "", chS, "127.0.0.1");
+                ServerContext.addClient(receiver, "", chR, "127.0.0.1");
+                users.add(sender);
+                users.add(receiver);
+
+                DatagramSocket in = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+                in.setReceiveBufferSize(1024 * 1024);
+                in.setSoTimeout(200);
+                DatagramSocket out = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+                udp.add(in);
+                udp.add(out);
+                ServerContext.registerUdp(chR, (InetSocketAddress) in.getLocalSocketAddress());
+                if (!ServerContext.pair(sender, receiver, "udp-load"))
+                    throw new IllegalStateException("pair failed");
+
+                int token = ServerContext.getUdpToken(chS);
+                AtomicLong got = received[s] = new AtomicLong();
+                Semaphore window = new Semaphore(WINDOW);
+                receivers.add(daemon("udp-recv-" + s, failure, () -> receive(in, token, got, window, mismatches)));
+                senders.add(daemon("udp-send-" + s, failure, () -> send(out, relayAddress, token, window)));
+            }
+
+            for (Thread t : receivers)
+                t.start();
+            long start = System.nanoTime();
+            for (Thread t : senders)
+                t.start();
+            for (Thread t : senders) {
+                t.join(TimeUnit.SECONDS.toMillis(60));
+                if (t.isAlive())
+                    throw new IllegalStateException(t.getName() + " did not finish");
+            }
+            // chờ các gói cuối (tối đa một cửa sổ mỗi cặp) tới nơi
+            long sent = (long) SENDERS * PACKETS_PER_SENDER;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            while (total(received) < sent && System.nanoTime() < deadline)
+                LockSupport.parkNanos(1_000_000);
+            long elapsed = System.nanoTime() - start;
+            for (DatagramSocket socket : udp)
+                socket.close();
+            for (Thread t : receivers)
+                t.join(TimeUnit.SECONDS.toMillis(5));
+            for (Channel ch : relay)
+                ch.close().sync();
+
+            if (failure.get() != null)
+                throw new IllegalStateException("UDP load worker failed", failure.get());
+            long delivered = total(received);
+            if (mismatches.get() > 0)
+                throw new IllegalStateException(mismatches.get() + " datagrams relayed to the wrong partner");
+            for (int s = 0; s < SENDERS; s++)
+                if (received[s].get() == 0)
+                    throw new IllegalStateException("pair " + s + " received nothing");
+            if (delivered < sent / 2)
+                throw new IllegalStateException("only " + delivered + "/" + sent + " datagrams relayed");
+
+            int busySockets = 0;
+            for (AtomicLong c : perSocket)
+                if (c.get() > 0)
+                    busySockets++;
+            if (relay.size() > 1 && busySockets < 2)
+                throw new IllegalStateException("SO_REUSEPORT did not spread load: " + Arrays.toString(perSocket));
+
+            return String.format("UDP relay %s %d socket: %,d pps, delivered %d/%d, per socket %s",
+                    epoll ? "epoll" : "nio", relay.size(), delivered * 1_000_000_000L / elapsed, delivered, sent,
+                    Arrays.toString(perSocket));
+        } finally {
+            for (DatagramSocket socket : udp)
+                socket.close();
+            for (String user : users)
+                ServerContext.removeClient(user);
+            group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+        }
+    }
+
+    private static void send(DatagramSocket out, InetSocketAddress relay, int token, Semaphore window)
+            throws Exception {
+        ByteBuf header = Unpooled.buffer(DatagramHeader.LENGTH);
+        DatagramHeader.write(header, 0, token);
+        byte[] data = new byte[DatagramHeader.LENGTH + PAYLOAD];
+        header.readBytes(data, 0, DatagramHeader.LENGTH);
+        DatagramPacket packet = new DatagramPacket(data, data.length, relay);
+
+        for (int i = 0; i < PACKETS_PER_SENDER; i++) {
+            // hết hạn chờ: coi gói đang bay là đã mất và gửi tiếp, không thì cửa sổ khép dần theo số gói mất
+            window.tryAcquire(WINDOW_WAIT_MS, TimeUnit.MILLISECONDS);
+            out.send(packet);
+        }
+    }
+
+    private static void receive(DatagramSocket in, int token, AtomicLong received, Semaphore window,
+            AtomicLong mismatches) throws Exception {
+        byte[] buf = new byte[2048];
+        DatagramPacket packet = new DatagramPacket(buf, buf.length);
+        while (!in.isClosed()) {
+            try {
+                packet.setLength(buf.length);
+                in.receive(packet);
+            } catch (SocketTimeoutException e) {
+                continue;
+            } catch (Exception e) {
+                if (in.isClosed())
+                    return;
+                throw e;
+            }
+            // JDK trả về một gói rỗng cho receive đang chờ khi socket bị đóng
+            if (in.isClosed())
+                return;
+            ByteBuf view = Unpooled.wrappedBuffer(buf, 0, packet.getLength());
+            if (!DatagramHeader.isPresent(view) || DatagramHeader.token(view) != token)
+                mismatches.incrementAndGet();
+            received.incrementAndGet();
+            window.release();
+        }
+    }
+
+    private interface Body {
+        void run() throws Exception;
+    }
+
+    private static Thread daemon(String name, AtomicReference<Throwable> failure, Body body) {
+        Thread t = new Thread(() -> {
+            try {
+                body.run();
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        }, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    private static long total(AtomicLong[] counters) {
+        long sum = 0;
+        for (AtomicLong c : counters)
+            sum += c.get();
+        return sum;
+    }
+}
@@ -0,0 +1,199 @@
+package server.core;
+
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Kiểm tra tải cho presence/pairing của {@link ServerContext}, chạy ở phase test (exec-maven-plugin):
+ * <ul>
+ * <li>scaling: nhiều thread pair/unpair ngẫu nhiên trên cùng một nhóm user, in ops/s theo số thread,
+ * sau mỗi lượt kiểm tra {@link ServerContext#checkInvariants()} (đúng shard, session đối xứng);</li>
+ * <li>churn: mỗi cặp có một user đứng yên (x) và một user liên tục online/offline (y), một thread khác
+ * liên tục pair(x, y). Sau mỗi vòng y đã offline thì x không được còn session nào: session treo nghĩa là
+ * x bị coi là "bận" tới khi reconnect.</li>
+ * </ul>
+ * Thoát với exception nếu vi phạm hoặc một thread kẹt quá {@link #TIMEOUT_SECONDS}.
+ */
+public class PairingStressCheck {
+
+    private static final int[] THREAD_COUNTS = { 1, 2, 4, 8 };
+    private static final int USERS = 256;
+    private static final int OPS_PER_THREAD = Integer.getInteger("stress.ops", 200_000);
+
+    private static final int CHURN_PAIRS = 8;
+    private static final int CHURN_ROUNDS = Integer.getInteger("stress.rounds", 20_000);
+
+    private static final long TIMEOUT_SECONDS = 60;
+
+    public static void main(String[] args) throws Exception {
+        PrintStream console = System.out;
+        // unpair in một dòng "Session closed" cho mỗi session -> tắt stdout trong lúc chạy
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            scaling(console);
+            churn(console);
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static void scaling(PrintStream console) throws Exception {
+        String[] users = new String[USERS];
+        for (int i = 0; i < USERS; i++) {
+            users[i] = "scale-" + i;
+            ServerContext.addClient(users[i], "", new EmbeddedChannel(), "127.0.0.1");
+        }
+
+        for (int threads : THREAD_COUNTS) {
+            AtomicLong paired = new AtomicLong();
+            List<Runnable> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                workers.add(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < OPS_PER_THREAD; i++) {
+                        String a = users[random.nextInt(USERS)];
+                        if (random.nextBoolean()) {
+                            if (ServerContext.pair(a, users[random.nextInt(USERS)], "scale"))
+                                paired.incrementAndGet();
+                        } else {
+                            ServerContext.unpair(a);
+                        }
+                    }
+                });
+            }
+
+            long elapsedNs = runAll("scale", workers);
+            long ops = (long) threads * OPS_PER_THREAD;
+            console.printf("Pairing scaling: %d threads, %,d ops/s, %,d paired%n", threads,
+                    ops * 1_000_000_000L / elapsedNs, paired.get());
+            assertConsistent("after " + threads + " threads");
+
+            for (String user : users)
+                ServerContext.unpair(user);
+        }
+
+        for (String user : users)
+            ServerContext.removeClient(user);
+        for (String user : users)
+            if (ServerContext.isOnline(user))
+                throw new IllegalStateException(user + " still online after removeClient");
+    }
+
+    private static void churn(PrintStream console) throws Exception {
+        AtomicLong violations = new AtomicLong();
+        AtomicLong paired = new AtomicLong();
+        List<Runnable> workers = new ArrayList<>();
+        List<String> standing = new ArrayList<>();
+        for (int p = 0; p < CHURN_PAIRS; p++) {
+            String x = "stress-x-" + p;
+            String y = "stress-y-" + p;
+            Channel chX = new EmbeddedChannel();
+            ServerContext.addClient(x, "", chX, "127.0.0.1");
+            standing.add(x);
+            CyclicBarrier start = new CyclicBarrier(2);
+            CyclicBarrier end = new CyclicBarrier(2);
+
+            workers.add(guarded(() -> {
+                for (int r = 0; r < CHURN_ROUNDS; r++) {
+                    EmbeddedChannel chY = new EmbeddedChannel();
+                    ServerContext.addClient(y, "", chY, "127.0.0.1");
+                    await(start);
+                    // giống channelInactive: channel đóng rồi mới tới removeClient
+                    chY.close();
+                    ServerContext.removeClient(y);
+                    await(end);
+                    if (chX.attr(ServerContext.SESSION).get() != null) {
+                        violations.incrementAndGet();
+                        ServerContext.unpair(x);
+                    }
+                    await(end);
+                }
+            }, start, end));
+
+            workers.add(guarded(() -> {
+                for (int r = 0; r < CHURN_ROUNDS; r++) {
+                    await(start);
+                    for (int k = 0; k < 4; k++)
+                        if (ServerContext.pair(x, y, "s" + r))
+                            paired.incrementAndGet();
+                    await(end);
+                    await(end);
+                }
+            }, start, end));
+        }
+
+        long elapsedNs = runAll("churn", workers);
+        console.printf("Pairing churn: %d rounds x %d pairs, %d paired, %d leaked sessions, %d ms%n",
+                CHURN_ROUNDS, CHURN_PAIRS, paired.get(), violations.get(), elapsedNs / 1_000_000);
+        if (violations.get() > 0)
+            throw new IllegalStateException(violations.get() + " sessions left attached to a removed client");
+        assertConsistent("after churn");
+
+        for (String x : standing)
+            ServerContext.removeClient(x);
+    }
+
+    private static void assertConsistent(String when) {
+        List<String> violations = ServerContext.checkInvariants();
+        if (!violations.isEmpty())
+            throw new IllegalStateException("Presence inconsistent " + when + ": " + violations);
+    }
+
+    private interface Body {
+        void run() throws Exception;
+    }
+
+    // lỗi ở một bên thì reset barrier để bên kia không chờ mãi
+    private static Runnable guarded(Body body, CyclicBarrier... barriers) {
+        return () -> {
+            try {
+                body.run();
+            } catch (Exception e) {
+                for (CyclicBarrier b : barriers)
+                    b.reset();
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    private static void await(CyclicBarrier barrier) throws Exception {
+        barrier.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /** Chạy các worker song song, trả về thời gian (ns); ném lỗi nếu worker nào lỗi hoặc quá hạn. */
+    private static long runAll(String name, List<Runnable> workers) throws Exception {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < workers.size(); i++) {
+            Thread t = new Thread(workers.get(i), name + "-" + i);
+            t.setDaemon(true);
+            t.setUncaughtExceptionHandler((th, e) -> failure.compareAndSet(null, e));
+            threads.add(t);
+        }
+
+        long startNs = System.nanoTime();
+        for (Thread t : threads)
+            t.start();
+        long deadline = startNs + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        for (Thread t : threads) {
+            t.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            if (t.isAlive())
+                throw new IllegalStateException(t.getName() + " did not finish within " + TIMEOUT_SECONDS + " s");
+        }
+        long elapsedNs = System.nanoTime() - startNs;
+
+        if (failure.get() != null)
+            throw new IllegalStateException(name + " worker failed", failure.get());
+        return elapsedNs;
+    }
+}
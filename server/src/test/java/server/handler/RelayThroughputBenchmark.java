@@ -0,0 +1,144 @@
+package server.handler;
+
+import codec.FramePayloadDecoder;
+import codec.FrameEncoder;
+import codec.NettyKryoDecoder;
+import codec.NettyKryoEncoder;
+import codec.PriorityOutboundHandler;
+import codec.ProtocolVersion;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import protocol.core.NetworkPacket;
+import protocol.core.PacketType;
+import protocol.file.FileChunkPacket;
+import protocol.media.AudioPacket;
+import server.core.ServerContext;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * So sánh throughput relay TCP giữa hai client v2 đã pair, trên pipeline giống RemoteControlServer
+ * (EmbeddedChannel, không có socket):
+ * <ul>
+ * <li>full decode: không có RelayHandler, payload được Kryo decode rồi serialize lại (đường relay cũ qua ServerHandler);</li>
+ * <li>header only: RelayHandler chuyển Frame gốc sang partner.</li>
+ * </ul>
+ * Cả hai đường phải cho ra đúng các byte đã nhận. Số vòng chỉnh bằng -Dbench.iterations.
+ */
+public class RelayThroughputBenchmark {
+
+    private static final int ITERATIONS = Integer.getInteger("bench.iterations", 20_000);
+    private static int clientSeq;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        byte[] fileData = new byte[8192];
+        byte[] audioData = new byte[1024];
+        random.nextBytes(fileData);
+        random.nextBytes(audioData);
+
+        List<NetworkPacket> packets = new ArrayList<>();
+        packets.add(new NetworkPacket(PacketType.FILE_CHUNK, new FileChunkPacket(fileData, fileData.length, false)));
+        packets.add(new NetworkPacket(PacketType.AUDIO_DATA, new AudioPacket(audioData, audioData.length)));
+
+        PrintStream console = System.out;
+        // ServerHandler/ServerContext in mỗi lần client đóng -> tắt stdout trong lúc đo
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (NetworkPacket packet : packets) {
+                ByteBuf wire = encodeV2(packet);
+                try {
+                    double full = run(wire, false);
+                    double headerOnly = run(wire, true);
+                    console.printf("Relay %s (%d B frame): full decode %.1f MB/s, header only %.1f MB/s (x%.1f)%n",
+                            packet.getType(), wire.readableBytes(), full, headerOnly, headerOnly / full);
+                } finally {
+                    wire.release();
+                }
+            }
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    /** @return MB/s frame đã nhận và chuyển tiếp */
+    private static double run(ByteBuf wire, boolean headerOnly) {
+        EmbeddedChannel from = serverChannel(headerOnly);
+        EmbeddedChannel to = serverChannel(headerOnly);
+        String a = "bench-" + clientSeq++;
+        String b = "bench-" + clientSeq++;
+        ServerContext.addClient(a, "", from, "127.0.0.1");
+        ServerContext.addClient(b, "", to, "127.0.0.1");
+        if (!ServerContext.pair(a, b, "bench"))
+            throw new IllegalStateException("pair failed");
+
+        try {
+            from.writeInbound(wire.retainedDuplicate());
+            ByteBuf relayed = Unpooled.buffer();
+            try {
+                Object out;
+                while ((out = to.readOutbound()) != null) {
+                    relayed.writeBytes((ByteBuf) out);
+                    ReferenceCountUtil.release(out);
+                }
+                if (!ByteBufUtil.equals(wire, relayed))
+                    throw new IllegalStateException((headerOnly ? "header-only" : "full-decode")
+                            + " relay changed the frame bytes");
+            } finally {
+                relayed.release();
+            }
+
+            for (int i = 0; i < ITERATIONS / 4; i++)
+                relayOnce(from, to, wire);
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++)
+                relayOnce(from, to, wire);
+            long elapsed = System.nanoTime() - start;
+            return (double) wire.readableBytes() * ITERATIONS / (1024 * 1024) / (elapsed / 1e9);
+        } finally {
+            // channelInactive của ServerHandler gỡ client và session
+            from.finishAndReleaseAll();
+            to.finishAndReleaseAll();
+        }
+    }
+
+    private static void relayOnce(EmbeddedChannel from, EmbeddedChannel to, ByteBuf wire) {
+        from.writeInbound(wire.retainedDuplicate());
+        Object out;
+        while ((out = to.readOutbound()) != null)
+            ReferenceCountUtil.release(out);
+    }
+
+    // cùng thứ tự handler với RemoteControlServer
+    private static EmbeddedChannel serverChannel(boolean headerOnly) {
+        List<ChannelHandler> handlers = new ArrayList<>();
+        handlers.add(new NettyKryoDecoder());
+        if (headerOnly)
+            handlers.add(new RelayHandler());
+        handlers.add(new FramePayloadDecoder());
+        handlers.add(new NettyKryoEncoder());
+        handlers.add(new FrameEncoder());
+        handlers.add(new PriorityOutboundHandler());
+        handlers.add(new ServerHandler());
+        EmbeddedChannel ch = new EmbeddedChannel(handlers.toArray(new ChannelHandler[0]));
+        ProtocolVersion.set(ch, ProtocolVersion.V2);
+        return ch;
+    }
+
+    private static ByteBuf encodeV2(NetworkPacket packet) {
+        EmbeddedChannel encoder = new EmbeddedChannel(new NettyKryoEncoder());
+        ProtocolVersion.set(encoder, ProtocolVersion.V2);
+        encoder.writeOutbound(packet);
+        ByteBuf wire = encoder.readOutbound();
+        encoder.finishAndReleaseAll();
+        return wire;
+    }
+}